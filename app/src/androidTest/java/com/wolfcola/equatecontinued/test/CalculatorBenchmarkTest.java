@@ -0,0 +1,189 @@
+package com.wolfcola.equatecontinued.test;
+
+import static com.wolfcola.equatecontinued.test.CalculatorJUnitTest.getTestCalc;
+import static com.wolfcola.equatecontinued.test.CalculatorJUnitTest.newNumberedResult;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.wolfcola.equatecontinued.Calculator;
+import com.wolfcola.equatecontinued.Result;
+import com.wolfcola.equatecontinued.ResultLog;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONTokener;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks of the Calculator, these report how long things take and how
+ * much space they use to the log rather than asserting on it. The behavior
+ * they measure is tested in {@link CalculatorJUnitTest}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CalculatorBenchmarkTest {
+    private static final String TAG = "CalculatorBenchmark";
+
+    /**
+     * How often the fast path is used for everyday input. Each key press is
+     * evaluated by the preview, so partial expressions count too.
+     */
+    @Test
+    public void benchmarkFastPathAcceptance() {
+        Calculator calc = getTestCalc();
+        String[] corpus = {
+                //shopping totals, tips and discounts
+                "19.99*3+4.50+12.75", "249.99-20%", "84.60+18%", "1299*0.85", "3.49*12+2.99*4",
+                "45.5/2", "120+7.25%", "59.95-15%-5%", "(12.5+8.75)*1.0625", "1000*1.05^3",
+                //everyday arithmetic, including some that need rounding
+                "12.5*3", "365*24*60", "2^10", "1.5E3*4", "144/12", "1/3", "22/7", "100/8",
+                "(3+4)(5-2)", "2^.5", "-7*-6", "9.81*2.5^2/2", "1/1024", "0.1+0.2", "5E(3*2)"
+        };
+        long fast = calc.getFastPathCount();
+        long fallback = calc.getFallbackCount();
+        for (String exp : corpus)
+            loadStringToCalc("c" + exp + "=", calc);
+        fast = calc.getFastPathCount() - fast;
+        fallback = calc.getFallbackCount() - fallback;
+
+        Log.i(TAG, "Fast path accepted " + fast + " of " + (fast + fallback)
+                + " evaluations (" + Math.round(100.0 * fast / (fast + fallback)) + "%)");
+    }
+
+    /**
+     * How long huge integer and fractional powers take to solve. The exponent
+     * changes each run, so nothing is answered from the cache.
+     */
+    @Test
+    public void benchmarkPowerTime() {
+        int runs = 50;
+        Calculator calc = getTestCalc();
+        String[] bases = {"2^", "1.0001^-"};
+        String[] exponents = {"100", "123456.9"};
+        StringBuilder times = new StringBuilder("Power time over " + runs + " runs:");
+        for (int e = 0; e < bases.length; e++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < runs; i++)
+                loadStringToCalc("c" + bases[e] + (100 + i) + exponents[e] + "=", calc);
+            times.append(' ').append(bases[e]).append("1xx").append(exponents[e]).append(' ')
+                    .append((System.nanoTime() - start) / 1000 / runs).append("us");
+        }
+        Log.i(TAG, times.toString());
+    }
+
+    /**
+     * How long divides, fractional powers and rounding the answer for display
+     * take as the precision goes up. Each key press solves the preview, so the
+     * slowest key press of each expression is shown.
+     */
+    @Test
+    public void benchmarkPrecisionLatency() {
+        int[] precisions = {15, 100, 1000, 2500, 5000};
+        String[] exps = {"1/7", "2^.5", "3.7^123.456", "1.0001^-12345678.9"};
+        StringBuilder table = new StringBuilder("digits");
+        for (String exp : exps)
+            table.append('\t').append(exp);
+        for (int precision : precisions) {
+            //a new calculator each time, so nothing is cached
+            Calculator calc = getTestCalc();
+            calc.setDisplayPrecision(precision);
+            table.append('\n').append(precision);
+            for (String exp : exps) {
+                long millis = 0;
+                for (char key : ("c" + exp + "=").toCharArray()) {
+                    long start = System.nanoTime();
+                    calc.parseKeyPressed(String.valueOf(key));
+                    millis = Math.max(millis, (System.nanoTime() - start) / 1000000);
+                }
+                table.append('\t').append(millis).append("ms");
+            }
+        }
+        Log.i(TAG, table.toString());
+    }
+
+    /**
+     * The memory each result in a full size history list takes, and how long
+     * adding takes once the oldest result has to be dropped
+     */
+    @Test
+    public void benchmarkResultListMemory() {
+        int size = Calculator.MAX_RESULT_LIST_SIZE;
+        Calculator calc = getTestCalc();
+        calc.setResultListSize(size);
+        List<Result> results = calc.getResultList();
+
+        long before = usedMemory();
+        for (int i = 0; i < size; i++)
+            results.add(newNumberedResult(i));
+        long perResult = (usedMemory() - before) / size;
+
+        //once full, every add drops the oldest
+        long start = System.nanoTime();
+        for (int i = size; i < size * 2; i++)
+            results.add(newNumberedResult(i));
+        long nanosPerAdd = (System.nanoTime() - start) / size;
+        assertEquals(size, results.size());
+
+        Log.i(TAG, "History of " + size + " results: about " + perResult
+                + " bytes per result, " + perResult * size / (1024 * 1024) + " MB in all, "
+                + nanosPerAdd + "ns per add when full");
+    }
+
+    /**
+     * Saving and loading a history of 10,000 results, in the result log
+     * versus the JSON older versions saved
+     */
+    @Test
+    public void benchmarkSavedStateSize() throws IOException, JSONException {
+        int size = 10000;
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < size; i++)
+            results.add(newNumberedResult(i));
+
+        JSONArray jResults = new JSONArray();
+        for (Result result : results)
+            jResults.put(result.toJSON());
+        String json = jResults.toString();
+        long start = System.nanoTime();
+        JSONArray jLoaded = (JSONArray) new JSONTokener(json).nextValue();
+        List<Result> jsonResults = new ArrayList<>();
+        for (int i = 0; i < jLoaded.length(); i++)
+            jsonResults.add(new Result(jLoaded.getJSONObject(i)));
+        long jsonMillis = (System.nanoTime() - start) / 1000000;
+
+        File file = File.createTempFile("result_log", ".bin");
+        assertTrue(file.delete());
+        new ResultLog(file, Runnable::run).sync(results);
+        start = System.nanoTime();
+        List<Result> loaded = new ArrayList<>();
+        new ResultLog(file, Runnable::run).load(loaded);
+        long binaryMillis = (System.nanoTime() - start) / 1000000;
+        assertEquals(jsonResults.size(), loaded.size());
+
+        Log.i(TAG, size + " results: JSON " + json.length() / 1024 + " KB, loads in "
+                + jsonMillis + "ms; result log " + file.length() / 1024 + " KB, loads in "
+                + binaryMillis + "ms");
+        assertTrue(file.delete());
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void loadStringToCalc(String str, Calculator calc) {
+        for (int i = 0; i < str.length(); i++)
+            calc.parseKeyPressed(String.valueOf(str.charAt(i)));
+    }
+}
@@ -1,25 +1,53 @@
 package com.wolfcola.equatecontinued.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import android.content.res.Resources;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import com.wolfcola.equatecontinued.BulkConversion;
 import com.wolfcola.equatecontinued.Calculator;
+import com.wolfcola.equatecontinued.ConversionTable;
+import com.wolfcola.equatecontinued.Expression;
 import com.wolfcola.equatecontinued.R;
+import com.wolfcola.equatecontinued.Result;
+import com.wolfcola.equatecontinued.ResultLog;
+import com.wolfcola.equatecontinued.SolveCache;
+import com.wolfcola.equatecontinued.StateSaver;
 import com.wolfcola.equatecontinued.Solver;
+import com.wolfcola.equatecontinued.unit.Unit;
+import com.wolfcola.equatecontinued.unit.UnitType;
 
+import org.json.JSONArray;
+import org.json.JSONException;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.math.MathContext;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
 
 @RunWith(AndroidJUnit4.class)
 public class CalculatorJUnitTest {
@@ -173,6 +201,16 @@ public class CalculatorJUnitTest {
         loadStringToCalc("1/3=*3=", calc);
         assertEquals("1", calc.toString());
 
+        //same after a clear, where the operator loads in the previous answer
+        loadStringToCalc("1/3=c*3=", calc);
+        assertEquals("1", calc.toString());
+
+        //and for an answer loaded back from the result list
+        loadStringToCalc("1/7=c", calc);
+        calc.parseResultAnswer(calc.getResultList().get(calc.getResultList().size() - 1));
+        loadStringToCalc("*7=", calc);
+        assertEquals("1", calc.toString());
+
         //make #E+# and #E-# are parsed correctly (save time with constructor)
         calc = getTestCalc();
         loadStringToCalc("10000000000*10000000000+10=", calc);
@@ -186,10 +224,12 @@ public class CalculatorJUnitTest {
         //divide by zero error
         loadStringToCalc("1/0=", calc);
         assertEquals(Solver.strDivideZeroError, calc.toString());
+        assertTrue(calc.isExpressionInvalid());
 
         //make sure num clears the error
         loadStringToCalc("+1+5=", calc);
         assertEquals("6", calc.toString());
+        assertFalse(calc.isExpressionInvalid());
 
         //overflow
         loadStringToCalc("9E9999999999=", calc);
@@ -263,6 +303,31 @@ public class CalculatorJUnitTest {
         loadStringToCalc("1E9999999+1E999999=", calc);
         assertEquals("Number Too Large", calc.toString());
 
+        //every operation should overflow the same way, these used to either
+        //crash or report the wrong error
+        loadStringToCalc("c1E5000*1E5000=", calc);
+        assertEquals("Number Too Large", calc.toString());
+        loadStringToCalc("c1E1999999999*1E1999999999=", calc);
+        assertEquals("Number Too Large", calc.toString());
+        loadStringToCalc("c1E1999999999/1E-1999999999=", calc);
+        assertEquals("Number Too Large", calc.toString());
+        loadStringToCalc("c2E(1999999999)*10=", calc);
+        assertEquals("Number Too Large", calc.toString());
+
+        //answers too small to show become 0
+        loadStringToCalc("c1E-5000*1E-5000=", calc);
+        assertEquals("0", calc.toString());
+        loadStringToCalc("c1E-1999999999*1E-1999999999=", calc);
+        assertEquals("0", calc.toString());
+        loadStringToCalc("c(1E999999-1E999999)=", calc);
+        assertEquals("0", calc.toString());
+
+        //an operand far below the precision of the other only nudges the rounding
+        loadStringToCalc("c1E-999999999+1=", calc);
+        assertEquals("1", calc.toString());
+        loadStringToCalc("c1E999-1E-999999999=", calc);
+        assertEquals("1E999", calc.toString());
+
         loadStringToCalc("2E-2E-2=", calc);
         assertEquals("-1.98", calc.toString());
 
@@ -293,7 +358,19 @@ public class CalculatorJUnitTest {
         assertTrue(calc.toString().matches(bd.toString()));
         //test large numbers
         loadStringToCalc("9.1^500=", calc);
+        assertEquals("3.31662340020936E479", calc.toString());
+        loadStringToCalc("9.1^50000=", calc);
         assertEquals("Number Too Large", calc.toString());
+        loadStringToCalc("c.1^50000=", calc);
+        assertEquals("0", calc.toString());
+        //integer powers are exact past the precision of a double
+        loadStringToCalc("3^35-5E16=", calc);
+        assertEquals("31545098999707", calc.toString());
+        loadStringToCalc("1.0001^12345.678=", calc);
+        assertEquals("3.43668064143324", calc.toString());
+        //no real answer
+        loadStringToCalc("(-8)^.5=", calc);
+        assertEquals(Solver.strSyntaxError, calc.toString());
         //test mixed exponents and powers
         loadStringToCalc("2.1E2^1.1E2=", calc);
         assertEquals("2.78049693531908E255", calc.toString());
@@ -322,6 +399,19 @@ public class CalculatorJUnitTest {
         loadStringToCalc("2+-1^2*-9^((.5)^1+.1+-.1^1)=", calc);
         assertEquals("5", calc.toString());
 
+        //huge powers
+        loadStringToCalc("c2^10000=", calc);
+        assertEquals("1.99506311688076E3010", calc.toString());
+        loadStringToCalc("c1.0001^-12345678.9=", calc);
+        assertEquals("7.25745500703744E-537", calc.toString());
+        //these should be rejected without calculating anything huge
+        loadStringToCalc("c2^1E18=", calc);
+        assertEquals("Number Too Large", calc.toString());
+        loadStringToCalc("c1.0000001^1E300=", calc);
+        assertEquals("Number Too Large", calc.toString());
+        loadStringToCalc("c-1^1E999999=", calc);
+        assertEquals("-1", calc.toString());
+
         //TODO do we really wanna fix this?
         //loadStringToCalc("2^3^2=", calc);
         //assertEquals("512", calc.toString());
@@ -413,6 +503,428 @@ public class CalculatorJUnitTest {
 //		assertEquals(Solver.strSyntaxError, calc.toString());
 //	}
 
+    @Test
+    public void testUnitConversions() {
+        final int TEMP = 1, LENGTH = 3, SPEED = 6;
+        final int F = 4, K = 8, C = 9, YARD = 2, MM = 6, MIN_MI = 0, MPH = 3;
+        Calculator calc = getTestCalc();
+
+        clickConvKey(TEMP, F, calc);
+        loadStringToCalc("212", calc);
+        clickConvKey(TEMP, C, calc);
+        assertEquals("100", calc.toString());
+        clickConvKey(TEMP, F, calc);
+        assertEquals("212", calc.toString());
+        clickConvKey(TEMP, K, calc);
+        assertEquals("373.15", calc.toString());
+        clickConvKey(TEMP, C, calc);
+        assertEquals("100", calc.toString());
+
+        //1E900 yard to mm to yard should not hang
+        loadStringToCalc("c1E900", calc);
+        clickConvKey(LENGTH, YARD, calc);
+        clickConvKey(LENGTH, MM, calc);
+        assertEquals("9.144E902", calc.toString());
+
+        //inverted units, 7.5 minute miles is 8 mph
+        loadStringToCalc("c7.5", calc);
+        clickConvKey(SPEED, MIN_MI, calc);
+        clickConvKey(SPEED, MPH, calc);
+        assertEquals("8", calc.toString());
+        clickConvKey(SPEED, MIN_MI, calc);
+        assertEquals("7.5", calc.toString());
+
+        //rational mode converts exactly
+        calc.setRationalMode(true);
+        loadStringToCalc("c1/3", calc);
+        clickConvKey(LENGTH, YARD, calc);
+        clickConvKey(LENGTH, MM, calc);
+        loadStringToCalc("*3=", calc);
+        assertEquals("914.4", calc.toString());
+        calc.setRationalMode(false);
+
+        //exact unit values stay exact past the precision of a double
+        calc.setDisplayPrecision(40);
+        final int MILE = 3, KM = 4, INCH = 0, MIL = 12;
+        loadStringToCalc("c1", calc);
+        clickConvKey(LENGTH, MILE, calc);
+        clickConvKey(LENGTH, KM, calc);
+        assertEquals("1.609344", calc.toString());
+        loadStringToCalc("c3", calc);
+        clickConvKey(LENGTH, INCH, calc);
+        clickConvKey(LENGTH, MIL, calc);
+        assertEquals("3000", calc.toString());
+    }
+
+    @Test
+    public void testConversionPrefetch() {
+        final int LENGTH = 3, INCH = 0, CM = 7;
+        Calculator calc = getTestCalc();
+
+        //conversions done after the first digit are out of date by the second
+        loadStringToCalc("c2", calc);
+        clickConvKey(LENGTH, INCH, calc);
+        calc.precomputeConversions();
+        loadStringToCalc("5", calc);
+        clickConvKey(LENGTH, CM, calc);
+        assertEquals("63.5", calc.toString());
+        assertEquals("25", calc.getResultList().get(calc.getResultList().size() - 1)
+                .getQueryWithoutSep());
+
+        //and so are conversions done before a unit's value changes
+        loadStringToCalc("c2", calc);
+        clickConvKey(LENGTH, INCH, calc);
+        calc.precomputeConversions();
+        Unit cm = calc.getCurrUnitType().getUnit(CM);
+        double value = cm.getValue();
+        cm.setValue(value * 2);
+        clickConvKey(LENGTH, CM, calc);
+        cm.setValue(value);
+        assertEquals("10.16", calc.toString());
+
+        //typing with a unit selected only solves the preview, the conversions
+        //aren't started again on every key press
+        loadStringToCalc("c2", calc);
+        clickConvKey(LENGTH, INCH, calc);
+        calc.precomputeConversions();
+        SolveCache cache = calc.getSolveCache();
+        long lookups = cache.getHitCount() + cache.getMissCount();
+        loadStringToCalc("5", calc);
+        assertEquals(lookups + 1, cache.getHitCount() + cache.getMissCount());
+        clickConvKey(LENGTH, CM, calc);
+        assertEquals("63.5", calc.toString());
+    }
+
+    @Test
+    public void testResultListSize() {
+        Calculator calc = getTestCalc();
+        calc.setResultListSize(3);
+        loadStringToCalc("1+1=2+2=3+3=4+4=5+5=", calc);
+        List<Result> results = calc.getResultList();
+        assertEquals(3, results.size());
+        assertEquals("3+3", results.get(0).getQueryWithoutSep());
+        assertEquals("10", results.get(2).getAnswerWithoutSep());
+
+        //deleting from the middle, then wrapping around again
+        results.remove(1);
+        loadStringToCalc("6+6=7+7=", calc);
+        assertEquals(3, results.size());
+        assertEquals("5+5", results.get(0).getQueryWithoutSep());
+        assertEquals("14", results.get(2).getAnswerWithoutSep());
+
+        //shrinking drops the oldest
+        calc.setResultListSize(2);
+        assertEquals("6+6", results.get(0).getQueryWithoutSep());
+        calc.setResultListSize(Calculator.MAX_RESULT_LIST_SIZE);
+        assertEquals(2, results.size());
+
+        //a reset clears the history but keeps its length
+        calc.setResultListSize(3);
+        calc.resetCalc();
+        assertEquals(0, calc.getResultList().size());
+        assertEquals(3, calc.getResultListSize());
+    }
+
+    @Test
+    public void testResultLog() throws IOException {
+        File file = File.createTempFile("result_log", ".bin");
+        assertTrue(file.delete());
+        ResultLog log = new ResultLog(file, Runnable::run);
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            results.add(new Result("1+" + i, String.valueOf(1 + i)));
+        log.sync(results);
+        assertEquals(3, log.getRecordCount());
+
+        //a delete is a tombstone, and only the new result is appended
+        results.remove(1);
+        results.add(new Result("9", "9"));
+        log.sync(results);
+        assertEquals(5, log.getRecordCount());
+        assertEquals(2, log.getGarbageCount());
+        assertEquals(Arrays.asList("1+0", "1+2", "9"), loadQueries(file));
+
+        //a record torn part way through is cut off, and the log still works
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[]{0, 0, 0, 40, 1, 0, 0, 0});
+        }
+        long tornLength = file.length();
+        results = new ArrayList<>();
+        log = new ResultLog(file, Runnable::run);
+        log.load(results);
+        assertTrue(file.length() < tornLength);
+        results.add(new Result("8", "8"));
+        log.sync(results);
+        assertEquals(Arrays.asList("1+0", "1+2", "9", "8"), loadQueries(file));
+
+        //once mostly garbage, the log is compacted down to the live results
+        for (int i = 0; i < 300; i++)
+            results.add(new Result(String.valueOf(i), String.valueOf(i)));
+        log.sync(results);
+        results.subList(0, results.size() - 2).clear();
+        log.sync(results);
+        assertEquals(0, log.getGarbageCount());
+        assertEquals(2, log.getRecordCount());
+        assertEquals(Arrays.asList("298", "299"), loadQueries(file));
+
+        //clearing the history is a single record
+        results.clear();
+        log.sync(results);
+        assertEquals(3, log.getRecordCount());
+        assertEquals(0, loadQueries(file).size());
+
+        //a log that was never loaded (such as when the rest of the state
+        //couldn't be) is rewritten, rather than appended to with ids that
+        //clash with the ones in it
+        results.add(new Result("7", "7"));
+        log.sync(results);
+        log = new ResultLog(file, Runnable::run);
+        results = new ArrayList<>();
+        results.add(new Result("6", "6"));
+        log.sync(results);
+        assertEquals(1, log.getRecordCount());
+        assertEquals(Arrays.asList("6"), loadQueries(file));
+        assertTrue(file.delete());
+    }
+
+    private static List<String> loadQueries(File file) throws IOException {
+        List<Result> results = new ArrayList<>();
+        new ResultLog(file, Runnable::run).load(results);
+        List<String> queries = new ArrayList<>();
+        for (Result result : results)
+            queries.add(result.getQueryWithoutSep());
+        return queries;
+    }
+
+    @Test
+    public void testSavedState() throws IOException {
+        final int LENGTH = 3, INCH = 0;
+        Calculator calc = getTestCalc();
+        loadStringToCalc("1+2", calc);
+        clickConvKey(LENGTH, INCH, calc);
+        calc.setResultListSize(500);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        calc.writeState(out);
+
+        calc = getTestCalc();
+        calc.readState(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals("1+2", calc.toString());
+        assertEquals(LENGTH, calc.getUnitTypePos());
+        assertEquals(INCH, calc.getCurrUnitType().getCurrUnitButtonPos());
+        assertEquals(500, calc.getResultListSize());
+
+        //state from a newer version isn't loaded over the current one
+        byte[] newer = out.toByteArray();
+        newer[4]++;
+        try {
+            calc.readState(new ByteArrayInputStream(newer));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testUnitTypeSavedState() throws IOException {
+        final int LENGTH = 3, AREA = 4, INCH = 0;
+        Calculator calc = getTestCalc();
+        Collection<UnitType> unitTypes = calc.getUnitTypeList().getUnitTypeArray().values();
+        calc.writeState(new ByteArrayOutputStream());
+        for (UnitType unitType : unitTypes)
+            assertFalse(unitType.isDirty());
+
+        //only the UnitTypes that changed are written again
+        clickConvKey(LENGTH, INCH, calc);
+        calc.setCurrentUnitTypePos(AREA);
+        String secondArea = calc.getCurrUnitType().getUnit(1).getAbbreviation();
+        calc.getCurrUnitType().swapUnits(0, 1);
+        int dirty = 0;
+        for (UnitType unitType : unitTypes)
+            if (unitType.isDirty())
+                dirty++;
+        assertEquals(2, dirty);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        calc.writeState(out);
+        for (UnitType unitType : unitTypes)
+            assertFalse(unitType.isDirty());
+
+        //and are loaded back by key
+        calc = getTestCalc();
+        calc.readState(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(AREA, calc.getUnitTypePos());
+        assertEquals(secondArea, calc.getCurrUnitType().getUnit(0).getAbbreviation());
+        calc.setCurrentUnitTypePos(LENGTH);
+        assertTrue(calc.getCurrUnitType().isUnitSelected());
+        assertEquals(INCH, calc.getCurrUnitType().getCurrUnitButtonPos());
+    }
+
+    @Test(timeout = 20000)
+    public void testStateSaver() throws IOException {
+        File file = File.createTempFile("saved_state", ".bin");
+        StateSaver saver = new StateSaver(file, 60000);
+
+        //a burst of saves is written once, with the newest snapshot
+        for (int i = 0; i < 100; i++) {
+            final int state = i;
+            saver.save(out -> out.write(state));
+        }
+        assertTrue(saver.flush(5000));
+        assertEquals(1, saver.getWriteCount());
+        assertEquals(99, readSavedState(file));
+
+        //a failed write leaves the last good state in place
+        saver.save(out -> {
+            out.write(1);
+            throw new IOException("Disk full");
+        });
+        assertFalse(saver.flush(5000));
+        assertEquals(99, readSavedState(file));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        //a save dropped by cancelAndRun() isn't written after the task
+        final boolean[] ran = new boolean[1];
+        saver.save(out -> out.write(5));
+        saver.cancelAndRun(() -> ran[0] = true);
+        assertTrue(saver.flush(5000));
+        assertTrue(ran[0]);
+        assertEquals(1, saver.getWriteCount());
+        assertTrue(file.delete());
+    }
+
+    private static int readSavedState(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            return in.read();
+        }
+    }
+
+    /**
+     * The result log saves a history of 10,000 results in a few dozen bytes
+     * each, a fraction of the JSON older versions saved, and loads them back
+     */
+    @Test
+    public void testResultLogSize() throws IOException, JSONException {
+        int size = 10000;
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < size; i++)
+            results.add(newNumberedResult(i));
+        JSONArray jResults = new JSONArray();
+        for (Result result : results)
+            jResults.put(result.toJSON());
+
+        File file = File.createTempFile("result_log", ".bin");
+        assertTrue(file.delete());
+        new ResultLog(file, Runnable::run).sync(results);
+        List<Result> loaded = new ArrayList<>();
+        new ResultLog(file, Runnable::run).load(loaded);
+
+        assertEquals(size, loaded.size());
+        for (int i = 0; i < size; i += 997) {
+            assertEquals(results.get(i).getQueryWithoutSep(), loaded.get(i).getQueryWithoutSep());
+            assertEquals(results.get(i).getAnswerWithoutSep(), loaded.get(i).getAnswerWithoutSep());
+            assertEquals(results.get(i).getTimestamp(), loaded.get(i).getTimestamp());
+        }
+        assertTrue(file.length() < 64L * size);
+        assertTrue(file.length() * 3 < jResults.toString().length());
+        assertTrue(file.delete());
+    }
+
+    /**
+     * A history list of the largest size keeps that many results, dropping
+     * the oldest once full
+     */
+    @Test
+    public void testResultListCapacity() {
+        int size = Calculator.MAX_RESULT_LIST_SIZE;
+        Calculator calc = getTestCalc();
+        calc.setResultListSize(size);
+        assertEquals(size, calc.getResultListSize());
+        List<Result> results = calc.getResultList();
+        for (int i = 0; i < size * 2; i++)
+            results.add(newNumberedResult(i));
+        assertEquals(size, results.size());
+        assertEquals("12.5*" + size, results.get(0).getQueryWithoutSep());
+        assertEquals("12.5*" + (size * 2 - 1), results.get(size - 1).getQueryWithoutSep());
+
+        //can't go past the largest size
+        calc.setResultListSize(size + 1);
+        assertEquals(size, calc.getResultListSize());
+    }
+
+    static Result newNumberedResult(int i) {
+        BigDecimal answer = new BigDecimal("12.5").multiply(BigDecimal.valueOf(i));
+        return new Result("12.5*" + i, answer.toString(), answer.toString(), answer);
+    }
+
+    @Test
+    public void testBulkConversion() {
+        final int LENGTH = 3, INCH = 0, CM = 7;
+        Calculator calc = getTestCalc();
+
+        //nothing to convert from yet
+        calc.setCurrentUnitTypePos(LENGTH);
+        Unit cm = calc.getCurrUnitType().getUnit(CM);
+        assertEquals(null, calc.newBulkConversion("1", cm));
+
+        loadStringToCalc("c1", calc);
+        clickConvKey(LENGTH, INCH, calc);
+        String text = "12\t1,000\n-3.5e2 A1 2nd\n5-10 v1.2 1,2\n\n1E40";
+        String expected = "30.48\t2540\n-889 A1 2nd\n12.7-25.4 v1.2 2.54,5.08\n\n2.54E40";
+        BulkConversion bulk = calc.newBulkConversion(text, cm);
+        assertTrue(bulk.convertNext(100));
+        assertEquals(expected, bulk.getResult());
+        assertEquals(8, bulk.getCount());
+
+        //the same a value at a time
+        bulk = calc.newBulkConversion(text, cm);
+        int chunks = 0;
+        while (!bulk.convertNext(1))
+            chunks++;
+        assertEquals(expected, bulk.getResult());
+        assertEquals(100, bulk.getProgress());
+        assertTrue(chunks >= 7);
+
+        //commas only group digits when the whole number is grouped, otherwise
+        //they separate values from that line on
+        bulk = calc.newBulkConversion("1,250,000\n1,000,00 1234,567\n2,000", cm);
+        assertTrue(bulk.convertNext(100));
+        assertEquals("3175000\n2.54,0,0 3134.36,1440.18\n5.08,0", bulk.getResult());
+
+        //a CSV list, where commas separate values from the header down
+        bulk = calc.newBulkConversion("from,to\n100,200,300\n1,250,5", cm);
+        assertTrue(bulk.convertNext(100));
+        assertEquals("from,to\n254,508,762\n2.54,635,12.7", bulk.getResult());
+        assertEquals(6, bulk.getCount());
+    }
+
+    @Test
+    public void testConversionTable() {
+        final int FUEL = 8, DIGITAL = 14, BYTE = 0, TB = 4, BIT = 5;
+        Calculator calc = getTestCalc();
+
+        loadStringToCalc("c1", calc);
+        clickConvKey(DIGITAL, TB, calc);
+        //solved on the preview worker, which runs right away in tests
+        ConversionTable table = calc.getConversionTable();
+        assertFalse(calc.isConversionTablePending());
+        assertEquals(calc.getCurrUnitType().size(), table.size());
+        assertEquals("1099511627776", table.getAnswer(BYTE));
+        assertEquals("8796093022208", table.getAnswer(BIT));
+        assertEquals("1", table.getAnswer(TB));
+        //the same table until the expression changes
+        assertTrue(table == calc.getConversionTable());
+        loadStringToCalc("/8", calc);
+        table = calc.getConversionTable();
+        assertEquals("137438953472", table.getAnswer(BYTE));
+
+        //errors give empty rows
+        loadStringToCalc("/0", calc);
+        assertEquals("", calc.getConversionTable().getAnswer(BYTE));
+
+        //blank unit buttons aren't in the table
+        loadStringToCalc("c1", calc);
+        calc.setCurrentUnitTypePos(FUEL);
+        assertEquals(5, calc.getConversionTable().size());
+    }
+
     @Test
     public void testNegateOperator() {
         Calculator calc = getTestCalc();
@@ -521,6 +1033,48 @@ public class CalculatorJUnitTest {
         //test auto adding multiplies for paras
         loadStringToCalc("2((5)6)(3)7(3)(4).2+8.(0)=", calc);
         assertEquals("3024", calc.toString());
+
+        //test E after a close para
+        loadStringToCalc("(1+2)E2=", calc);
+        assertEquals("300", calc.toString());
+
+        //test a long chain of additions
+        StringBuilder chain = new StringBuilder("c");
+        for (int i = 0; i < 200; i++)
+            chain.append("1+");
+        loadStringToCalc(chain + "1=", calc);
+        assertEquals("201", calc.toString());
+
+        //empty parentheses are an error next to an operator too, like "()8"
+        loadStringToCalc("c()+8=", calc);
+        assertEquals(Solver.strSyntaxError, calc.toString());
+
+        //an unmatched close is an error even if the rest would fail anyway
+        loadStringToCalc("c1/0)=", calc);
+        assertEquals(Solver.strSyntaxError, calc.toString());
+    }
+
+    @Test
+    public void testParaHighlight() {
+        Calculator calc = getTestCalc();
+
+        //a close highlights its open
+        loadStringToCalc("(2+(3)", calc);
+        assertEquals(Arrays.asList(3, 5), calc.getHighlighted());
+        loadStringToCalc(")", calc);
+        assertEquals(Arrays.asList(0, 6), calc.getHighlighted());
+
+        //an open added in the middle highlights its close
+        calc.setSelection(3, 3);
+        loadStringToCalc("(", calc);
+        assertEquals("(2+((3))", calc.toString());
+        assertEquals(Arrays.asList(3, 7), calc.getHighlighted());
+
+        //an open without a close, so only the implied * is highlighted
+        calc.setSelection(2, 2);
+        loadStringToCalc("(", calc);
+        assertEquals("(2*(+((3))", calc.toString());
+        assertEquals(Arrays.asList(2), calc.getHighlighted());
     }
 
     @Test
@@ -570,6 +1124,309 @@ public class CalculatorJUnitTest {
         //TODO, simplified broken version  is 1+2%3
         loadStringToCalc(".1+2.%3.%47.+200%.5=", calc);
         assertEquals("1.1282", calc.toString());
+
+        //percent of a parenthesized value
+        loadStringToCalc("(50)%=", calc);
+        assertEquals("0.5", calc.toString());
+        loadStringToCalc("c(36)%=", calc);
+        assertEquals("0.36", calc.toString());
+
+        //a minus right before the number is part of the percent
+        loadStringToCalc("c3*-4%^2=", calc);
+        assertEquals("0.0048", calc.toString());
+        loadStringToCalc("c-4E1%^2=", calc);
+        assertEquals("0.16", calc.toString());
+        loadStringToCalc("c-4%^2=", calc);
+        assertEquals("0.0016", calc.toString());
+        loadStringToCalc("c2+-4%^2=", calc);
+        assertEquals("2.0016", calc.toString());
+        loadStringToCalc("c2^-4%=", calc);
+        assertEquals("0.972654947412286", calc.toString());
+
+        //percent inside parentheses isn't taken of the previous value
+        loadStringToCalc("2*(200+5%)=", calc);
+        assertEquals("400.1", calc.toString());
+    }
+
+    @Test
+    public void testSolveCache() {
+        Calculator calc = getTestCalc();
+        SolveCache cache = calc.getSolveCache();
+
+        loadStringToCalc("12*(3+4", calc);
+        long misses = cache.getMissCount();
+        long hits = cache.getHitCount();
+        //the preview already solved this, so equals should just be a lookup
+        loadStringToCalc("=", calc);
+        assertEquals("84", calc.toString());
+        assertEquals(misses, cache.getMissCount());
+        assertEquals(hits + 1, cache.getHitCount());
+
+        //implied multiplies map to the same cached expressions
+        loadStringToCalc("12(3+4)=", calc);
+        assertEquals("84", calc.toString());
+        assertEquals(misses, cache.getMissCount());
+
+        //errors are cached too, and still shown the same way
+        loadStringToCalc("1/0=", calc);
+        loadStringToCalc("c1/0=", calc);
+        assertEquals(Solver.strDivideZeroError, calc.toString());
+        assertTrue(cache.getWeight() <= cache.getMaxWeight());
+    }
+
+    @Test
+    public void testPreviewEdits() {
+        Calculator calc = getTestCalc();
+        SolveCache cache = calc.getSolveCache();
+
+        //typing and backspacing at the end, then editing the middle
+        loadStringToCalc("2(3+4)^2-10%b", calc);
+        calc.setSelection(1, 1);
+        loadStringToCalc("0", calc);
+        calc.setSelection(10, 10);
+        loadStringToCalc("b3", calc);
+        calc.setSelection(13, 13);
+        loadStringToCalc("%", calc);
+        assertEquals("20*(3+4)^3-10%", calc.toString());
+
+        //equals only looks up what the preview already evaluated
+        long misses = cache.getMissCount();
+        loadStringToCalc("=", calc);
+        assertEquals("6174", calc.toString());
+        assertEquals(misses, cache.getMissCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testDeepNesting() {
+        //100000 is ExpressionParser.MAX_DEPTH, the deepest nesting allowed
+        int depth = 100000;
+        Calculator calc = getTestCalc();
+        calc.pasteIntoExpression(repeat("(", depth) + "1" + repeat(")", depth));
+        loadStringToCalc("=", calc);
+        assertEquals("1", calc.toString());
+
+        //missing close parentheses are added back on
+        loadStringToCalc("c", calc);
+        calc.pasteIntoExpression(repeat("1+(", depth) + "1");
+        loadStringToCalc("=", calc);
+        assertEquals("100001", calc.toString());
+
+        loadStringToCalc("c", calc);
+        calc.pasteIntoExpression(repeat("-(", depth) + "2");
+        loadStringToCalc("=", calc);
+        assertEquals("2", calc.toString());
+
+        loadStringToCalc("c", calc);
+        calc.pasteIntoExpression(repeat("2^", depth) + "1");
+        loadStringToCalc("=", calc);
+        assertEquals("Number Too Large", calc.toString());
+
+        loadStringToCalc("c", calc);
+        calc.pasteIntoExpression(repeat("(", depth + 1) + "1");
+        loadStringToCalc("=", calc);
+        assertEquals(Solver.strSyntaxError, calc.toString());
+    }
+
+    @Test
+    public void testLongPasteEdits() {
+        int terms = 25000;
+        Calculator calc = getTestCalc();
+        calc.pasteIntoExpression(repeat("1+", terms) + "1");
+
+        //type and delete in the middle, moving the cursor each time
+        int middle = terms;
+        for (int i = 0; i < 200; i++) {
+            calc.setSelection(middle + i, middle + i);
+            loadStringToCalc("2b2", calc);
+        }
+        assertEquals(repeat("1+", terms / 2) + repeat("2", 200) + repeat("1+", terms / 2) + "1",
+                calc.toString());
+        assertFalse(calc.isExpressionInvalid());
+
+        //the edits are all in the answer, 25000 ones plus the run of twos
+        //with the one that follows it
+        loadStringToCalc("=", calc);
+        assertEquals("2.22222222222222E200", calc.toString());
+    }
+
+    private static String repeat(String str, int times) {
+        StringBuilder sb = new StringBuilder(str.length() * times);
+        for (int i = 0; i < times; i++)
+            sb.append(str);
+        return sb.toString();
+    }
+
+    /**
+     * Everyday arithmetic is evaluated on the fast path, anything it can't do
+     * exactly falls back to BigDecimal
+     */
+    @Test
+    public void testFastPath() {
+        Calculator calc = getTestCalc();
+        String[] fastExps = {"19.99*3+4.50+12.75", "249.99-20%", "365*24*60", "144/12",
+                "-7*-6", "0.1+0.2"};
+        for (String exp : fastExps) {
+            long fast = calc.getFastPathCount();
+            long fallback = calc.getFallbackCount();
+            loadStringToCalc("c" + exp + "=", calc);
+            assertTrue(exp, calc.getFastPathCount() > fast);
+            assertEquals(exp, fallback, calc.getFallbackCount());
+        }
+        long fallback = calc.getFallbackCount();
+        loadStringToCalc("c2^.5=", calc);
+        assertTrue(calc.getFallbackCount() > fallback);
+
+        //answers from the fast path and BigDecimal are interchangeable
+        loadStringToCalc("c19.99*3+4.50+12.75=", calc);
+        assertEquals("77.22", calc.toString());
+        loadStringToCalc("c249.99-20%=", calc);
+        assertEquals("199.992", calc.toString());
+        loadStringToCalc("c1/1024=", calc);
+        assertEquals("0.0009765625", calc.toString());
+        loadStringToCalc("c0.1+0.2=", calc);
+        assertEquals("0.3", calc.toString());
+    }
+
+    /**
+     * Formats a generated corpus of numbers in every format, and compares
+     * them to the DecimalFormat and regex cleanup that formatting used to be
+     * done with
+     */
+    @Test
+    public void testNumberFormatCorpus() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder digits = new StringBuilder(random.nextBoolean() ? "-" : "");
+            int length = 1 + random.nextInt(40);
+            for (int j = 0; j < length; j++)
+                digits.append(random.nextInt(4) == 0 ? '9' : (char) ('0' + random.nextInt(10)));
+            BigDecimal bd = new BigDecimal(new BigInteger(digits.toString()), random.nextInt(80) - 40);
+
+            for (Expression.NumFormat format : Expression.NumFormat.values()) {
+                Expression exp = new Expression(INT_DISPLAY_PRECISION);
+                exp.replaceExpression(bd.toString());
+                exp.roundAndCleanExpression(format);
+                assertEquals(bd + " " + format, referenceFormat(bd, format), exp.toString());
+            }
+        }
+    }
+
+    private String referenceFormat(BigDecimal bd, Expression.NumFormat format) {
+        BigDecimal rounded = bd.round(mcDisp);
+        String str;
+        switch (format) {
+            case NORMAL:
+                String text = bd.toString();
+                int exponent = text.contains("E") ? Integer.parseInt(text.replaceAll(".*E[+-]?", ""))
+                        : INT_DISPLAY_PRECISION + 2;
+                str = exponent < INT_DISPLAY_PRECISION ? rounded.toPlainString() : rounded.toString();
+                break;
+            case PLAIN:
+                str = Math.abs(rounded.scale()) < 25 ? rounded.toPlainString()
+                        : referenceSciNotation(rounded, "0.0E0");
+                break;
+            case SCI_NOTE:
+                str = referenceSciNotation(rounded, "0.0E0");
+                break;
+            default:
+                str = referenceSciNotation(rounded, "##0.0E0");
+        }
+        return str.replaceAll("\\.0*$", "")
+                .replaceAll("(\\.\\d*[1-9])0+$", "$1")
+                .replaceAll("E\\+", "E")
+                .replaceAll("(\\.\\d*?)0+E", "$1E")
+                .replaceAll("\\.E", "E");
+    }
+
+    private static String referenceSciNotation(BigDecimal bd, String pattern) {
+        DecimalFormat formatter = new DecimalFormat(pattern, DecimalFormatSymbols.getInstance(Locale.US));
+        formatter.setMinimumFractionDigits(INT_DISPLAY_PRECISION);
+        return formatter.format(bd);
+    }
+
+    @Test
+    public void testDisplayPrecision() {
+        Calculator calc = getTestCalc();
+        calc.setDisplayPrecision(50);
+        loadStringToCalc("1/7=", calc);
+        assertEquals("0." + repeat("142857", 8) + "14", calc.toString());
+
+        loadStringToCalc("c2^.5=", calc);
+        assertEquals("1.4142135623730950488016887242096980785696718753769", calc.toString());
+
+        //history keeps the precision each result was solved with
+        calc.setDisplayPrecision(Calculator.DISPLAY_PRECISION);
+        loadStringToCalc("c1/7=", calc);
+        assertEquals("0.142857142857143", calc.toString());
+
+        //out of range precisions are clamped
+        calc.setDisplayPrecision(1);
+        assertEquals(Calculator.MIN_DISPLAY_PRECISION, calc.getDisplayPrecision());
+        calc.setDisplayPrecision(Integer.MAX_VALUE);
+        assertEquals(Calculator.MAX_DISPLAY_PRECISION, calc.getDisplayPrecision());
+    }
+
+    @Test
+    public void testRationalMode() {
+        Calculator calc = getTestCalc();
+        //rounding error is visible when decimals are used
+        loadStringToCalc("1/3*3-1=", calc);
+        assertEquals("-1E-17", calc.toString());
+
+        calc.setRationalMode(true);
+        loadStringToCalc("c1/3*3-1=", calc);
+        assertEquals("0", calc.toString());
+
+        //answers stay exact for the next calculation
+        loadStringToCalc("c1/7=", calc);
+        assertEquals("0.142857142857143", calc.toString());
+        loadStringToCalc("*7-1=", calc);
+        assertEquals("0", calc.toString());
+        loadStringToCalc("c(2/3)^3*27/8-1=", calc);
+        assertEquals("0", calc.toString());
+        loadStringToCalc("c1/3+5%=", calc);
+        assertEquals("0.35", calc.toString());
+        loadStringToCalc("c1E20/3=", calc);
+        assertEquals("3.33333333333333E19", calc.toString());
+        loadStringToCalc("c1E-10/3=", calc);
+        assertEquals("0.0000000000333333333333333", calc.toString());
+        //the sign of a fraction binds like the sign of a decimal, -(7/3)^2
+        loadStringToCalc("c-7/3=c^2=", calc);
+        assertEquals("-5.44444444444444", calc.toString());
+
+        //anything not exact falls back to decimals, including errors
+        loadStringToCalc("c2^.5=", calc);
+        assertEquals("1.4142135623731", calc.toString());
+        loadStringToCalc("c1/(3-3)=", calc);
+        assertEquals(Solver.strDivideZeroError, calc.toString());
+        loadStringToCalc("c9E9000*10=", calc);
+        assertEquals(Solver.strInfinityError, calc.toString());
+        //too many bits to keep exact
+        loadStringToCalc("c3^-9000*3^9000=", calc);
+        assertEquals("1", calc.toString());
+
+        calc.setRationalMode(false);
+        loadStringToCalc("c1/3*3-1=", calc);
+        assertEquals("-1E-17", calc.toString());
+    }
+
+    /**
+     * Divides, fractional powers and rounding the answer show every digit of
+     * the display precision asked for
+     */
+    @Test
+    public void testPrecisionDigits() {
+        int[] precisions = {15, 100, 1000};
+        String[] exps = {"1/7", "2^.5", "3.7^123.456", "1.0001^-12345678.9"};
+        for (int precision : precisions) {
+            Calculator calc = getTestCalc();
+            calc.setDisplayPrecision(precision);
+            for (String exp : exps) {
+                loadStringToCalc("c" + exp + "=", calc);
+                String digits = calc.toString().replaceAll("E.*|[-.]|^0\\.0*", "");
+                assertTrue(exp + " at " + precision, digits.length() >= precision - 1);
+            }
+        }
     }
 
     private void clickConvKey(int unitTypePos, int convKeyPos, Calculator calc) {
@@ -31,7 +31,9 @@ import androidx.test.espresso.matcher.BoundedMatcher;
 import androidx.test.espresso.matcher.ViewMatchers;
 import androidx.viewpager.widget.ViewPager;
 
+import com.wolfcola.equatecontinued.Calculator;
 import com.wolfcola.equatecontinued.R;
+import com.wolfcola.equatecontinued.test.IdlingResource.PreviewIdlingResource;
 import com.wolfcola.equatecontinued.test.IdlingResource.ViewPagerIdlingResource;
 
 import org.hamcrest.Description;
@@ -60,6 +62,13 @@ public class EspressoTestUtils {
         return new ViewPagerIdlingResource(vp, "unit_pager");
     }
 
+    public static PreviewIdlingResource getPreviewIdle(MyActivityTestRule activityTestRule) {
+        // register an idling resource that will wait until the result preview
+        // has been solved on its worker thread before checking it
+        Calculator calc = Calculator.getCalculator(activityTestRule.getActivity());
+        return new PreviewIdlingResource(calc, "result_preview");
+    }
+
     public static void assertResultPreviewInvisible() {
         onView(withId(R.id.resultPreview)).check(matches(
                 withEffectiveVisibility(ViewMatchers.Visibility.GONE)));
@@ -0,0 +1,38 @@
+package com.wolfcola.equatecontinued.test.IdlingResource;
+
+import androidx.test.espresso.IdlingResource;
+
+import com.wolfcola.equatecontinued.Calculator;
+
+/**
+ * Idling resource that waits for the result preview to finish solving on its
+ * worker thread before testing can resume.
+ */
+public class PreviewIdlingResource implements IdlingResource {
+    private final Calculator mCalc;
+    private final String mName;
+    private ResourceCallback mResourceCallback;
+
+    public PreviewIdlingResource(Calculator calc, String name) {
+        mCalc = calc;
+        mName = name;
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public boolean isIdleNow() {
+        boolean idle = !mCalc.isPreviewPending();
+        if (idle && mResourceCallback != null)
+            mResourceCallback.onTransitionToIdle();
+        return idle;
+    }
+
+    @Override
+    public void registerIdleTransitionCallback(ResourceCallback resourceCallback) {
+        mResourceCallback = resourceCallback;
+    }
+}
@@ -13,12 +13,14 @@ import static com.wolfcola.equatecontinued.test.EspressoTestUtils.clickPrevAnswe
 import static com.wolfcola.equatecontinued.test.EspressoTestUtils.clickPrevQuery;
 import static com.wolfcola.equatecontinued.test.EspressoTestUtils.clickUnit;
 import static com.wolfcola.equatecontinued.test.EspressoTestUtils.getPagerIdle;
+import static com.wolfcola.equatecontinued.test.EspressoTestUtils.getPreviewIdle;
 import static com.wolfcola.equatecontinued.test.EspressoTestUtils.selectUnitTypeDirect;
 import static com.wolfcola.equatecontinued.test.EspressoTestUtils.setUp;
 
 import androidx.test.espresso.Espresso;
 import androidx.test.runner.AndroidJUnit4;
 
+import com.wolfcola.equatecontinued.test.IdlingResource.PreviewIdlingResource;
 import com.wolfcola.equatecontinued.test.IdlingResource.ViewPagerIdlingResource;
 import com.wolfcola.equatecontinued.view.CalcActivity;
 
@@ -34,18 +36,22 @@ public class TestEspressoCalcActivity {
     public MyActivityTestRule<CalcActivity> mActivityTestRule =
             new MyActivityTestRule<>(CalcActivity.class);
     private ViewPagerIdlingResource mPagerIdle;
+    private PreviewIdlingResource mPreviewIdle;
 
     @Before
     public void setUpTest() {
         setUp(mActivityTestRule);
         mPagerIdle = getPagerIdle(mActivityTestRule);
-        registerIdlingResources(mPagerIdle);
+        mPreviewIdle = getPreviewIdle(mActivityTestRule);
+        registerIdlingResources(mPagerIdle, mPreviewIdle);
     }
 
     @After
     public void unregisterIntentServiceIdlingResource() {
         if (mPagerIdle != null)
             Espresso.unregisterIdlingResources(mPagerIdle);
+        if (mPreviewIdle != null)
+            Espresso.unregisterIdlingResources(mPreviewIdle);
     }
 
 
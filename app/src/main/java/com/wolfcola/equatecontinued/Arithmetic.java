@@ -0,0 +1,452 @@
+package com.wolfcola.equatecontinued;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Performs the individual math operations used when evaluating an expression
+ * tree. All results are rounded to the operating MathContext, and any error
+ * is reported by throwing a {@link SolveException} with a user facing message.
+ * <p>
+ * The sizes of the operands are compared before each operation using only
+ * their precision and scale, so an answer that would be too large is rejected
+ * (and one too small to show becomes 0) without ever expanding something like
+ * 1E999999999 into all of its digits.
+ */
+class Arithmetic {
+    private static final BigDecimal ONE_PERCENT = new BigDecimal("0.01");
+    private static final BigDecimal MAX_LONG = BigDecimal.valueOf(Long.MAX_VALUE);
+    //largest power of ten the calculator works with, anything bigger is too
+    //large and anything smaller than its inverse becomes 0
+    private static final int MAX_EXPONENT = 9000;
+    //extra digits of precision used inside ln and exp
+    private static final int GUARD_DIGITS = 5;
+    //bits needed for each decimal digit, log2(10)
+    private static final double BITS_PER_DIGIT = 3.321928094887362;
+
+    private final MathContext mMcOperate;
+    //ln(10), calculated the first time a fractional power is needed
+    private volatile LogConstants mLogConstants;
+
+    Arithmetic(MathContext mcOperate) {
+        mMcOperate = mcOperate;
+    }
+
+    /**
+     * @return number of digits answers are rounded to
+     */
+    int getPrecision() {
+        return mMcOperate.getPrecision();
+    }
+
+    MathContext getMathContext() {
+        return mMcOperate;
+    }
+
+    BigDecimal add(BigDecimal operand1, BigDecimal operand2) {
+        return sum(operand1, operand2);
+    }
+
+    BigDecimal subtract(BigDecimal operand1, BigDecimal operand2) {
+        return sum(operand1, operand2.negate());
+    }
+
+    BigDecimal multiply(BigDecimal operand1, BigDecimal operand2) {
+        if (operand1.signum() == 0 || operand2.signum() == 0) {
+            //the scale of 0 can still overflow, as in 0E-2000000000*0E-2000000000
+            long scale = (long) operand1.scale() + operand2.scale();
+            if (scale != (int) scale)
+                return BigDecimal.ZERO;
+            return checkRange(operand1.multiply(operand2, mMcOperate));
+        }
+        //the answer is either this power of ten or one more
+        long exponent = exponentOf(operand1) + exponentOf(operand2);
+        checkOverflow(exponent);
+        if (exponent + 1 < -MAX_EXPONENT)
+            return BigDecimal.ZERO;
+        return checkRange(operand1.multiply(operand2, mMcOperate));
+    }
+
+    BigDecimal divide(BigDecimal operand1, BigDecimal operand2) {
+        //catch divide by zero errors
+        if (operand2.signum() == 0)
+            throw new SolveException(Solver.strDivideZeroError);
+        if (operand1.signum() == 0)
+            return checkRange(operand1.divide(operand2, mMcOperate));
+        //the answer is either this power of ten or one less
+        long exponent = exponentOf(operand1) - exponentOf(operand2);
+        checkOverflow(exponent - 1);
+        if (exponent < -MAX_EXPONENT)
+            return BigDecimal.ZERO;
+        return checkRange(operand1.divide(operand2, mMcOperate));
+    }
+
+    /**
+     * Add two numbers. If one of them is below the precision horizon of the
+     * other, it can only nudge the rounding of the answer, so a single digit
+     * stands in for it rather than lining up what could be millions of zeros
+     * between the two (as in 1E999999+1).
+     */
+    private BigDecimal sum(BigDecimal operand1, BigDecimal operand2) {
+        if (operand1.signum() == 0 && operand2.signum() == 0)
+            return checkRange(BigDecimal.valueOf(0, Math.max(operand1.scale(), operand2.scale())));
+        if (isBelowHorizon(operand2, operand1))
+            return checkRange(nudge(operand1, operand2));
+        if (isBelowHorizon(operand1, operand2))
+            return checkRange(nudge(operand2, operand1));
+        return checkRange(operand1.add(operand2, mMcOperate));
+    }
+
+    /**
+     * Returns true if small is too small to change large by more than a
+     * digit past the operating precision, see {@link #nudge}
+     */
+    private boolean isBelowHorizon(BigDecimal small, BigDecimal large) {
+        if (large.signum() == 0)
+            return false;
+        if (small.signum() == 0)
+            //zero doesn't need lining up unless its scale is far away
+            return Math.abs((long) small.scale() - large.scale())
+                    > mMcOperate.getPrecision() + 1;
+        //scale of the sticky digit that would stand in for small
+        long stickyScale = (long) large.scale() + horizonPadding(large) + 1;
+        return exponentOf(small) < -stickyScale;
+    }
+
+    /**
+     * Zeros needed to give large at least one digit more than the operating
+     * precision, so that a sticky digit after it still rounds correctly
+     */
+    private int horizonPadding(BigDecimal large) {
+        return Math.max(0, mMcOperate.getPrecision() + 1 - large.precision());
+    }
+
+    /**
+     * Round large plus a value below its precision horizon. Works the same way
+     * as a sticky bit in floating point: large is padded out past the
+     * operating precision, then a single digit with the sign of small is
+     * placed after it, which rounds exactly the same as small itself would.
+     */
+    private BigDecimal nudge(BigDecimal large, BigDecimal small) {
+        if (small.signum() == 0) {
+            BigDecimal result = large.round(mMcOperate);
+            //keep BigDecimal's preferred scale for a sum, as far as precision allows
+            long preferredScale = Math.max(large.scale(), small.scale());
+            long padding = Math.min(mMcOperate.getPrecision() - result.precision(),
+                    preferredScale - result.scale());
+            return padding > 0 ? result.setScale(result.scale() + (int) padding) : result;
+        }
+        int padding = horizonPadding(large) + 1;
+        BigInteger unscaled = large.unscaledValue().multiply(BigInteger.TEN.pow(padding))
+                .add(BigInteger.valueOf(small.signum()));
+        return new BigDecimal(unscaled, large.scale() + padding).round(mMcOperate);
+    }
+
+    /**
+     * Power of ten of the leading digit of x, such as 2 for 345 or -3 for
+     * 0.00123. Only uses the precision and scale, so it's quick for any size.
+     */
+    private static long exponentOf(BigDecimal x) {
+        return (long) x.precision() - x.scale() - 1;
+    }
+
+    /**
+     * @throws SolveException with {@link Solver#strInfinityError} if an answer
+     *                        with the given power of ten is too large
+     */
+    private static void checkOverflow(long exponent) {
+        if (exponent > MAX_EXPONENT)
+            throw new SolveException(Solver.strInfinityError);
+    }
+
+    /**
+     * Make sure an answer is within the range the calculator works with
+     *
+     * @return the answer, or 0 if it's too small to show (or a 0 with a scale
+     * out of range, such as 0E999999)
+     * @throws SolveException with {@link Solver#strInfinityError} if the answer
+     *                        is too large
+     */
+    private static BigDecimal checkRange(BigDecimal answer) {
+        if (answer.signum() == 0)
+            return Math.abs(answer.scale()) > MAX_EXPONENT ? BigDecimal.ZERO : answer;
+        long exponent = exponentOf(answer);
+        checkOverflow(exponent);
+        if (exponent < -MAX_EXPONENT)
+            return BigDecimal.ZERO;
+        return answer;
+    }
+
+    /**
+     * Raise base to the power of exponent. Integer exponents are calculated by
+     * repeated squaring, other exponents as exp(exponent * ln(base)). The size
+     * of the answer is estimated first, so answers that are too large are
+     * rejected before doing any work, and answers too small to show become 0.
+     *
+     * @throws SolveException with {@link Solver#strInfinityError} if the answer
+     *                        is too large, or {@link Solver#strSyntaxError} if
+     *                        there is no real answer, such as for (-8)^.5
+     */
+    BigDecimal power(BigDecimal base, BigDecimal exponent) {
+        if (exponent.signum() == 0)
+            return BigDecimal.ONE;
+        if (base.signum() == 0) {
+            //same as the old floating point answer for 0^-1
+            if (exponent.signum() < 0)
+                throw new SolveException(Solver.strInfinityError);
+            return BigDecimal.ZERO;
+        }
+
+        boolean integerExponent = exponent.stripTrailingZeros().scale() <= 0;
+        if (base.signum() < 0 && !integerExponent)
+            throw new SolveException(Solver.strSyntaxError);
+        boolean negate = base.signum() < 0 && isOdd(exponent);
+        BigDecimal magnitude = base.abs();
+        if (magnitude.compareTo(BigDecimal.ONE) == 0)
+            return negate ? BigDecimal.ONE.negate() : BigDecimal.ONE;
+
+        //rough power of ten of the answer, before calculating anything
+        double estimate = exponent.doubleValue() * log10(magnitude);
+        if (estimate > MAX_EXPONENT + 1)
+            throw new SolveException(Solver.strInfinityError);
+        if (estimate < -MAX_EXPONENT - 1)
+            return BigDecimal.ZERO;
+
+        BigDecimal result;
+        if (integerExponent && exponent.abs().compareTo(MAX_LONG) <= 0)
+            result = integerPower(magnitude, exponent.longValueExact());
+        else
+            result = fractionalPower(magnitude, exponent, estimate);
+        if (negate)
+            result = result.negate();
+
+        //the estimate was only rough, so check the actual size too
+        return checkRange(result);
+    }
+
+    /**
+     * Exponentiation by squaring, with a few extra digits of precision so the
+     * answer is correct to mMcOperate (the same approach as ANSI X3.274)
+     */
+    private BigDecimal integerPower(BigDecimal base, long exponent) {
+        long n = Math.abs(exponent);
+        MathContext mc = new MathContext(mMcOperate.getPrecision()
+                + Long.toString(n).length() + 1, mMcOperate.getRoundingMode());
+        BigDecimal result = BigDecimal.ONE;
+        BigDecimal square = base;
+        while (n > 0) {
+            if ((n & 1) == 1)
+                result = result.multiply(square, mc);
+            n >>= 1;
+            if (n > 0)
+                square = square.multiply(square, mc);
+        }
+        if (exponent < 0)
+            result = BigDecimal.ONE.divide(result, mc);
+        return result.round(mMcOperate);
+    }
+
+    /**
+     * Calculates base^exponent as exp(exponent * ln(base)) for a positive base.
+     * The work is done in binary fixed point, a BigInteger holding x*2^bits,
+     * so every step inside ln and exp is a plain multiply and shift rather
+     * than a decimal rounding, and only the answer is converted back.
+     *
+     * @param estimate is the rough power of ten of the answer, used to decide
+     *                 how many extra bits ln(base) needs
+     */
+    private BigDecimal fractionalPower(BigDecimal base, BigDecimal exponent, double estimate) {
+        //base = m*10^k with 1 <= m < 10
+        int k = base.precision() - base.scale() - 1;
+        BigDecimal m = base.scaleByPowerOfTen(-k);
+
+        //every bit in the integer part of exponent*ln(base) is a bit of
+        //precision lost from the answer, and so is every bit of exponent and
+        //of the multiples of ln(10) used to reduce base and the answer
+        int bits = (int) ((mMcOperate.getPrecision() + GUARD_DIGITS) * BITS_PER_DIGIT)
+                + (int) Math.max(0, (exponentOf(exponent) + 1) * BITS_PER_DIGIT)
+                + bitLength(k) + bitLength((long) Math.abs(estimate)) + 32;
+        //digits of exponent past this are too small to change the answer
+        int maxScale = (int) (bits / BITS_PER_DIGIT) + 5;
+        if (exponentOf(exponent) < -maxScale)
+            return BigDecimal.ONE;
+        if (exponent.scale() > maxScale)
+            exponent = exponent.setScale(maxScale, RoundingMode.HALF_EVEN);
+
+        BigInteger ln10 = getLn10(bits);
+        BigInteger lnBase = lnReduced(m, bits).add(ln10.multiply(BigInteger.valueOf(k)));
+        //exponent*ln(base), exact apart from the error already in ln(base)
+        BigInteger t = scaleByPowerOfTen(lnBase.multiply(exponent.unscaledValue()),
+                -exponent.scale());
+
+        //e^t = 10^j * e^r with 0 <= r < ln(10)
+        BigInteger[] quotient = t.divideAndRemainder(ln10);
+        BigInteger r = quotient[1];
+        int j = quotient[0].intValueExact();
+        if (r.signum() < 0) {
+            r = r.add(ln10);
+            j--;
+        }
+        //1 <= e^r < 10, so only the bits needed for the answer are converted
+        int answerBits = (int) ((mMcOperate.getPrecision() + GUARD_DIGITS) * BITS_PER_DIGIT);
+        BigInteger result = expReduced(r, bits).shiftRight(bits - answerBits);
+        return fromFixed(result, answerBits).scaleByPowerOfTen(j).round(mMcOperate);
+    }
+
+    /**
+     * Natural log of 1 <= m <= 10 in fixed point, found by Halley's method on
+     * e^y = m starting from the double answer. Each step triples the number
+     * of correct bits, so it only takes a handful of calls to exp.
+     */
+    private static BigInteger lnReduced(BigDecimal m, int bits) {
+        BigInteger x = toFixed(m, bits);
+        BigInteger y = fromDouble(Math.log(m.doubleValue()), bits);
+        //the double answer is good to at least 40 bits
+        for (int good = 40; good < bits; good *= 3) {
+            //y += 2*(x - e^y)/(x + e^y)
+            BigInteger e = expReduced(y, bits);
+            y = y.add(x.subtract(e).shiftLeft(bits + 1).divide(x.add(e)));
+        }
+        return y;
+    }
+
+    /**
+     * e^r in fixed point for a small r (|r| < 3 or so). r is halved h times
+     * so the Taylor series converges in a few terms, then the sum is squared
+     * h times. Squaring doubles the error, so h extra bits are carried.
+     */
+    private static BigInteger expReduced(BigInteger r, int bits) {
+        int halvings = (int) Math.sqrt(bits);
+        int work = bits + halvings + 8;
+        BigInteger x = r.shiftLeft(work - bits - halvings);
+        BigInteger sum = BigInteger.ONE.shiftLeft(work);
+        BigInteger term = sum;
+        for (int n = 1; term.signum() != 0; n++) {
+            term = term.multiply(x).shiftRight(work).divide(BigInteger.valueOf(n));
+            sum = sum.add(term);
+        }
+        for (int i = 0; i < halvings; i++)
+            sum = sum.multiply(sum).shiftRight(work);
+        return sum.shiftRight(work - bits);
+    }
+
+    /**
+     * ln(10) in fixed point, calculated the first time a fractional power
+     * needs that many bits
+     */
+    private BigInteger getLn10(int bits) {
+        LogConstants constants = mLogConstants;
+        if (constants == null || constants.mBits < bits) {
+            constants = new LogConstants(bits, lnReduced(BigDecimal.TEN, bits));
+            mLogConstants = constants;
+        }
+        return constants.mLn10.shiftRight(constants.mBits - bits);
+    }
+
+    /**
+     * x*2^bits, rounded towards 0
+     */
+    private static BigInteger toFixed(BigDecimal x, int bits) {
+        return scaleByPowerOfTen(x.unscaledValue().shiftLeft(bits), -x.scale());
+    }
+
+    /**
+     * x*2^bits, good to the 53 bits of a double
+     */
+    private static BigInteger fromDouble(double x, int bits) {
+        BigInteger fixed = BigInteger.valueOf((long) (x * (1L << 52)));
+        return bits >= 52 ? fixed.shiftLeft(bits - 52) : fixed.shiftRight(52 - bits);
+    }
+
+    /**
+     * Exact value of a fixed point number, since x/2^bits = x*5^bits/10^bits
+     */
+    private static BigDecimal fromFixed(BigInteger x, int bits) {
+        return new BigDecimal(x.multiply(BigInteger.valueOf(5).pow(bits)), bits);
+    }
+
+    /**
+     * x*10^n, rounded towards 0 if n is negative
+     */
+    private static BigInteger scaleByPowerOfTen(BigInteger x, int n) {
+        return n >= 0 ? x.multiply(BigInteger.TEN.pow(n)) : x.divide(BigInteger.TEN.pow(-n));
+    }
+
+    private static int bitLength(long x) {
+        return 64 - Long.numberOfLeadingZeros(Math.abs(x));
+    }
+
+    /**
+     * Rough base 10 log of a positive number, good enough to estimate the size
+     * of an answer
+     */
+    private static double log10(BigDecimal x) {
+        int exponent = x.precision() - x.scale() - 1;
+        return exponent + Math.log10(x.scaleByPowerOfTen(-exponent).doubleValue());
+    }
+
+    /**
+     * Returns true if the integer x is odd, without expanding something like
+     * 1E999999999 into all of its digits
+     */
+    private static boolean isOdd(BigDecimal x) {
+        BigDecimal stripped = x.stripTrailingZeros();
+        return stripped.scale() == 0 && stripped.unscaledValue().testBit(0);
+    }
+
+    /**
+     * Plain percent, such as the 5% in "200*5%", which is just 5*0.01
+     */
+    BigDecimal percent(BigDecimal operand) {
+        return multiply(operand, ONE_PERCENT);
+    }
+
+    /**
+     * Percent of a previous value, such as "200+5%" which is (200)*(1+5*0.01)
+     *
+     * @param base     is the value the percent is taken of, 200 in "200+5%"
+     * @param subtract is true for "200-5%", false for "200+5%"
+     * @param percent  is the percent number itself, 5 in "200+5%"
+     */
+    BigDecimal percentOf(BigDecimal base, boolean subtract, BigDecimal percent) {
+        BigDecimal fraction = percent(percent);
+        BigDecimal factor = subtract ? subtract(BigDecimal.ONE, fraction)
+                : add(BigDecimal.ONE, fraction);
+        return multiply(base, factor);
+    }
+
+    /**
+     * Scales a number by a power of ten that was itself calculated, such
+     * as "5E(3*2)" for 5E6
+     */
+    BigDecimal scaleByPowerOfTen(BigDecimal mantissa, BigDecimal exponent) {
+        BigDecimal stripped = exponent.stripTrailingZeros();
+        //a fractional power of ten isn't allowed
+        if (stripped.scale() > 0)
+            throw new SolveException(Solver.strSyntaxError);
+        if (mantissa.signum() == 0)
+            return checkRange(mantissa);
+        //compare sizes first, so 5E(1E10) is too large rather than unscalable.
+        //Any shift past 2^40 is too large or too small either way.
+        BigDecimal limit = BigDecimal.valueOf(1L << 40);
+        long shift = stripped.max(limit.negate()).min(limit).longValue();
+        long resultExponent = exponentOf(mantissa) + shift;
+        checkOverflow(resultExponent);
+        if (resultExponent < -MAX_EXPONENT)
+            return BigDecimal.ZERO;
+        return new BigDecimal(mantissa.unscaledValue(), (int) (mantissa.scale() - shift));
+    }
+
+    private static final class LogConstants {
+        final int mBits;
+        //ln(10)*2^mBits
+        final BigInteger mLn10;
+
+        LogConstants(int bits, BigInteger ln10) {
+            mBits = bits;
+            mLn10 = ln10;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.wolfcola.equatecontinued;
+
+import com.wolfcola.equatecontinued.unit.Unit;
+import com.wolfcola.equatecontinued.unit.UnitConversion;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Converts every number in a block of pasted text (such as a column or table
+ * copied from a spreadsheet) from one unit to another. The text is read in a
+ * single pass, and each number is replaced by its converted and rounded
+ * answer, so the rest of the text (tabs, new lines, labels) keeps its layout.
+ * Every number is converted with the same {@link UnitConversion}, which is
+ * normally just a multiply by its cached factor.
+ * <p>
+ * Numbers can have commas between groups of three digits and an exponent, such
+ * as "-1,250.5" or "3.2e-4". Commas only group digits when the whole number is
+ * grouped that way, and only until a line has a comma between values (such as
+ * "1,2" or "name,100"). From there on the text is read as a comma separated
+ * list, so "100,200,300" under a CSV header is three values. A number that
+ * touches a letter, such as "A1" or "2nd", is part of a word and is left
+ * alone. Conversion is done in chunks with {@link #convertNext(int)}, so it
+ * can be run off the UI thread and show its progress. Not thread safe, a
+ * conversion should only be used by one thread at a time.
+ */
+public class BulkConversion {
+    private final Solver mSolver;
+    private final UnitConversion mConversion;
+    private final Unit mFromUnit;
+    private final Unit mToUnit;
+    private final String mText;
+    private final MathContext mMCDisplay;
+    private final int mDisplayPrecision;
+    //the converted text so far
+    private final StringBuilder mOut;
+    //index of the next character of mText to read
+    private int mPos;
+    //number of values converted so far
+    private int mCount;
+    //index just past the line mPos is in
+    private int mLineEnd;
+    //true once a line had commas between values, so commas don't group digits
+    private boolean mCommaList;
+
+    /**
+     * @param conversion is the conversion from fromUnit to toUnit
+     */
+    BulkConversion(Solver solver, UnitConversion conversion, Unit fromUnit, Unit toUnit,
+                   String text, int displayPrecision) {
+        mSolver = solver;
+        mConversion = conversion;
+        mFromUnit = fromUnit;
+        mToUnit = toUnit;
+        mText = text;
+        mDisplayPrecision = displayPrecision;
+        mMCDisplay = new MathContext(displayPrecision);
+        mOut = new StringBuilder(text.length() + text.length() / 2);
+    }
+
+    /**
+     * Convert the next few values of the text
+     *
+     * @param maxValues is the most values to convert before returning
+     * @return true if the whole text has been converted
+     */
+    public boolean convertNext(int maxValues) {
+        int converted = 0;
+        int length = mText.length();
+        while (mPos < length && converted < maxValues) {
+            if (mPos >= mLineEnd) {
+                int newLine = mText.indexOf('\n', mPos);
+                mLineEnd = newLine < 0 ? length : newLine + 1;
+                mCommaList |= hasListComma(mPos, mLineEnd);
+            }
+            char c = mText.charAt(mPos);
+            if (isWordChar(c)) {
+                //copy the whole word, including any digits in it, such as "v1.2"
+                int end = mPos + 1;
+                while (end < length && (isWordChar(mText.charAt(end))
+                        || Character.isDigit(mText.charAt(end))
+                        || (mText.charAt(end) == '.' && end + 1 < length
+                        && Character.isDigit(mText.charAt(end + 1)))))
+                    end++;
+                mOut.append(mText, mPos, end);
+                mPos = end;
+                continue;
+            }
+            int end = numberEnd(mPos);
+            if (end == mPos) {
+                mOut.append(c);
+                mPos++;
+                continue;
+            }
+            //a number that runs into a word, such as "2nd", belongs to the word
+            if (end < length && isWordChar(mText.charAt(end))) {
+                mOut.append(mText, mPos, end);
+                mPos = end;
+                continue;
+            }
+            mOut.append(convertValue(mText.substring(mPos, end)));
+            mPos = end;
+            mCount++;
+            converted++;
+        }
+        return isDone();
+    }
+
+    public boolean isDone() {
+        return mPos >= mText.length();
+    }
+
+    /**
+     * @return percent of the text converted so far, from 0 to 100
+     */
+    public int getProgress() {
+        return mText.isEmpty() ? 100 : (int) (mPos * 100L / mText.length());
+    }
+
+    /**
+     * @return number of values converted so far
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return the text converted so far, all of it once {@link #isDone()}
+     */
+    public String getResult() {
+        return mOut.toString();
+    }
+
+    public Unit getFromUnit() {
+        return mFromUnit;
+    }
+
+    public Unit getToUnit() {
+        return mToUnit;
+    }
+
+    /**
+     * Find the end of a number starting at start
+     *
+     * @return index just past the number, or start if there isn't one there
+     */
+    private int numberEnd(int start) {
+        int length = mText.length();
+        int i = start;
+        //a minus after a digit is a dash, such as in "5-10", not a sign
+        if (mText.charAt(i) == '-') {
+            if (i > 0 && Character.isDigit(mText.charAt(i - 1)))
+                return start;
+            i++;
+        }
+        int digits = i;
+        int grouped = mCommaList ? -1 : groupedEnd(i);
+        if (grouped > 0)
+            i = grouped;
+        else
+            while (i < length && Character.isDigit(mText.charAt(i)))
+                i++;
+        if (i < length && mText.charAt(i) == '.' && i + 1 < length
+                && Character.isDigit(mText.charAt(i + 1))) {
+            i++;
+            while (i < length && Character.isDigit(mText.charAt(i)))
+                i++;
+        }
+        //needs at least one digit, so "-" and "." on their own aren't numbers
+        if (i == digits)
+            return start;
+
+        //exponent, only if it has digits
+        if (i < length && (mText.charAt(i) == 'E' || mText.charAt(i) == 'e')) {
+            int exp = i + 1;
+            if (exp < length && (mText.charAt(exp) == '-' || mText.charAt(exp) == '+'))
+                exp++;
+            if (exp < length && Character.isDigit(mText.charAt(exp))) {
+                i = exp;
+                while (i < length && Character.isDigit(mText.charAt(i)))
+                    i++;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Find the end of digits grouped by commas, such as "1,250,000". The first
+     * group is one to three digits, and every group after it exactly three.
+     *
+     * @return index just past the last group, or -1 if the digits at start
+     * aren't grouped by commas
+     */
+    private int groupedEnd(int start) {
+        int length = mText.length();
+        int i = start;
+        while (i < length && Character.isDigit(mText.charAt(i)))
+            i++;
+        if (i == start || i - start > 3)
+            return -1;
+        int groups = 0;
+        //a comma not followed by a digit ends the number, such as in "1,000, 2"
+        while (i + 1 < length && mText.charAt(i) == ','
+                && Character.isDigit(mText.charAt(i + 1))) {
+            int group = i + 1;
+            i = group;
+            while (i < length && Character.isDigit(mText.charAt(i)))
+                i++;
+            if (i - group != 3)
+                return -1;
+            groups++;
+        }
+        return groups == 0 ? -1 : i;
+    }
+
+    /**
+     * @return true if the line from start to end has a comma between values,
+     * such as in "1,2" or "name,100", rather than only commas grouping digits
+     * or followed by a space
+     */
+    private boolean hasListComma(int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = mText.charAt(i);
+            if (c == ',') {
+                if (i + 1 < end && !Character.isWhitespace(mText.charAt(i + 1)))
+                    return true;
+            } else if (Character.isDigit(c)) {
+                //digits after a decimal or in a word can't be grouped
+                char prev = i > start ? mText.charAt(i - 1) : ' ';
+                int grouped = prev == '.' || isWordChar(prev) ? -1 : groupedEnd(i);
+                if (grouped > 0)
+                    i = grouped - 1;
+                else
+                    while (i + 1 < end && Character.isDigit(mText.charAt(i + 1)))
+                        i++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Convert and round a single value, the same way a conversion on the
+     * calculator would display it
+     *
+     * @return the converted answer, or an error message
+     */
+    private String convertValue(String number) {
+        BigDecimal value;
+        try {
+            value = mSolver.convertValue(mConversion, new BigDecimal(number.replace(",", "")));
+        } catch (SolveException e) {
+            return e.getMessage();
+        } catch (NumberFormatException e) {
+            return Solver.strSyntaxError;
+        }
+        //same rule as Expression for when to show an exponent
+        String precise = value.toString();
+        int e = precise.lastIndexOf('E');
+        boolean plain = e >= 0 && Integer.parseInt(precise.substring(
+                precise.charAt(e + 1) == '+' ? e + 2 : e + 1)) < mDisplayPrecision;
+        return NumberFormatter.format(value.round(mMCDisplay), Expression.NumFormat.NORMAL, plain,
+                mDisplayPrecision);
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+}
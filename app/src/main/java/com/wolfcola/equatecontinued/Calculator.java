@@ -5,6 +5,7 @@ import android.content.res.Resources;
 import android.text.Spanned;
 
 import com.wolfcola.equatecontinued.unit.Unit;
+import com.wolfcola.equatecontinued.unit.UnitConversion;
 import com.wolfcola.equatecontinued.unit.UnitType;
 import com.wolfcola.equatecontinued.unit.UnitTypeList;
 import com.wolfcola.equatecontinued.view.ViewUtils;
@@ -14,61 +15,104 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 
 public class Calculator {
     //precision for all calculations
     public static final int DISPLAY_PRECISION = 15;
     public static final int intCalcPrecision = DISPLAY_PRECISION + 2;
+    //range of display precisions the user can choose from, calculations are
+    //always done with a couple more digits than displayed
+    public static final int MIN_DISPLAY_PRECISION = DISPLAY_PRECISION;
+    public static final int MAX_DISPLAY_PRECISION = 5000;
+    private static final int GUARD_DIGITS = intCalcPrecision - DISPLAY_PRECISION;
+    //state saved by older versions, only read to migrate it to STATE_FILENAME
     private static final String FILENAME = "saved_data.json";
+    private static final String STATE_FILENAME = "saved_state.bin";
+    private static final String LOG_FILENAME = "result_log.bin";
+    private static final int STATE_MAGIC = 0x45515331; //"EQS1"
+    //bump when the saved state changes, and keep reading the older versions.
+    //Version 2 saves each UnitType keyed, see UnitTypeList.write()
+    private static final int STATE_VERSION = 2;
+    //how long a save waits for more saves before being written
+    private static final long SAVE_DELAY_MILLIS = 500;
     private static final String JSON_RESULT_LIST = "result_list";
     private static final String JSON_UNIT_TYPE_LIST = "unit_type_array";
     private static final String JSON_EXPRESSION = "expression";
     private static final String JSON_HINTS = "hints";
-    private static final int RESULT_LIST_MAX_SIZE = 100;
+    private static final String JSON_RESULT_LIST_SIZE = "result_list_size";
+    //most results kept in the history list, see setResultListSize()
+    public static final int DEFAULT_RESULT_LIST_SIZE = 100;
+    public static final int MAX_RESULT_LIST_SIZE = 100000;
     //TODO fix warning below by removing reference to mAppContext in calc class
     private static Calculator mCalculator;
     public Preferences mPreferences;
     private Context mAppContext;
+    private Resources mResources;
     //main expression
     private Expression mExpression;
     //object that handles all the math
     private Solver mSolver;
     //string of results; this will be directly manipulated by ResultListFragment
-    private final List<Result> mResultList;
+    private final ResultHistory mResultList;
+    //saves the result list, null for the test calculator
+    private ResultLog mResultLog;
+    //writes the saved state in the background, null for the test calculator
+    private StateSaver mStateSaver;
     // stores the array of various types of units (length, area, volume, etc)
     // as well as current unit type position
     private UnitTypeList mUnitTypeList;
     private boolean mIsTestCalc = false;
     private Preview mPreview;
+    //converts into the other units once a unit is selected, on the preview worker
+    private ConversionPrefetch mPrefetch;
+    //last table requested by getConversionTable(), null if there isn't one.
+    //Solved on the preview worker, which only publishes it if it's still this.
+    private volatile ConversionTable mConversionTable;
+    //solves the preview off the UI thread, a single worker so previews are
+    //solved in order
+    private final Executor mPreviewExecutor;
+    //called from the preview worker every time a new preview or conversion
+    //table is ready
+    private volatile Runnable mOnPreviewUpdateListener;
+    //number of digits results are rounded to, see setDisplayPrecision()
+    private int mDisplayPrecision = DISPLAY_PRECISION;
 
     //------THIS IS FOR TESTING ONLY-----------------
     private Calculator(Resources mockResources) {
-        mResultList = new ArrayList<>();
+        mResultList = new ResultHistory(DEFAULT_RESULT_LIST_SIZE);
         mExpression = new Expression(DISPLAY_PRECISION);
         //mMcOperate = new MathContext(intCalcPrecision);
         mSolver = new Solver(intCalcPrecision);
 
         // try passing a dummy context, make sure we don't actually use Unit Type
         // in test
+        mResources = mockResources;
         mUnitTypeList = new UnitTypeList(mockResources);
         mIsTestCalc = true;
         mPreferences = new Preferences();
 
         //load the calculating precision
         mSolver = new Solver(intCalcPrecision);
-        mPreview = new Preview(mSolver);
+        //solve previews right away so tests can check them after each key
+        mPreviewExecutor = Runnable::run;
+        mPreview = new Preview(mSolver, mPreviewExecutor);
+        mPrefetch = new ConversionPrefetch(mSolver, mPreviewExecutor);
     }
 
     /**
@@ -79,7 +123,7 @@ public class Calculator {
         //save our context
         mAppContext = appContext.getApplicationContext();
 
-        mResultList = new ArrayList<>();
+        mResultList = new ResultHistory(DEFAULT_RESULT_LIST_SIZE);
         mExpression = new Expression(DISPLAY_PRECISION);
         //set the unit type to length by default
         mPreferences = new Preferences();
@@ -88,26 +132,39 @@ public class Calculator {
         mSolver = new Solver(intCalcPrecision);
 
 
-        mPreview = new Preview(mSolver);
+        mPreviewExecutor = Executors.newSingleThreadExecutor();
+        mPreview = new Preview(mSolver, mPreviewExecutor);
+        mPrefetch = new ConversionPrefetch(mSolver, mPreviewExecutor);
 
-        mUnitTypeList = new UnitTypeList(appContext.getResources());
+        mResources = appContext.getResources();
+        mUnitTypeList = new UnitTypeList(mResources);
+        mResultLog = new ResultLog(new File(mAppContext.getFilesDir(), LOG_FILENAME),
+                Executors.newSingleThreadExecutor());
+        mStateSaver = new StateSaver(new File(mAppContext.getFilesDir(), STATE_FILENAME),
+                SAVE_DELAY_MILLIS);
 
 
-        //over-right values above if this works
+        //over-right values above if this works, anything that can't be
+        //loaded is left at its default rather than resetting the whole calc
+        boolean stateLoaded = false;
         try {
             loadState();
-        }
-        //might be from a JSON object not existing (app update)
-        catch (JSONException JE) {
-            //delete the problem JSON file
-            boolean del = mAppContext.deleteFile(FILENAME);
-            String message = "Calculator reset due to JSONException. JSON file "
-                    + (del ? "successfully" : "NOT") + " deleted.";
-            toast(message);
-            resetCalc(); //reset the calc and we should be good
+            stateLoaded = true;
         } catch (Exception e) {
             toast("Exception in Calculator.loadState():" + e);
+            //the saved history length is lost, so keep every logged result
+            setResultListSize(MAX_RESULT_LIST_SIZE);
+        }
+        //the result log is loaded on its own, so the history isn't lost (or
+        //logged over by the next save) when the rest of the state can't be
+        try {
+            if (mResultLog.exists())
+                mResultLog.load(mResultList);
+        } catch (Exception e) {
+            toast("Exception in ResultLog.load():" + e);
         }
+        if (!stateLoaded)
+            setResultListSize(Math.max(DEFAULT_RESULT_LIST_SIZE, mResultList.size()));
     }
 
     //------THIS IS FOR TESTING ONLY-----------------
@@ -131,63 +188,139 @@ public class Calculator {
     }
 
 
-    private void loadState() throws IOException, JSONException {
-        BufferedReader reader = null;
-        try {
-            // open and read the file into a StringBuilder
-            InputStream in = mAppContext.openFileInput(FILENAME);
-            reader = new BufferedReader(new InputStreamReader(in));
-            StringBuilder jsonString = new StringBuilder();
+    private void loadState() throws IOException {
+        File stateFile = new File(mAppContext.getFilesDir(), STATE_FILENAME);
+        if (stateFile.exists()) {
+            //the state has been migrated, so the old JSON isn't needed
+            mAppContext.deleteFile(FILENAME);
+            try (InputStream in = new BufferedInputStream(new FileInputStream(stateFile))) {
+                readState(in);
+            }
+        } else
+            loadJSONState();
+    }
+
+    /**
+     * Load the state saved by older versions as JSON. Each part is loaded on
+     * its own, so a part that can't be read is left at its default without
+     * losing the rest. The JSON file is deleted once the state has been saved
+     * in the binary format.
+     */
+    private void loadJSONState() throws IOException {
+        StringBuilder jsonString = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                mAppContext.openFileInput(FILENAME)))) {
             String line;
             while ((line = reader.readLine()) != null) {
                 // line breaks are omitted and irrelevant
                 jsonString.append(line);
             }
+        } catch (FileNotFoundException e) {
+            // we will ignore this one, since it happens when we start fresh
+            return;
+        }
 
-            // parse the JSON using JSONTokener
-            JSONObject jObjState = (JSONObject) new JSONTokener(jsonString.toString()).nextValue();
-            mExpression = new Expression(jObjState.getJSONObject(JSON_EXPRESSION), DISPLAY_PRECISION);
+        JSONObject jObjState;
+        try {
+            jObjState = new JSONObject(new JSONTokener(jsonString.toString()));
+        } catch (JSONException e) {
+            throw new IOException("Saved state is not JSON", e);
+        }
+        try {
+            mExpression = new Expression(jObjState.getJSONObject(JSON_EXPRESSION), mDisplayPrecision);
+        } catch (JSONException e) {
+            mExpression = new Expression(mDisplayPrecision);
+        }
+        try {
             mPreferences = new Preferences(jObjState.getJSONObject(JSON_HINTS));
+        } catch (JSONException e) {
+            mPreferences = new Preferences();
+        }
 
-            JSONArray jResultArray = jObjState.getJSONArray(JSON_RESULT_LIST);
-            // build the array of results from JSONObjects
+        //set the size first, so none of the saved results are dropped
+        setResultListSize(jObjState.optInt(JSON_RESULT_LIST_SIZE, DEFAULT_RESULT_LIST_SIZE));
+        //older versions saved the results here, they're moved to the
+        //result log the next time the state is saved
+        JSONArray jResultArray = jObjState.optJSONArray(JSON_RESULT_LIST);
+        if (jResultArray != null && !mResultLog.exists()) {
+            // build the array of results from JSONObjects, skipping any that
+            // can't be read
             for (int i = 0; i < jResultArray.length(); i++) {
-                mResultList.add(new Result(jResultArray.getJSONObject(i)));
+                try {
+                    mResultList.add(new Result(jResultArray.getJSONObject(i)));
+                } catch (JSONException ignored) {
+                }
             }
+        }
 
-            mUnitTypeList = new UnitTypeList(mAppContext.getResources(),
+        try {
+            mUnitTypeList = new UnitTypeList(mResources,
                     jObjState.getJSONObject(JSON_UNIT_TYPE_LIST));
-
-        } catch (FileNotFoundException e) {
-            // we will ignore this one, since it happens when we start fresh
-        } finally {
-            if (reader != null)
-                reader.close();
+        } catch (JSONException e) {
+            mUnitTypeList = new UnitTypeList(mResources);
         }
     }
 
-    public void saveState() throws JSONException, IOException {
-        JSONObject jObjState = new JSONObject();
-        jObjState.put(JSON_EXPRESSION, mExpression.toJSON());
-        jObjState.put(JSON_HINTS, mPreferences.toJSON());
+    /**
+     * Save the calculator's state in the background. The state is copied right
+     * away, so the calculator can carry on changing while it's written.
+     * Saves close together are only written once, see {@link StateSaver}.
+     */
+    public void saveState() throws IOException {
+        ByteArrayOutputStream state = new ByteArrayOutputStream();
+        writeState(state);
+        final byte[] stateBytes = state.toByteArray();
+        //results aren't changed once they're in the list, so copying the list
+        //is enough
+        final List<Result> results = new ArrayList<>(mResultList);
+        mStateSaver.save(out -> {
+            //only the results added or deleted since the last save are written
+            mResultLog.sync(results);
+            out.write(stateBytes);
+        });
+    }
 
-        JSONArray jResultArray = new JSONArray();
-        for (Result result : mResultList)
-            jResultArray.put(result.toJSON());
-        jObjState.put(JSON_RESULT_LIST, jResultArray);
+    /**
+     * Write any state saved but not yet written, and wait for it to finish,
+     * such as when the app is closing
+     *
+     * @param timeoutMillis is the longest to wait
+     * @return true if the state was written in time
+     */
+    public boolean flushState(long timeoutMillis) {
+        return mStateSaver.flush(timeoutMillis);
+    }
 
-        jObjState.put(JSON_UNIT_TYPE_LIST, mUnitTypeList.toJSON());
+    /**
+     * Write the state saved by {@link #saveState()}, other than the result
+     * list (which is kept in the result log). Values are written in order in
+     * the binary state format, see {@link StateWriter}.
+     */
+    public void writeState(OutputStream out) throws IOException {
+        StateWriter writer = new StateWriter(out);
+        writer.writeHeader(STATE_MAGIC, STATE_VERSION);
+        mExpression.write(writer);
+        writer.writeString(mPreferences.getPercentButMain());
+        writer.writeString(mPreferences.getPercentButSec());
+        writer.writeInt(mResultList.getCapacity());
+        mUnitTypeList.write(writer);
+    }
 
-        // write the file to disk
-        Writer writer = null;
-        try {
-            OutputStream out = mAppContext.openFileOutput(FILENAME, Context.MODE_PRIVATE);
-            writer = new OutputStreamWriter(out);
-            writer.write(jObjState.toString());
-        } finally {
-            if (writer != null)
-                writer.close();
-        }
+    /**
+     * Load the state written by {@link #writeState(OutputStream)}
+     *
+     * @throws IOException if the state is cut short, or was written by a newer
+     *                     version of the app
+     */
+    public void readState(InputStream in) throws IOException {
+        StateReader reader = new StateReader(in);
+        int version = reader.readHeader(STATE_MAGIC, STATE_VERSION);
+        mExpression = new Expression(reader, mDisplayPrecision);
+        mPreferences = new Preferences();
+        mPreferences.setPercentButMain(reader.readString());
+        mPreferences.setPercentButSec(reader.readString());
+        setResultListSize(reader.readInt());
+        mUnitTypeList = new UnitTypeList(mResources, reader, version);
     }
 
 
@@ -197,14 +330,27 @@ public class Calculator {
      * reflect any changes.
      */
     public void resetCalc() {
+        //the history length is a preference, so it's kept
         mResultList.clear();
+        //clear the log on the writer, after any save in progress, so a save from
+        //before the reset doesn't write the old results back
+        if (mStateSaver != null)
+            mStateSaver.cancelAndRun(mResultLog::clear);
+        mDisplayPrecision = DISPLAY_PRECISION;
         mExpression = new Expression(DISPLAY_PRECISION);
-        mPreview = new Preview(mSolver);
         mPreferences = new Preferences();
 
         //load the calculating precision
         mSolver = new Solver(intCalcPrecision);
 
+        //make sure a preview of the old expression doesn't show up later
+        mPreview.cancel();
+        mPreview = new Preview(mSolver, mPreviewExecutor);
+        mPreview.setOnUpdateListener(mOnPreviewUpdateListener);
+        mPrefetch.cancel();
+        mPrefetch = new ConversionPrefetch(mSolver, mPreviewExecutor);
+        mConversionTable = null;
+
         mUnitTypeList.initialize();
     }
 
@@ -295,8 +441,14 @@ public class Calculator {
 
                 //if we hit an operator other than minus, load in the prev answer
                 if (mExpression.isEmpty() && sKey.matches("[" + Expression.regexNonNegOperators + "]"))
-                    if (!mResultList.isEmpty())
-                        sKey = mResultList.get(mResultList.size() - 1).getAnswerWithoutSep() + sKey;
+                    if (!mResultList.isEmpty()) {
+                        Result prev = mResultList.get(mResultList.size() - 1);
+                        //along with its unrounded value, which solving uses in its place
+                        if (!Expression.isInvalid(prev.getAnswerWithoutSep()))
+                            mExpression.loadRoundedResult(prev.getAnswerWithoutSep(),
+                                    prev.getPreciseAnswer(), prev.getAnswerValue(),
+                                    Expression.NumFormat.NORMAL);
+                    }
 
                 //deal with all other cases in expression
                 boolean requestSolve = mExpression.keyPresses(sKey);
@@ -311,10 +463,27 @@ public class Calculator {
         }
         //want to make a copy of expression so original doesn't change
         mPreview.set(new Expression(mExpression), Expression.NumFormat.NORMAL);
+        //conversions of the old expression are out of date, and the batch is
+        //only started again once a unit is selected, not on every key press
+        mPrefetch.cancel();
 
         return resultFlags;
     }
 
+    /**
+     * Load the answer of a result from the result list into the expression,
+     * the same as passing its text to {@link #parseKeyPressed(String)}. If the
+     * answer becomes the whole expression, its unrounded value is loaded too,
+     * so solving uses that instead of the rounded text.
+     */
+    public CalculatorResultFlags parseResultAnswer(Result result) {
+        String answer = result.getAnswerWithoutSep();
+        CalculatorResultFlags resultFlags = parseKeyPressed(answer);
+        if (mExpression.toString().equals(answer))
+            mExpression.setPreciseResult(result.getPreciseAnswer(), result.getAnswerValue());
+        return resultFlags;
+    }
+
     /**
      * Function used to convert from one unit to another
      *
@@ -331,15 +500,25 @@ public class Calculator {
         //want to add a 1 if we just hit one unit and another
         if (isExpressionEmpty())
             parseKeyPressed("1");
-        //first solve the function
-        boolean solveSuccess = solveAndLoadIntoResultList();
-        //if there solve failed because there was nothing to solve, just leave
-        // (this way result list isn't loaded)
-        if (!solveSuccess)
-            return;
 
-        //next perform numerical unit conversion
-        mSolver.convertFromTo(fromUnit, toUnit, mExpression);
+        UnitConversion conversion = getCurrUnitType().getConversion(fromUnit, toUnit);
+        //the conversion is usually already done, in which case just publish it
+        ConversionPrefetch.Converted converted = mPrefetch.take(mExpression, fromUnit, toUnit,
+                conversion);
+        if (converted != null) {
+            loadResultToArray(converted.mResult);
+            mExpression = new Expression(converted.mExpression);
+        } else {
+            //first solve the function
+            boolean solveSuccess = solveAndLoadIntoResultList();
+            //if there solve failed because there was nothing to solve, just leave
+            // (this way result list isn't loaded)
+            if (!solveSuccess)
+                return;
+
+            //next perform numerical unit conversion
+            mSolver.convertFromTo(conversion, mExpression);
+        }
 
         int fromUnitPos = getCurrUnitType().findUnitPosInUnitArray(fromUnit);
         int toUnitPos = getCurrUnitType().findUnitPosInUnitArray(toUnit);
@@ -349,7 +528,95 @@ public class Calculator {
         mResultList.get(mResultList.size() - 1).setResultUnit(fromUnit, fromUnitPos,
                 toUnit, toUnitPos, mUnitTypeList.getCurrentKey());
         //load the final value into the result list
-        mResultList.get(mResultList.size() - 1).setAnswerWithSep(mExpression.toString());
+        mResultList.get(mResultList.size() - 1).setAnswerWithSep(mExpression.toString(),
+                mExpression.getPreciseResult(), mExpression.getPreciseValue());
+    }
+
+    /**
+     * Start converting the expression into every unit of the current unit type
+     * in the background, so the answer is ready by the time the unit to
+     * convert to is tapped. Called once a unit is selected, when the
+     * expression is done being typed. Conversions that were already done are
+     * dropped, and nothing new is started if no unit is selected.
+     */
+    public void precomputeConversions() {
+        if (!isUnitSelected() || isExpressionEmpty() || isExpressionInvalid()) {
+            mPrefetch.cancel();
+            return;
+        }
+        UnitType unitType = getCurrUnitType();
+        mPrefetch.request(new Expression(mExpression), unitType, unitType.getCurrUnit());
+    }
+
+    /**
+     * Table of the expression converted into every unit of the current unit
+     * type, from the selected unit (or the one last selected). The expression
+     * is solved on the preview worker, the listener set with
+     * {@link #setOnPreviewUpdateListener(Runnable)} is called once the table
+     * is ready. The same table is returned until the expression or unit
+     * changes, so rows that were already converted aren't converted again.
+     *
+     * @return the table, or null if there's nothing to convert or the table
+     * isn't ready yet (see {@link #isConversionTablePending()})
+     */
+    public ConversionTable getConversionTable() {
+        UnitType unitType = getCurrUnitType();
+        if (isExpressionEmpty() || isExpressionInvalid() || unitType.size() == 0) {
+            mConversionTable = null;
+            return null;
+        }
+        Unit fromUnit = unitType.getCurrUnit() != null ? unitType.getCurrUnit()
+                : unitType.getUnit(0);
+        ConversionTable table = mConversionTable;
+        if (table == null || !table.isFor(mExpression, unitType, fromUnit)) {
+            table = new ConversionTable(mSolver, mExpression, unitType, fromUnit);
+            mConversionTable = table;
+            ConversionTable requested = table;
+            mPreviewExecutor.execute(() -> solveConversionTable(requested));
+        }
+        return table.isSolved() ? table : null;
+    }
+
+    /**
+     * @return true if a table was requested by {@link #getConversionTable()}
+     * but isn't solved yet
+     */
+    public boolean isConversionTablePending() {
+        ConversionTable table = mConversionTable;
+        return table != null && !table.isSolved();
+    }
+
+    /**
+     * Solve a requested conversion table, runs on the preview worker
+     */
+    private void solveConversionTable(ConversionTable table) {
+        //skip tables replaced before the worker got to them
+        if (table != mConversionTable)
+            return;
+        table.solve();
+        Runnable listener = mOnPreviewUpdateListener;
+        if (table == mConversionTable && listener != null)
+            listener.run();
+    }
+
+    /**
+     * Conversion of every number in some text (such as a pasted list of
+     * values) from the selected unit into another unit of the current unit
+     * type. Nothing is converted until {@link BulkConversion#convertNext(int)}
+     * is called, which can be done off the UI thread.
+     *
+     * @param toUnit is the unit to convert to
+     * @return the conversion, or null if no unit is selected
+     */
+    public BulkConversion newBulkConversion(String text, Unit toUnit) {
+        UnitType unitType = getCurrUnitType();
+        Unit fromUnit = unitType.getCurrUnit();
+        if (!isUnitSelected() || fromUnit == null)
+            return null;
+        UnitConversion conversion = unitType.getConversion(fromUnit, toUnit);
+        if (conversion == null)
+            return null;
+        return new BulkConversion(mSolver, conversion, fromUnit, toUnit, text, mDisplayPrecision);
     }
 
     /**
@@ -375,9 +642,6 @@ public class Calculator {
 
         //skip result list handling if no result was created
         mResultList.add(result);
-        //if we hit size limit, remove oldest element
-        if (mResultList.size() > RESULT_LIST_MAX_SIZE)
-            mResultList.remove(0);
         //if result had an error, leave before setting units
         if (Expression.isInvalid(result.getAnswerWithoutSep()))
             return false;
@@ -538,6 +802,110 @@ public class Calculator {
         return mExpression.getNumFormat();
     }
 
+    /**
+     * @return cache of solved expressions shared by the preview and solver,
+     * mostly useful for its hit, miss and eviction counts
+     */
+    public SolveCache getSolveCache() {
+        return mSolver.getCache();
+    }
+
+    /**
+     * Change the number of digits results are rounded to, calculations are
+     * done with a couple more. Results already in the history list keep
+     * their precision.
+     *
+     * @param displayPrecision is clamped to between MIN_DISPLAY_PRECISION
+     *                         and MAX_DISPLAY_PRECISION
+     */
+    public void setDisplayPrecision(int displayPrecision) {
+        displayPrecision = Math.max(MIN_DISPLAY_PRECISION,
+                Math.min(MAX_DISPLAY_PRECISION, displayPrecision));
+        if (displayPrecision == mDisplayPrecision)
+            return;
+        mDisplayPrecision = displayPrecision;
+        mExpression.setDisplayPrecision(displayPrecision);
+        mSolver.setPrecision(displayPrecision + GUARD_DIGITS);
+        mConversionTable = null;
+        //show the preview at the new precision
+        if (!isSolved())
+            mPreview.set(new Expression(mExpression), Expression.NumFormat.NORMAL);
+        precomputeConversions();
+    }
+
+    public int getDisplayPrecision() {
+        return mDisplayPrecision;
+    }
+
+    /**
+     * Change the most results kept in the history list. If there are more
+     * results than that, the oldest ones are dropped.
+     *
+     * @param size is clamped to between 1 and MAX_RESULT_LIST_SIZE
+     */
+    public void setResultListSize(int size) {
+        mResultList.setCapacity(Math.max(1, Math.min(MAX_RESULT_LIST_SIZE, size)));
+    }
+
+    public int getResultListSize() {
+        return mResultList.getCapacity();
+    }
+
+    /**
+     * Turn rational mode on or off, where answers such as 1/3 are kept as
+     * exact fractions for later calculations and unit conversions. Only the
+     * displayed answer is rounded.
+     */
+    public void setRationalMode(boolean rational) {
+        if (rational == mSolver.isRationalMode())
+            return;
+        mSolver.setRationalMode(rational);
+        mConversionTable = null;
+        if (!isSolved())
+            mPreview.set(new Expression(mExpression), Expression.NumFormat.NORMAL);
+        precomputeConversions();
+    }
+
+    public boolean isRationalMode() {
+        return mSolver.isRationalMode();
+    }
+
+    /**
+     * @return number of expressions evaluated entirely on the fast path (see
+     * ExactArithmetic) since the last reset, cached answers aren't counted
+     */
+    public long getFastPathCount() {
+        return mSolver.getFastPathCount();
+    }
+
+    /**
+     * @return number of expressions that needed BigDecimal since the last
+     * reset, including the ones that failed with an error
+     */
+    public long getFallbackCount() {
+        return mSolver.getFallbackCount();
+    }
+
+    /**
+     * Previews are solved off the UI thread, so the preview text isn't ready
+     * right after a key press. The listener is called from the preview worker
+     * once it is, and previews requested in the mean time are skipped. It's
+     * also called once a table from {@link #getConversionTable()} is ready.
+     *
+     * @param listener is run on the preview worker thread, null to remove
+     */
+    public void setOnPreviewUpdateListener(Runnable listener) {
+        mOnPreviewUpdateListener = listener;
+        mPreview.setOnUpdateListener(listener);
+    }
+
+    /**
+     * @return true if a preview was requested but hasn't been published yet
+     */
+    public boolean isPreviewPending() {
+        return mPreview.isPending();
+    }
+
     public boolean isPreviewEmpty() {
         return mPreview.isEmpty();
     }
@@ -563,6 +931,14 @@ public class Calculator {
         return mExpression.toString();
     }
 
+    /**
+     * Text of the expression without copying it, only valid until the next
+     * key press
+     */
+    public CharSequence getText() {
+        return mExpression.getText();
+    }
+
     /**
      * Used to store some booleans used by CalculatorActivity after the
      * Calculator class handled the key-press
@@ -0,0 +1,184 @@
+package com.wolfcola.equatecontinued;
+
+import com.wolfcola.equatecontinued.unit.Unit;
+import com.wolfcola.equatecontinued.unit.UnitConversion;
+import com.wolfcola.equatecontinued.unit.UnitType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Converts the expression into every unit of a UnitType in the background
+ * once a unit to convert from is selected, so that tapping the unit to
+ * convert to only has to publish the answer.
+ * <p>
+ * Conversions run on the same single worker as the {@link Preview}, right
+ * after the preview of the same expression, so solving it is usually a cache
+ * hit. As with the preview, a new request abandons the one in progress. A
+ * conversion is only used if the expression, both units, and the conversion
+ * between them are the same as when it was done. The conversion is rebuilt
+ * whenever a unit's value changes (see {@link UnitType#getConversion}), so
+ * conversions done with old currency rates are never used.
+ */
+class ConversionPrefetch {
+    private final Solver mSolver;
+    //runs the conversions, should only have a single thread (or run them
+    //right away) so that requests are handled in order
+    private final Executor mExecutor;
+    //newest request that hasn't been started yet, null if there isn't one
+    private final AtomicReference<Request> mPending;
+    //bumped by every request, conversions are abandoned once out of date
+    private final AtomicLong mGeneration;
+    //conversions of the newest request, null until they're all done
+    private volatile Batch mBatch;
+
+    /**
+     * @param executor is used to do the conversions, should either use a
+     *                 single worker thread or run tasks right away (for tests)
+     */
+    ConversionPrefetch(Solver solver, Executor executor) {
+        mSolver = solver;
+        mExecutor = executor;
+        mPending = new AtomicReference<>();
+        mGeneration = new AtomicLong();
+    }
+
+    /**
+     * Request an expression be converted from a unit into every unit of its
+     * type, replacing any earlier conversions
+     *
+     * @param expr     is the expression that will be converted, must not be
+     *                 changed afterwards
+     * @param fromUnit is the selected unit of unitType
+     */
+    void request(Expression expr, UnitType unitType, Unit fromUnit) {
+        //units are read here rather than on the worker, since the unit type
+        //belongs to the UI thread
+        List<Unit> toUnits = new ArrayList<>(unitType.size());
+        for (int i = 0; i < unitType.size(); i++)
+            toUnits.add(unitType.getUnit(i));
+
+        mBatch = null;
+        Request request = new Request(expr, unitType, fromUnit, toUnits,
+                mGeneration.incrementAndGet());
+        //if a request is already waiting, the worker will just pick up this one
+        if (mPending.getAndSet(request) == null)
+            mExecutor.execute(this::convertPending);
+    }
+
+    /**
+     * Abandon the requested conversions, and drop any that are done
+     */
+    void cancel() {
+        mPending.set(null);
+        mGeneration.incrementAndGet();
+        mBatch = null;
+    }
+
+    /**
+     * Take the conversion of an expression, if it's been done. Once taken,
+     * the rest of the conversions are dropped, since converting changes the
+     * expression anyway.
+     *
+     * @param expr       is the expression about to be converted
+     * @param conversion is the current conversion from fromUnit to toUnit
+     * @return the result of solving expr and the converted answer, or null
+     * if the conversion isn't ready or is out of date
+     */
+    Converted take(Expression expr, Unit fromUnit, Unit toUnit, UnitConversion conversion) {
+        Batch batch = mBatch;
+        if (batch == null || batch.mFromUnit != fromUnit
+                || !batch.mText.equals(expr.toString())
+                || !batch.mPreciseResult.equals(expr.getPreciseResult()))
+            return null;
+        for (Converted converted : batch.mConverted) {
+            if (converted.mToUnit == toUnit && converted.mConversion == conversion) {
+                mBatch = null;
+                return converted;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Convert the newest request, runs on the worker
+     */
+    private void convertPending() {
+        Request request = mPending.getAndSet(null);
+        if (request == null)
+            return;
+        Expression solved = new Expression(request.mExpression);
+        Result result = mSolver.solve(solved, Expression.NumFormat.NORMAL);
+        //errors aren't converted, leave those to the UI thread
+        if (result == null || solved.isInvalid() || solved.isEmpty())
+            return;
+
+        List<Converted> converted = new ArrayList<>(request.mToUnits.size());
+        for (Unit toUnit : request.mToUnits) {
+            if (request.mGeneration != mGeneration.get())
+                return;
+            UnitConversion conversion = request.mUnitType.getConversion(request.mFromUnit,
+                    toUnit);
+            Expression exp = new Expression(solved);
+            mSolver.convertFromTo(conversion, exp);
+            converted.add(new Converted(toUnit, conversion, result, exp));
+        }
+
+        if (request.mGeneration == mGeneration.get())
+            mBatch = new Batch(request, converted);
+    }
+
+    /**
+     * An expression solved and converted into one unit
+     */
+    static final class Converted {
+        final Unit mToUnit;
+        //conversion used, stands in for the version of both unit values
+        final UnitConversion mConversion;
+        //result of solving the expression before it was converted
+        final Result mResult;
+        //the converted answer
+        final Expression mExpression;
+
+        Converted(Unit toUnit, UnitConversion conversion, Result result, Expression expression) {
+            mToUnit = toUnit;
+            mConversion = conversion;
+            mResult = result;
+            mExpression = expression;
+        }
+    }
+
+    private static final class Batch {
+        final String mText;
+        final String mPreciseResult;
+        final Unit mFromUnit;
+        final List<Converted> mConverted;
+
+        Batch(Request request, List<Converted> converted) {
+            mText = request.mExpression.toString();
+            mPreciseResult = request.mExpression.getPreciseResult();
+            mFromUnit = request.mFromUnit;
+            mConverted = converted;
+        }
+    }
+
+    private static final class Request {
+        final Expression mExpression;
+        final UnitType mUnitType;
+        final Unit mFromUnit;
+        final List<Unit> mToUnits;
+        final long mGeneration;
+
+        Request(Expression expression, UnitType unitType, Unit fromUnit, List<Unit> toUnits,
+                long generation) {
+            mExpression = expression;
+            mUnitType = unitType;
+            mFromUnit = fromUnit;
+            mToUnits = toUnits;
+            mGeneration = generation;
+        }
+    }
+}
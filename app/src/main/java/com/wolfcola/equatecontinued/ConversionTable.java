@@ -0,0 +1,133 @@
+package com.wolfcola.equatecontinued;
+
+import com.wolfcola.equatecontinued.unit.Unit;
+import com.wolfcola.equatecontinued.unit.UnitConversion;
+import com.wolfcola.equatecontinued.unit.UnitType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An expression converted from one unit into every unit of its UnitType, for
+ * the conversion table. The table is made on the UI thread, then the
+ * expression is solved once with {@link #solve()} on the preview worker (see
+ * {@link Calculator#getConversionTable()}). Each row is only converted the first time it's asked for (usually
+ * when it scrolls into view), which is just a multiply by the cached factor
+ * of its {@link UnitConversion}. A row is converted again if the value of
+ * either unit has changed since, such as after a currency update.
+ */
+public class ConversionTable {
+    private final Solver mSolver;
+    private final UnitType mUnitType;
+    private final Unit mFromUnit;
+    //units in the same order as their buttons, without the blank buttons
+    private final List<Unit> mUnits;
+    //text and precise result of the expression before it was solved, used
+    //to tell if this table is still for the current expression
+    private final String mText;
+    private final String mPreciseResult;
+    //copy of the expression, solved by solve()
+    private final Expression mSolved;
+    private volatile boolean mIsSolved;
+    //converted answers and the conversions they were made with, null for
+    //rows that haven't been converted yet
+    private final String[] mAnswers;
+    private final UnitConversion[] mConversions;
+
+    /**
+     * @param exp      is the expression to convert, isn't changed
+     * @param fromUnit is the unit of unitType the expression is in
+     */
+    ConversionTable(Solver solver, Expression exp, UnitType unitType, Unit fromUnit) {
+        mSolver = solver;
+        mUnitType = unitType;
+        mFromUnit = fromUnit;
+        mText = exp.toString();
+        mPreciseResult = exp.getPreciseResult();
+
+        mUnits = new ArrayList<>(unitType.size());
+        for (int i = 0; i < unitType.size(); i++) {
+            Unit unit = unitType.getUnit(i);
+            if (!unit.getAbbreviation().isEmpty())
+                mUnits.add(unit);
+        }
+        mAnswers = new String[mUnits.size()];
+        mConversions = new UnitConversion[mUnits.size()];
+
+        mSolved = new Expression(exp);
+    }
+
+    /**
+     * Solve the expression, so the rows can be converted. Runs on the preview
+     * worker, right after the preview of the same expression, so it's usually
+     * a cache hit.
+     */
+    void solve() {
+        mSolver.solve(mSolved, Expression.NumFormat.NORMAL);
+        mIsSolved = true;
+    }
+
+    /**
+     * @return true once {@link #solve()} is done, none of the other methods
+     * should be used before then
+     */
+    boolean isSolved() {
+        return mIsSolved;
+    }
+
+    /**
+     * @return true if this table is of exp converted from fromUnit
+     */
+    boolean isFor(Expression exp, UnitType unitType, Unit fromUnit) {
+        return mUnitType == unitType && mFromUnit == fromUnit
+                && mText.equals(exp.toString())
+                && mPreciseResult.equals(exp.getPreciseResult());
+    }
+
+    /**
+     * @return false if solving the expression gave an error, in which case
+     * none of the rows have an answer
+     */
+    public boolean isValid() {
+        return !mSolved.isInvalid() && !mSolved.isEmpty();
+    }
+
+    /**
+     * @return the solved expression, or the error it gave
+     */
+    public String getSolvedText() {
+        return mSolved.toString();
+    }
+
+    public Unit getFromUnit() {
+        return mFromUnit;
+    }
+
+    public int size() {
+        return mUnits.size();
+    }
+
+    public Unit getUnit(int pos) {
+        return mUnits.get(pos);
+    }
+
+    /**
+     * Get the answer converted into the unit of a row, converting it if it
+     * hasn't been yet
+     *
+     * @param pos is the row, from 0 to size() - 1
+     * @return the rounded answer, an error message, or "" if there's no answer
+     */
+    public String getAnswer(int pos) {
+        if (!isValid())
+            return "";
+        UnitConversion conversion = mUnitType.getConversion(mFromUnit, mUnits.get(pos));
+        if (mAnswers[pos] == null || mConversions[pos] != conversion) {
+            Expression exp = new Expression(mSolved);
+            mSolver.convertFromTo(conversion, exp);
+            mAnswers[pos] = exp.toString();
+            mConversions[pos] = conversion;
+        }
+        return mAnswers[pos];
+    }
+}
@@ -0,0 +1,235 @@
+package com.wolfcola.equatecontinued;
+
+import java.util.Arrays;
+
+/**
+ * Lexical state of every prefix of an {@link Expression}, used to check key
+ * presses without regular expressions. The state after the first n characters
+ * describes the last partial number of those characters, how many
+ * parentheses are left open and whether any of them are invalid (such as the
+ * letters of an error message).
+ * <p>
+ * It also pairs up parentheses. For each prefix it keeps the innermost open
+ * parenthesis that isn't closed yet, and each open parenthesis links to the
+ * one enclosing it, so the open ones form a stack that's never copied. A
+ * close parenthesis is paired with the top of that stack.
+ * <p>
+ * States are packed into ints and kept in arrays, one per prefix or
+ * character. An edit only throws away the states after the edited index, so
+ * typing or deleting at the end of the expression updates a single state, and
+ * a query is just an array lookup.
+ */
+final class EntryState {
+    //the last partial number contains a decimal
+    private static final int DECIMAL = 1;
+    //the last partial number contains an E
+    private static final int E = 1 << 1;
+    //the last partial number ends with "E" or "E-"
+    private static final int ENDS_E = 1 << 2;
+    //the last partial number is just "."
+    private static final int ONLY_DECIMAL = 1 << 3;
+    //the last character was an operator that split off a new number, so the
+    //next character starts the next partial number
+    private static final int NEW_NUMBER = 1 << 4;
+    //one of the characters so far isn't a number, operator or parenthesis
+    private static final int INVALID = 1 << 5;
+    //bits above the flags hold open minus close parentheses
+    private static final int DEPTH_SHIFT = 6;
+
+    private CharSequence mText = "";
+    //mStates[i] is the state of the first i characters of mText
+    private int[] mStates = {NEW_NUMBER};
+    //mInnermost[i] is the innermost open parenthesis in the first i characters
+    //that isn't closed in them, -1 if there isn't one
+    private int[] mInnermost = {-1};
+    //for an open parenthesis at i, mPair[i] is the open enclosing it, for a
+    //close it's the open it closes, -1 if there isn't one
+    private int[] mPair = new int[1];
+    //for an open parenthesis at i, mClose[i] is the close last paired with it,
+    //only current if that close still pairs back to i
+    private int[] mClose = new int[1];
+    //states up to and including this index are up to date
+    private int mValid = 0;
+
+    EntryState() {
+    }
+
+    /**
+     * Copy of other's states, for a copy of its expression
+     */
+    EntryState(EntryState other, CharSequence text) {
+        mText = text;
+        mValid = other.mValid;
+        mStates = Arrays.copyOf(other.mStates, mValid + 1);
+        mInnermost = Arrays.copyOf(other.mInnermost, mValid + 1);
+        mPair = Arrays.copyOf(other.mPair, mValid + 1);
+        mClose = Arrays.copyOf(other.mClose, mValid + 1);
+    }
+
+    /**
+     * Called whenever the expression changes
+     *
+     * @param text        is the new expression
+     * @param changedFrom is the first index of text that might differ from the
+     *                    old expression, 0 if unknown
+     */
+    void edited(CharSequence text, int changedFrom) {
+        mText = text;
+        mValid = Math.max(0, Math.min(mValid, changedFrom));
+    }
+
+    /**
+     * @return open minus close parentheses in the first end characters
+     */
+    int numOpenPara(int end) {
+        return state(end) >> DEPTH_SHIFT;
+    }
+
+    /**
+     * @param index is the index of a close parenthesis
+     * @return index of the open parenthesis it closes, -1 if there isn't one
+     */
+    int findMatchingOpenPara(int index) {
+        state(index + 1);
+        return mPair[index];
+    }
+
+    /**
+     * @param index is the index of an open parenthesis
+     * @return index of the close parenthesis that closes it, -1 if there
+     * isn't one
+     */
+    int findMatchingClosePara(int index) {
+        state(mText.length());
+        int close = mClose[index];
+        boolean current = close >= 0 && close < mValid
+                && mText.charAt(close) == ')' && mPair[close] == index;
+        return current ? close : -1;
+    }
+
+    /**
+     * @return if the last partial number of the first end characters has a
+     * decimal
+     */
+    boolean hasDecimal(int end) {
+        return (state(end) & DECIMAL) != 0;
+    }
+
+    /**
+     * @return if the last partial number of the first end characters has an E
+     */
+    boolean hasE(int end) {
+        return (state(end) & E) != 0;
+    }
+
+    /**
+     * @return if the last partial number of the first end characters ends
+     * with "E" or "E-"
+     */
+    boolean endsWithE(int end) {
+        return (state(end) & ENDS_E) != 0;
+    }
+
+    /**
+     * @return if the last partial number of the first end characters is "."
+     */
+    boolean isOnlyDecimal(int end) {
+        return (state(end) & ONLY_DECIMAL) != 0;
+    }
+
+    /**
+     * @return if any of the first end characters isn't a number, operator,
+     * parenthesis or E
+     */
+    boolean hasInvalidChars(int end) {
+        return (state(end) & INVALID) != 0;
+    }
+
+    private int state(int end) {
+        if (end > mValid) {
+            if (end >= mStates.length) {
+                int size = Math.max(end + 1, mStates.length * 2);
+                mStates = Arrays.copyOf(mStates, size);
+                mInnermost = Arrays.copyOf(mInnermost, size);
+                mPair = Arrays.copyOf(mPair, size);
+                mClose = Arrays.copyOf(mClose, size);
+            }
+            for (int i = mValid; i < end; i++) {
+                char c = mText.charAt(i);
+                char prev = i == 0 ? 0 : mText.charAt(i - 1);
+                mStates[i + 1] = next(mStates[i], prev, c);
+
+                int innermost = mInnermost[i];
+                if (c == '(') {
+                    mPair[i] = innermost;
+                    mClose[i] = -1;
+                    innermost = i;
+                } else if (c == ')') {
+                    mPair[i] = innermost;
+                    if (innermost != -1) {
+                        mClose[innermost] = i;
+                        innermost = mPair[innermost];
+                    }
+                }
+                mInnermost[i + 1] = innermost;
+            }
+            mValid = end;
+        }
+        return mStates[end];
+    }
+
+    /**
+     * Moves the state past one character
+     *
+     * @param prev is the character before c, 0 if c is the first
+     */
+    private static int next(int state, char prev, char c) {
+        int depth = state >> DEPTH_SHIFT;
+        if (c == '(')
+            depth++;
+        else if (c == ')')
+            depth--;
+
+        //once there's an invalid character, every longer prefix has one
+        int invalid = (state & INVALID) != 0 || !isValidChar(c) ? INVALID : 0;
+        int flags = state & ((1 << DEPTH_SHIFT) - 1) & ~INVALID;
+        //an operator splits off a new number, unless it's first or follows an
+        //E or an operator other than - (so the - in "5*-3" is part of "-3")
+        if (isOperator(c) && prev != 0 && prev != 'E' && (prev == '-' || !isOperator(prev)))
+            flags |= NEW_NUMBER;
+        else {
+            boolean first = (flags & NEW_NUMBER) != 0;
+            int kept = first ? 0 : flags & (DECIMAL | E);
+            if (c == '.')
+                kept |= first ? DECIMAL | ONLY_DECIMAL : DECIMAL;
+            else if (c == 'E')
+                kept |= E | ENDS_E;
+            else if (c == '-' && !first && (flags & ENDS_E) != 0)
+                kept |= ENDS_E;
+            flags = kept;
+        }
+        return depth << DEPTH_SHIFT | flags | invalid;
+    }
+
+    /**
+     * @return if c can be part of an expression
+     */
+    static boolean isValidChar(char c) {
+        return (c >= '0' && c <= '9') || c == '.' || c == 'E' || c == '(' || c == ')'
+                || isOperator(c);
+    }
+
+    static boolean isOperator(char c) {
+        switch (c) {
+            case '+':
+            case '-':
+            case '*':
+            case '/':
+            case '^':
+            case '%':
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.wolfcola.equatecontinued;
+
+import java.math.BigDecimal;
+
+/**
+ * Fast path for {@link Arithmetic}, tried before falling back to BigDecimal.
+ * Numbers are kept the same way a BigDecimal keeps them, as an unscaled value
+ * and a scale (12.5 is 125 with a scale of 1), but in a long and an int, so
+ * operations don't allocate anything.
+ * <p>
+ * Every operation is done exactly, so its error bound is zero. It only
+ * succeeds if the answer is short enough that Arithmetic wouldn't have to
+ * round it, in which case the answer is identical to Arithmetic's, down to
+ * the scale. Everyday input like "12.5*3" or "19.99+5%" stays on the fast
+ * path. An operation fails (returns false) for anything else, such as 1/3,
+ * 2^.5, a huge number or an error, and should then be redone with Arithmetic.
+ * <p>
+ * The answer of the last successful operation is left in {@link #mUnscaled}
+ * and {@link #mScale}. Not thread safe.
+ */
+final class ExactArithmetic {
+    //scales past this are left to Arithmetic, which keeps every answer well
+    //inside its range checks
+    private static final int MAX_SCALE = 1000;
+    //largest exponent for a power, larger ones can't give a short answer
+    private static final int MAX_POWER = 64;
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    //answers must be smaller than this, so Arithmetic wouldn't round them
+    private final long mMaxUnscaled;
+    long mUnscaled;
+    int mScale;
+
+    /**
+     * @param precision is the precision Arithmetic rounds its answers to, 0
+     *                  if it doesn't round
+     */
+    ExactArithmetic(int precision) {
+        int digits = POWERS_OF_TEN.length - 1;
+        if (precision > 0)
+            digits = Math.min(precision, digits);
+        mMaxUnscaled = POWERS_OF_TEN[digits];
+    }
+
+    /**
+     * Returns true if value can be used on the fast path, see
+     * {@link #load(long, int)}
+     */
+    static boolean fits(BigDecimal value) {
+        return value.precision() < POWERS_OF_TEN.length && Math.abs(value.scale()) <= MAX_SCALE;
+    }
+
+    /**
+     * Load a number, such as a literal. Unlike answers, numbers that are
+     * loaded may have a digit more than the operating precision, since
+     * Arithmetic uses operands as they are.
+     */
+    boolean load(long unscaled, int scale) {
+        mUnscaled = unscaled;
+        mScale = scale;
+        return true;
+    }
+
+    boolean negate() {
+        mUnscaled = -mUnscaled;
+        return true;
+    }
+
+    boolean add(long unscaled1, int scale1, long unscaled2, int scale2) {
+        int scale = Math.max(scale1, scale2);
+        long aligned1 = shiftLeft(unscaled1, scale - scale1);
+        long aligned2 = shiftLeft(unscaled2, scale - scale2);
+        //both are under 10^18, so the sum can't overflow
+        if (aligned1 == Long.MIN_VALUE || aligned2 == Long.MIN_VALUE)
+            return false;
+        return answer(aligned1 + aligned2, scale);
+    }
+
+    boolean subtract(long unscaled1, int scale1, long unscaled2, int scale2) {
+        return add(unscaled1, scale1, -unscaled2, scale2);
+    }
+
+    boolean multiply(long unscaled1, int scale1, long unscaled2, int scale2) {
+        long product = unscaled1 * unscaled2;
+        if (Math.multiplyHigh(unscaled1, unscaled2) != (product >> 63))
+            return false;
+        return answer(product, (long) scale1 + scale2);
+    }
+
+    /**
+     * Exact quotient, using the scale BigDecimal would: the one closest to
+     * the preferred scale (scale1 - scale2) that still holds every digit
+     */
+    boolean divide(long unscaled1, int scale1, long unscaled2, int scale2) {
+        if (unscaled2 == 0)
+            return false;
+        long preferredScale = (long) scale1 - scale2;
+        for (int extra = 0; extra < POWERS_OF_TEN.length; extra++) {
+            long dividend = shiftLeft(unscaled1, extra);
+            if (dividend == Long.MIN_VALUE)
+                return false;
+            if (dividend % unscaled2 == 0)
+                return answer(dividend / unscaled2, preferredScale + extra);
+        }
+        return false;
+    }
+
+    /**
+     * Powers with a whole exponent, the same special cases as
+     * {@link Arithmetic#power(BigDecimal, BigDecimal)}
+     */
+    boolean power(long baseUnscaled, int baseScale, long expUnscaled, int expScale) {
+        if (expUnscaled == 0)
+            return answer(1, 0);
+        if (baseUnscaled == 0)
+            //0^-1 is an error
+            return expUnscaled > 0 && answer(0, 0);
+
+        long exponent = wholeNumber(expUnscaled, expScale);
+        boolean wholeExponent = exponent != Long.MIN_VALUE;
+        if (baseUnscaled < 0 && !wholeExponent)
+            return false;
+        boolean negate = baseUnscaled < 0 && (exponent & 1) == 1;
+        long magnitude = Math.abs(baseUnscaled);
+        //the base is 1 or -1, such as 1.00
+        if (baseScale >= 0 && baseScale < POWERS_OF_TEN.length
+                && magnitude == POWERS_OF_TEN[baseScale])
+            return answer(negate ? -1 : 1, 0);
+        if (!wholeExponent || Math.abs(exponent) > MAX_POWER)
+            return false;
+
+        long unscaled = 1;
+        for (long i = Math.abs(exponent); i > 0; i--) {
+            long product = unscaled * magnitude;
+            if (Math.multiplyHigh(unscaled, magnitude) != 0 || product < 0)
+                return false;
+            unscaled = product;
+        }
+        long scale = (long) baseScale * Math.abs(exponent);
+        if (Math.abs(scale) > MAX_SCALE)
+            return false;
+        if (exponent < 0 && !divide(1, 0, unscaled, (int) scale))
+            return false;
+        else if (exponent > 0 && !answer(unscaled, scale))
+            return false;
+        if (negate)
+            mUnscaled = -mUnscaled;
+        return true;
+    }
+
+    /**
+     * Plain percent, such as the 5% in "200*5%", which is just 5*0.01
+     */
+    boolean percent(long unscaled, int scale) {
+        return multiply(unscaled, scale, 1, 2);
+    }
+
+    /**
+     * Percent of a previous value, see
+     * {@link Arithmetic#percentOf(BigDecimal, boolean, BigDecimal)}
+     */
+    boolean percentOf(long baseUnscaled, int baseScale, boolean subtract,
+                      long percentUnscaled, int percentScale) {
+        if (!percent(percentUnscaled, percentScale))
+            return false;
+        boolean factor = subtract ? subtract(1, 0, mUnscaled, mScale)
+                : add(1, 0, mUnscaled, mScale);
+        return factor && multiply(baseUnscaled, baseScale, mUnscaled, mScale);
+    }
+
+    /**
+     * Scales a number by a power of ten that was itself calculated, such
+     * as "5E(3*2)" for 5E6
+     */
+    boolean scaleByPowerOfTen(long unscaled, int scale, long expUnscaled, int expScale) {
+        long exponent = wholeNumber(expUnscaled, expScale);
+        if (exponent == Long.MIN_VALUE || Math.abs(exponent) > MAX_SCALE)
+            return false;
+        //0 keeps its scale, just like Arithmetic
+        if (unscaled == 0)
+            return answer(0, scale);
+        return answer(unscaled, scale - exponent);
+    }
+
+    /**
+     * Answer of the last successful operation, formatted the same as
+     * BigDecimal#toString()
+     */
+    @Override
+    public String toString() {
+        return BigDecimal.valueOf(mUnscaled, mScale).toString();
+    }
+
+    private boolean answer(long unscaled, long scale) {
+        if (Math.abs(unscaled) >= mMaxUnscaled || Math.abs(scale) > MAX_SCALE)
+            return false;
+        mUnscaled = unscaled;
+        mScale = (int) scale;
+        return true;
+    }
+
+    /**
+     * unscaled * 10^digits, or Long.MIN_VALUE if that's 10^18 or more
+     */
+    private static long shiftLeft(long unscaled, long digits) {
+        if (unscaled == 0)
+            return 0;
+        if (digits >= POWERS_OF_TEN.length)
+            return Long.MIN_VALUE;
+        long power = POWERS_OF_TEN[(int) digits];
+        if (Math.abs(unscaled) >= POWERS_OF_TEN[POWERS_OF_TEN.length - 1] / power)
+            return Long.MIN_VALUE;
+        return unscaled * power;
+    }
+
+    /**
+     * Value of a whole number, or Long.MIN_VALUE if it has a fraction (or
+     * is too large to bother with)
+     */
+    private static long wholeNumber(long unscaled, int scale) {
+        if (scale <= 0)
+            return shiftLeft(unscaled, -scale);
+        if (scale >= POWERS_OF_TEN.length)
+            return unscaled == 0 ? 0 : Long.MIN_VALUE;
+        long power = POWERS_OF_TEN[scale];
+        return unscaled % power == 0 ? unscaled / power : Long.MIN_VALUE;
+    }
+}
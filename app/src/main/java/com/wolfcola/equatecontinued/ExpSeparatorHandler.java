@@ -36,41 +36,51 @@ public class ExpSeparatorHandler {
         return str.replace(THOUS_SEP, "");
     }
 
-    static private String getSepTextHelper(String str, ArrayList<Integer> indList) {
+    /**
+     * Copies str in a single pass, adding commas to each run of digits as the
+     * run ends. Runs after a decimal or "E" are copied as they are, along with
+     * the character that ends them.
+     */
+    static private String getSepTextHelper(CharSequence str, ArrayList<Integer> indList) {
         if (indList != null) indList.clear();
-        final String regNum = "\\d";
-        final String regSkipNumsAfter = "[E.]";
+        int len = str.length();
+        StringBuilder sb = new StringBuilder(len + len / 3);
         int numCount = 0;
 
-        for (int i = 0; i <= str.length(); i++) {
+        for (int i = 0; i <= len; i++) {
             //check to see if this isn't the last try and we have a number
-            if (i < str.length() && str.substring(i, i + 1).matches(regNum))
+            if (i < len && isDigit(str.charAt(i))) {
                 numCount++;  //we have a number, increment counter
-            else {
-                //insert commas
-                if (numCount > 3) {
-                    for (int j = numCount % 3; j < numCount; j = j + 3) {
-                        if (j == 0) continue;
-                        int comPos = i - numCount + j;
-                        str = str.substring(0, comPos) + THOUS_SEP
-                                + str.substring(comPos);
-                        if (indList != null) indList.add(comPos);
-                        i++; //offset for added commas
-                    }
+                continue;
+            }
+            //copy the number, inserting commas
+            int numStart = i - numCount;
+            for (int j = 0; j < numCount; j++) {
+                if (numCount > 3 && j != 0 && j % 3 == numCount % 3) {
+                    if (indList != null) indList.add(sb.length());
+                    sb.append(THOUS_SEP);
                 }
-                //we're at the end of the string and finished inserted commas, leave
-                if (i == str.length()) break;
-                //skip over numbers directly following decimals (or E)
-                if (str.substring(i, i + 1).matches(regSkipNumsAfter)) {
-                    do {
-                        i++;
-                    }
-                    while (i != str.length() && str.substring(i, i + 1).matches(regNum));
+                sb.append(str.charAt(numStart + j));
+            }
+            numCount = 0;
+            //we're at the end of the string and finished inserted commas, leave
+            if (i == len) break;
+            char c = str.charAt(i);
+            sb.append(c);
+            //skip over numbers directly following decimals (or E)
+            if (c == 'E' || c == '.') {
+                do {
+                    i++;
+                    if (i != len) sb.append(str.charAt(i));
                 }
-                numCount = 0;
+                while (i != len && isDigit(str.charAt(i)));
             }
         }
-        return str;
+        return sb.toString();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
     }
 
     /**
@@ -83,7 +93,7 @@ public class ExpSeparatorHandler {
      * @return String with separators added: eg 1000 returns 1,000; 1420.2425+53
      * returns 1,420.2425+53;
      */
-    public String getSepText(String str) {
+    public String getSepText(CharSequence str) {
         return getSepTextHelper(str, mSepIndexes);
     }
 
@@ -3,23 +3,18 @@ package com.wolfcola.equatecontinued;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.MathContext;
-import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 
 public class Expression {
     public static final String regexDecimal = "\\.";
-    public static final String regexGroupedExponent = "(\\^)";
-    public static final String regexGroupedMultiDiv = "([/*])";
-    public static final String regexGroupedAddSub = "([+-])";
     //note that in []'s only ^, -, and ] need escapes. - doesn't need one if invalid
     public static final String regexNonNegOperators = "+/*^%";
     public static final String regexGroupedNumber = "([-]?\\d*[.]?\\d+[.]?(?:E[+-]?\\d+)?)";
     public static final String regexGroupedNonNegNumber = "((?:(?<=^)[-])?(?:(?<=[*+(/-])[-])?\\d*[.]?\\d+[.]?(?:E[+-]?\\d+)?)";
-    //this isn't really needed anymore, if want non capturing group, use ?:"
-    public static final int numGroupsInRegexGroupedNumber = 1;
     private static final String JSON_EXPRESSION = "expression";
     private static final String JSON_PRECISE = "precise";
     private static final String JSON_START = "sel_start";
@@ -27,15 +22,18 @@ public class Expression {
     private static final String JSON_SOLVED = "sel_end";
     private static final String regexOperators = regexNonNegOperators + "-";
     private static final String regexInvalidChars = "[^0-9()E." + regexOperators + "]";
-    private static final String regexHasInvalidChars = ".*" + regexInvalidChars + ".*";
     private static final String regexAnyValidOperator = "[" + regexOperators + "]";
-    private static final String regexAnyOpExceptPercent = regexAnyValidOperator.replace("%", "");
-    private static final String regexAnyOperatorOrE = "[E" + regexOperators + "]";
-    private static final String regexInvalidStartChar = "[E" + regexNonNegOperators + "]";
-    //the main expression string
-    private String mExpression;
+    //the main expression text, in a gap buffer so edits at the selection don't
+    //copy the whole expression
+    private final GapBuffer mExpression = new GapBuffer();
+    //lexical state of the expression, for checking key presses and pairing
+    //up parentheses
+    private EntryState mEntryState = new EntryState();
     //this string stores the more precise result after solving
     private String mPreciseResult;
+    //the precise result as a number, so it's only parsed once. Null if it
+    //isn't known, such as for a fraction, then it's parsed when needed
+    private BigDecimal mPreciseValue;
     private MathContext mMCDisplay;
     private int mIntDisplayPrecision;
     //highlighted text selection
@@ -78,6 +76,16 @@ public class Expression {
         setSolved(json.getBoolean(JSON_SOLVED));
     }
 
+    /**
+     * Load an expression saved by {@link #write(StateWriter)}
+     */
+    public Expression(StateReader in, int displayPrecision) throws IOException {
+        this(displayPrecision);
+        replaceExpression(in.readString());
+        mPreciseResult = in.readString();
+        setSolved(in.readBoolean());
+    }
+
     /**
      * Used to create a copy of expression.
      *
@@ -85,7 +93,10 @@ public class Expression {
      */
     public Expression(Expression exp) {
         replaceExpression(exp.toString());
+        //same text, so the states carry over and the solver doesn't redo them
+        mEntryState = new EntryState(exp.mEntryState, mExpression);
         mPreciseResult = exp.getPreciseResult();
+        mPreciseValue = exp.getPreciseValue();
         mIntDisplayPrecision = exp.mIntDisplayPrecision;
         mMCDisplay = exp.mMCDisplay;
         mSelectionEnd = exp.getSelectionEnd();
@@ -96,180 +107,46 @@ public class Expression {
     }
 
     /**
-     * Takes a BigDecimal and returns a string formatted in scientific notation.
-     * Has option of returning string in engineering scientific notation, where
-     * the exponent is always a multiple of 3 (eg 53E3 or 360E-9)
-     *
-     * @param bd     is the number to convert into a string in sci notation
-     * @param digits number of digits of precision (eg 5 for 1.2345E8)
-     * @param engStr flag for regular scientific notation, or engineering style.
-     * @return String representation of the number in scientific notation
+     * Adds implied multiples for parenthesis, so )( becomes )*(, #( becomes #*(
+     * and )# becomes )*#. Done in a single pass since the solver also uses this
+     * to normalize expressions for its cache.
      */
-    private static String getSciNotation(BigDecimal bd, int digits, boolean engStr) {
-        String format = engStr ? "##0.0E0" : "0.0E0";
-        DecimalFormat formatter = new DecimalFormat(format);
-        //formatter.setRoundingMode(RoundingMode.HALF_UP);
-        formatter.setMinimumFractionDigits(digits);
-        return formatter.format(bd);
-    }
-
-    /**
-     * Adds parenthesis around power operations
-     */
-    public static String groupPowerOperands(String str) {
-        //search to find "^" (start at 1 so no NPE later; "^3" invalid anyway)
+    public static String addImpliedParMult(CharSequence str) {
+        StringBuilder sb = null;
         for (int i = 1; i < str.length(); i++) {
-            if (str.charAt(i) == '^') {
-                int openPareIndex = 0;
-                int closePareIndex = 0;
-                //first find where to add (
-                //first case is (###)^
-                if (str.charAt(i - 1) == ')') {
-                    for (int k = i - 2; k > 0; k--) {
-                        if (numOpenPara(str.substring(k, i)) == 0) {
-                            openPareIndex = k;
-                            break;
-                        }
-                    }
-                }
-                //second case is just #^
-                else {
-                    String lastNumb = getLastNumb(str.substring(0, i));
-                    //make nonneg (^ is beginning of, not power operator)
-                    lastNumb = lastNumb.replaceAll("^\\-", "");
-                    openPareIndex = i - lastNumb.length();
-                }
-
-                //next find where to add )
-                //first case is ^(###)
-                if (str.charAt(i + 1) == '(') {
-                    for (int k = i + 2; k <= str.length(); k++) {
-                        if (numOpenPara(str.substring(i, k)) == 0) {
-                            closePareIndex = k;
-                            break;
-                        }
-                    }
-                }
-                //second case is just #^
-                else {
-                    String firstNum = getFirstNumb(str.substring(i + 1));
-                    closePareIndex = i + 1 + firstNum.length();
-                }
-
-                //actually add in pares
-                str = str.substring(0, openPareIndex)
-                        + "(" + str.substring(openPareIndex, closePareIndex) + ")"
-                        + str.substring(closePareIndex);
-                //advanced index beyond ^#)
-                i = closePareIndex;
+            char prev = str.charAt(i - 1);
+            char c = str.charAt(i);
+            boolean implied = (c == '(' && (prev == ')' || isDigitOrDecimal(prev)))
+                    || (prev == ')' && isDigitOrDecimal(c));
+            if (implied) {
+                //only copy the string once a multiply actually needs adding
+                if (sb == null)
+                    sb = new StringBuilder(str.length() + 8).append(str, 0, i);
+                sb.append('*');
             }
+            if (sb != null)
+                sb.append(c);
         }
-        return str;
+        return sb == null ? str.toString() : sb.toString();
     }
 
-    /**
-     * Replaces % operators their respective operators
-     */
-    public static String replacePercentOps(String str) {
-        String subStr;
-        String strAfter;
-        for (int i = 0; i < str.length(); i++) {
-            if (str.charAt(i) == '%') {
-                //save beginning portion of string before the %
-                subStr = str.substring(0, i);
-                //get the number that was right before the %
-                String lastNum = getLastNumb(subStr);
-                //trim off the last number
-                subStr = subStr.substring(0, subStr.length() - lastNum.length());
-                //as long as the string isn't empty, find last operator
-                strAfter = str.substring(i + 1);
-                if (!subStr.equals("")) {
-                    String lastOp = subStr.substring(subStr.length() - 1);
-                    //trim off the last operator
-                    subStr = subStr.substring(0, subStr.length() - 1);
-                    //case similar to 2+5% or 2-5%, but no 2+5%3 or 2+5%*3
-                    if (lastOp.matches(regexGroupedAddSub) && !subStr.equals("") &&
-                            (strAfter.equals("") || strAfter.matches(regexGroupedAddSub + ".*$")))
-                        subStr = "(" + subStr + ")*(1" + lastOp + lastNum + "*0.01)";
-                        //cases like 2*3% or 3% or similar
-                    else
-                        subStr = subStr + lastOp + "(" + lastNum + "*0.01)";
-                } else
-                    subStr = "(" + lastNum + "*0.01)";
-                //replace the old contents with the new expression
-                str = subStr + strAfter;
-                //move up i by the diff between the new and old str
-                i = subStr.length();
-            }
-        }
-        return str;
+    private static boolean isDigitOrDecimal(char c) {
+        return (c >= '0' && c <= '9') || c == '.';
     }
 
-    /**
-     * Adds implied multiples for parenthesis
-     */
-    public static String addImpliedParMult(String str) {
-        //first replace all )( with )*(
-        str = str.replaceAll("\\)\\(", "\\)\\*\\(");
-
-        //replace all #( with #*(
-        str = str.replaceAll("([\\d\\.])\\(", "$1\\*\\(");
-
-        //replace all )# with )*#
-        str = str.replaceAll("\\)([\\d\\.])", "\\)\\*$1");
-        return str;
+    private static boolean isOperatorOrE(char c) {
+        return c == 'E' || isOperator(c);
     }
 
-    /**
-     * Searches forward in string for associated close parenthesis given the
-     * index of an open
-     *
-     * @param str            String to look search over
-     * @param firstOpenIndex Index in str of the open parenthesis requiring a mate
-     * @return The index of the associated close parenthesis give the supplied open
-     * returns -1 if no such associated parenthesis was found
-     */
-    public static int findMatchingClosePara(String str, int firstOpenIndex) {
-        if (!str.equals("") && firstOpenIndex != -1) {
-            int paraCount = 0;
-            for (int i = firstOpenIndex; i < str.length(); i++) {
-                if (str.charAt(i) == '(')
-                    paraCount++;
-                else if (str.charAt(i) == ')') {
-                    paraCount--;
-                    if (paraCount == 0) {
-                        return i;
-                    }
-                }
-            }
-        }
-        return -1;
+    private static boolean isOperator(char c) {
+        return EntryState.isOperator(c);
     }
 
     /**
-     * Searches forward in string for associated close parenthesis given the
-     * index of an open
-     *
-     * @param str            String to look search over
-     * @param lastCloseIndex Index in str of the close parenthesis requiring a mate
-     * @return The index of the associated open parenthesis give the supplied close
-     * returns -1 if no such associated parenthesis was found
-     */
-    public static int findMatchingOpenPara(String str, int lastCloseIndex) {
-        if (!str.equals("") && lastCloseIndex != -1) {
-            int paraCount = 0;
-            for (int i = lastCloseIndex; i >= 0; i--) {
-                if (str.charAt(i) == ')')
-                    paraCount++;
-                else if (str.charAt(i) == '(') {
-                    paraCount--;
-                    if (paraCount == 0) {
-                        return i;
-                    }
-                }
-            }
-        }
-        return -1;
+     * Characters that can't start an expression or follow an open parenthesis
+     */
+    private static boolean isInvalidStartChar(char c) {
+        return c == 'E' || (c != '-' && isOperator(c));
     }
 
     /**
@@ -283,51 +160,11 @@ public class Expression {
      * Returns if this expression is has invalid characters
      */
     public static boolean isInvalid(String str) {
-        return str.matches(regexHasInvalidChars);
-    }
-
-    /**
-     * Clean up a string's formatting
-     *
-     * @param sToClean is the string that will be cleaned
-     */
-    static private String cleanFormatting(String sToClean) {
-        //clean off any dangling .'s and .0's
-        sToClean = sToClean.replaceAll("\\.0*$", "");
-
-        //clean off 0's after decimal
-        sToClean = sToClean.replaceAll("(\\.\\d*[1-9])0+$", "$1");
-
-        //remove +'s from #E+#
-        sToClean = sToClean.replaceAll("E\\+", "E");
-
-        //remove 0's before E ei 6.1000E4 to 6.1E4; or 6.000E4 to 6.1E4; but leave
-        // 0E8 and 100E4 as themselves
-        sToClean = sToClean.replaceAll("(\\.\\d*?)0+E", "$1E");
-
-        //remove those pesky decimal points before an E (like 1.E8)
-        sToClean = sToClean.replaceAll("\\.E", "E");
-
-        return sToClean;
-    }
-
-    /**
-     * Counts the number of open vs. number of closed parentheses in the given string
-     *
-     * @param str is String containing parenthesis to count
-     * @return 0 if equal num of open/close para, positive # if more open, neg # if more close
-     */
-    private static int numOpenPara(String str) {
-        int numOpen = 0;
-        int numClose = 0;
         for (int i = 0; i < str.length(); i++) {
-            if (str.charAt(i) == '(')
-                numOpen++;
-            if (str.charAt(i) == ')')
-                numClose++;
+            if (!EntryState.isValidChar(str.charAt(i)))
+                return true;
         }
-
-        return numOpen - numClose;
+        return false;
     }
 
     /**
@@ -357,6 +194,15 @@ public class Expression {
         return "";
     }
 
+    /**
+     * Save the same data as {@link #toJSON()}, in the binary state format
+     */
+    public void write(StateWriter out) throws IOException {
+        out.writeString(toString());
+        out.writeString(mPreciseResult);
+        out.writeBoolean(isSolved());
+    }
+
     public JSONObject toJSON() throws JSONException {
         JSONObject json = new JSONObject();
 
@@ -417,36 +263,41 @@ public class Expression {
             sKey = "(";
         }
 
+        //the rest only looks at single characters, so no regex is needed
+        char key = sKey.charAt(0);
+
         //if just hit equals, and we hit [.0-9(], then clear expression
-        if (isSolved() && sKey.matches("[.0-9(]"))
+        if (isSolved() && (isDigitOrDecimal(key) || key == '('))
             clearExpression();
 
-        if (!isEntryValid(sKey))
+        if (!isEntryValid(key))
             return false;
 
+        char last = charBeforeSelection(1);
         //add implicit * before ( if previous character was #, decimal, or )
-        if (sKey.equals("(") && expressionToSelection().matches(".*[\\d).]$")) {
+        if (key == '(' && (isDigitOrDecimal(last) || last == ')')) {
             sKey = "*" + sKey;
-            markHighlighted(expressionToSelection().length());
+            markHighlighted(getSelectionStart());
         }
 
         //when adding # after ), add multiply
-        if (sKey.matches("[.0-9]") && expressionToSelection().matches(".*[)]$")) {
+        if (isDigitOrDecimal(key) && last == ')') {
             sKey = "*" + sKey;
-            markHighlighted(expressionToSelection().length());
+            markHighlighted(getSelectionStart());
         }
 
+        char secondLast = charBeforeSelection(2);
         //if we have "84*-", replace both the * and the - with the operator
-        if (sKey.matches(regexAnyValidOperator) && expressionToSelection().matches(".*" + regexAnyOpExceptPercent + regexAnyValidOperator + "$")) {
+        if (isOperator(key) && isOperator(last) && isOperator(secondLast) && secondLast != '%') {
             //if we have something highlighted, delete it first
             if (getSelectionEnd() > getSelectionStart()) backspaceAtSelection();
             backspaceAtSelection();
             backspaceAtSelection();
         }
         //if there's already an operator, replace it with the new operator, except for -, let that stack up
-        else if (sKey.matches(regexInvalidStartChar) && expressionToSelection().matches(".*" + regexAnyOpExceptPercent + "$")) {
+        else if (isInvalidStartChar(key) && isOperator(last) && last != '%') {
             //if * is already there, swap operator fo ^
-            if (sKey.equals("*") && expressionToSelection().matches(".*" + "[*]" + "$"))
+            if (key == '*' && last == '*')
                 sKey = "^";
             //if we have something highlighted, delete it first
             if (getSelectionEnd() > getSelectionStart()) backspaceAtSelection();
@@ -463,40 +314,43 @@ public class Expression {
         return false;
     }
 
-    private boolean isEntryValid(String sKey) {
+    private boolean isEntryValid(char key) {
         //check for invalid entries
-        if (sKey.matches(regexHasInvalidChars))
+        if (!isDigitOrDecimal(key) && !isOperatorOrE(key) && key != '(' && key != ')')
             throw new IllegalArgumentException("In addToExpression, invalid sKey...");
 
+        int selStart = getSelectionStart();
+        char last = charBeforeSelection(1);
+
         //don't start with [*/^E] when the expression string is empty or if we opened a para
-        if (sKey.matches(regexInvalidStartChar) && expressionToSelection().matches("(^[-]?$)|(.*[(]$)"))
+        if (isInvalidStartChar(key) && (selStart == 0 || (selStart == 1 && last == '-') || last == '('))
             return false;
 
         //if we already have a decimal or E in the number, don't add a decimal
-        if (sKey.equals(".") && getLastPartialNumb().matches(".*[.E].*"))
-            //lastNumb returns the last num; if expression="4.3+", returns "4.3"; if last key was an operator, allow decimals
-            if (!expressionToSelection().matches(".*" + regexAnyValidOperator + "$"))
+        if (key == '.' && (mEntryState.hasDecimal(selStart) || mEntryState.hasE(selStart)))
+            //last partial number is the last num; if expression="4.3+", it's "4.3"; if last key was an operator, allow decimals
+            if (!isOperator(last))
                 return false;
 
         //if we already have a E in the number, don't add another; also don't add E immediately after an operator
-        if (sKey.equals("E") && (getLastPartialNumb().contains("E") || expressionToSelection().matches(".*" + regexAnyValidOperator + "$")))
+        if (key == 'E' && (mEntryState.hasE(selStart) || isOperator(last)))
             return false;
 
         //if "E" or "E-" was last pressed, only allow [0-9(-]
-        if (getLastPartialNumb().matches(".*E[-]?$"))
-            if (sKey.matches("[^\\d(-]"))
+        if (mEntryState.endsWithE(selStart))
+            if (!(key >= '0' && key <= '9') && key != '(' && key != '-')
                 return false;
 
         //if last digit was only a decimal, don't add any operator or E
-        if (sKey.matches(regexAnyOperatorOrE) && getLastPartialNumb().equals("."))
+        if (isOperatorOrE(key) && mEntryState.isOnlyDecimal(selStart))
             return false;
 
         //don't allow "--" or "65E--"
-        if (sKey.matches("[-]") && expressionToSelection().matches(".*E?[-]"))
+        if (key == '-' && last == '-')
             return false;
 
         //don't allow two %'s in a row, or "5%*" then another "%"
-        return !sKey.matches("%") || !expressionToSelection().matches(".*%" + regexAnyValidOperator + "?$");
+        return key != '%' || !(last == '%' || (isOperator(last) && charBeforeSelection(2) == '%'));
 
         //no problems, return valid entry
     }
@@ -520,7 +374,9 @@ public class Expression {
 
     /**
      * Rounds expression down by a MathContext mcDisp, formats it in sci notation
-     * or not, and replaces the current expression with the result
+     * or not, and replaces the current expression with the result. In rational
+     * mode the expression can also be a fraction such as "(1/3)", which is only
+     * turned into a decimal here.
      *
      * @throws NumberFormatException if Expression not formatted correctly
      */
@@ -533,40 +389,64 @@ public class Expression {
         setFormat(numFormat);
 
         //if formatting messed ("-", "(())"), or number too big, throw error
-        BigDecimal bd = new BigDecimal(getExpression(), mMCDisplay);
+        String preciseResult = getExpression();
+        roundAndClean(preciseResult, Rational.isFraction(preciseResult) ? null
+                : new BigDecimal(preciseResult), numFormat);
+    }
+
+    /**
+     * Same as replacing the expression with preciseResult and calling
+     * {@link #roundAndCleanExpression(NumFormat)}, for an answer the solver
+     * already has as a number, so it isn't parsed back from its text
+     *
+     * @param preciseResult is the text of the answer, which decides if it's
+     *                      displayed in plain or sci notation
+     * @param preciseValue  is the value of preciseResult
+     */
+    public void loadResult(String preciseResult, BigDecimal preciseValue, NumFormat numFormat) {
+        setFormat(numFormat);
+        roundAndClean(preciseResult, preciseValue, numFormat);
+    }
 
-        //only after getExpression() was successfully converted to BigDecimal
+    /**
+     * @param preciseValue is the value of preciseResult, null if it's a
+     *                     fraction
+     */
+    private void roundAndClean(String preciseResult, BigDecimal preciseValue, NumFormat numFormat) {
+        BigDecimal bd = preciseValue != null ? preciseValue.round(mMCDisplay)
+                : Rational.toBigDecimal(preciseResult, mMCDisplay);
+
+        //only after the answer was successfully converted to BigDecimal
         //save the original to precise result for potential later use
-        mPreciseResult = getExpression();
-
-        String formatStr;
-        switch (numFormat) {
-            case NORMAL:
-                //determine if exponent (number after E) is small enough for non-engineering style print, otherwise do regular style
-                if (lastNumbExponent() < mIntDisplayPrecision)
-                    formatStr = bd.toPlainString();
-                else
-                    formatStr = bd.toString();
-                break;
-            case PLAIN:
-                // only if the number after the exponent is reasonably small will we allow a plain format
-                if (Math.abs(bd.scale()) < 25)
-                    formatStr = bd.toPlainString();
-                else
-                    formatStr = getSciNotation(bd, mIntDisplayPrecision, false);
-                break;
-            case SCI_NOTE:
-                formatStr = getSciNotation(bd, mIntDisplayPrecision, false);
-                break;
-            case ENGINEERING:
-                formatStr = getSciNotation(bd, mIntDisplayPrecision, true);
-                break;
-            default:
-                throw new NumberFormatException("Invalid number format");
+        setPreciseResult(preciseResult, preciseValue);
+
+        //determine if exponent (number after E) is small enough for non-engineering style print, otherwise do regular style
+        boolean plain = false;
+        if (numFormat == NumFormat.NORMAL) {
+            //a fraction has no E of its own, so use the E of its decimal
+            String exponentOf = Rational.isFraction(mPreciseResult) ? bd.toString() : mPreciseResult;
+            plain = lastNumbExponent(exponentOf) < mIntDisplayPrecision;
         }
 
-        //finally clean the result off and set it in mExpression
-        replaceExpression(cleanFormatting(formatStr));
+        //finally format and clean the result and set it in mExpression
+        replaceExpression(NumberFormatter.format(bd, numFormat, plain, mIntDisplayPrecision));
+    }
+
+    /**
+     * Load an answer that was already rounded and cleaned by a previous solve,
+     * leaves this expression in the same state as replacing the expression with
+     * preciseResult and calling {@link #roundAndCleanExpression(NumFormat)}
+     *
+     * @param rounded       is the rounded and cleaned answer
+     * @param preciseResult is the answer before rounding
+     * @param preciseValue  is the value of preciseResult, null if it isn't known
+     * @param numFormat     is the format the answer was rounded with
+     */
+    public void loadRoundedResult(String rounded, String preciseResult, BigDecimal preciseValue,
+                                  NumFormat numFormat) {
+        setFormat(numFormat);
+        setPreciseResult(preciseResult, preciseValue);
+        replaceExpression(rounded);
     }
 
     /**
@@ -575,9 +455,14 @@ public class Expression {
     public void closeOpenPar() {
         //if more open parentheses then close, add corresponding close para's
         int numCloseParaToAdd = numOpenPara();
-        for (int i = 0; i < numCloseParaToAdd; i++) {
-            setExpression(getExpression() + ")");
-        }
+        if (numCloseParaToAdd <= 0)
+            return;
+        StringBuilder sb = new StringBuilder(numCloseParaToAdd);
+        for (int i = 0; i < numCloseParaToAdd; i++)
+            sb.append(')');
+        int end = length();
+        mExpression.insert(end, sb);
+        mEntryState.edited(mExpression, end);
     }
 
     /**
@@ -589,12 +474,14 @@ public class Expression {
             return;
 
         //make the precise string not precise temporarily for comparison
-        BigDecimal formallyPrec = new BigDecimal(mPreciseResult, mMCDisplay);
-        String formallyPrecCleaned = cleanFormatting(formallyPrec.toString());
+        BigDecimal formallyPrec = mPreciseValue != null ? mPreciseValue.round(mMCDisplay)
+                : Rational.toBigDecimal(mPreciseResult, mMCDisplay);
+        String formallyPrecCleaned = NumberFormatter.clean(formallyPrec.toString());
 
         //find out if expression's first term matches first part of the precise result, if so replace with more precise term
-        if (getFirstNumb().equals(formallyPrecCleaned)) {
-            replaceExpression(getExpression().replaceFirst(regexGroupedNumber, mPreciseResult));
+        String firstNumb = getFirstNumb();
+        if (firstNumb.equals(formallyPrecCleaned)) {
+            replaceExpression(mPreciseResult + getExpression().substring(firstNumb.length()));
         }
     }
 
@@ -602,11 +489,21 @@ public class Expression {
      * Clean off any dangling operators and E's (not parentheses!!) at the END ONLY
      */
     public void cleanDanglingOps() {
+        int length = length();
         //don't want to trim off %'s so long as there's at least one char before it
-        if (getExpression().matches(".+%$")) return;
-        replaceExpression(getExpression().replaceAll(regexAnyOperatorOrE + "+$", ""));
+        if (length > 1 && mExpression.charAt(length - 1) == '%') return;
+        //walk back over the dangling operators, matching them with a regex
+        //would take quadratic time on a long run of them (like "-----")
+        int end = length;
+        while (end > 0 && isOperatorOrE(mExpression.charAt(end - 1)))
+            end--;
         // if result is just ".", remove it
-        replaceExpression(getExpression().replaceAll("^" + regexDecimal + "$", ""));
+        if (end == 1 && mExpression.charAt(0) == '.')
+            end = 0;
+        //only the end is cut off, so the states of the rest are kept
+        mExpression.delete(end, length);
+        mEntryState.edited(mExpression, end);
+        setSelectionToEnd();
     }
 
     public void setSelection(int selectionStart, int selectionEnd) {
@@ -653,7 +550,8 @@ public class Expression {
         if (selStart != selEnd)
             insertAtSelection("");
         else {
-            setExpression(getExpression().substring(0, selStart - 1) + expressionAfterSelectionStart());
+            mExpression.delete(selStart - 1, selStart);
+            mEntryState.edited(mExpression, selStart - 1);
             setSelection(selStart - 1, selStart - 1);
         }
     }
@@ -662,7 +560,7 @@ public class Expression {
      * Returns if this expression is empty
      */
     public boolean isEmpty() {
-        return isEmpty(getExpression());
+        return mExpression.length() == 0;
     }
 
     /**
@@ -676,7 +574,7 @@ public class Expression {
      * Returns if this expression is has invalid characters
      */
     public boolean isInvalid() {
-        return isInvalid(getExpression());
+        return mEntryState.hasInvalidChars(length());
     }
 
     /**
@@ -711,6 +609,25 @@ public class Expression {
         return mPreciseResult;
     }
 
+    /**
+     * Returns the post rounded result as a number, null if it isn't known
+     */
+    public BigDecimal getPreciseValue() {
+        return mPreciseValue;
+    }
+
+    /**
+     * Set the unrounded answer, which {@link #loadPreciseResult()} puts back
+     * in place of its rounded value at the start of the expression
+     *
+     * @param preciseValue is the value of preciseResult, null if it isn't
+     *                     known, then it's parsed from preciseResult when needed
+     */
+    public void setPreciseResult(String preciseResult, BigDecimal preciseValue) {
+        mPreciseResult = preciseResult;
+        mPreciseValue = preciseValue;
+    }
+
     /**
      * @return if there are characters marked for highlighting
      * in the current expression
@@ -739,6 +656,21 @@ public class Expression {
         setSelection(length(), length());
     }
 
+    public int getDisplayPrecision() {
+        return mIntDisplayPrecision;
+    }
+
+    /**
+     * Change the number of digits results are rounded to. The expression
+     * itself isn't changed until the next time it's rounded.
+     */
+    public void setDisplayPrecision(int displayPrecision) {
+        if (displayPrecision <= 0 || displayPrecision == mIntDisplayPrecision)
+            return;
+        mIntDisplayPrecision = displayPrecision;
+        mMCDisplay = new MathContext(mIntDisplayPrecision);
+    }
+
     public NumFormat getNumFormat() {
         return mNumFormat;
     }
@@ -761,7 +693,7 @@ public class Expression {
      * @return length of expression
      */
     public int length() {
-        return getExpression().length();
+        return mExpression.length();
     }
 
     /**
@@ -831,25 +763,21 @@ public class Expression {
      * @return 0 if equal num of open/close para, positive # if more open, neg # if more close
      */
     private int numOpenPara() {
-        return numOpenPara(expressionToSelection());
+        return mEntryState.numOpenPara(getSelectionStart());
     }
 
     private void highlightMatchingPara(String sKey) {
-        String open = "(";
-        String close = ")";
+        //the parenthesis was just added, right before the selection
+        int index = getSelectionStart() - 1;
         int associatedIndex;
-        if (sKey.equals(close)) {
-            //search for backwards for the matching open
-            associatedIndex = findMatchingOpenPara(expressionToSelection(),
-                    expressionToSelection().lastIndexOf(close));
-        } else if (sKey.equals(open) || sKey.equals("*" + open)) {
-            //search for forwards from selection for the matching close
-            associatedIndex = findMatchingClosePara(getExpression(),
-                    getSelectionStart() - 1);
-        } else
+        if (sKey.equals(")"))
+            associatedIndex = mEntryState.findMatchingOpenPara(index);
+        else if (sKey.equals("(") || sKey.equals("*("))
+            associatedIndex = mEntryState.findMatchingClosePara(index);
+        else
             return;
         if (associatedIndex != -1) {
-            int[] tmpArray = {getSelectionStart() - 1, associatedIndex};
+            int[] tmpArray = {index, associatedIndex};
             markHighlighted(tmpArray);
         }
     }
@@ -881,12 +809,31 @@ public class Expression {
         Collections.sort(mHighlightedCharList);
     }
 
-    private String getExpression() {
+    /**
+     * Returns the expression's text without copying it. This is only valid
+     * until the expression is next changed, so use toString() to keep it.
+     */
+    public CharSequence getText() {
         return mExpression;
     }
 
+    private String getExpression() {
+        return mExpression.toString();
+    }
+
     private void setExpression(String tempExp) {
-        mExpression = tempExp;
+        mExpression.replace(tempExp);
+        mEntryState.edited(mExpression, 0);
+    }
+
+    /**
+     * @param n is 1 for the character just before the selection, 2 for the
+     *          one before that, and so on
+     * @return the character, or 0 if there isn't one
+     */
+    private char charBeforeSelection(int n) {
+        int index = getSelectionStart() - n;
+        return index < 0 ? 0 : mExpression.charAt(index);
     }
 
     private String expressionToSelection() {
@@ -907,8 +854,8 @@ public class Expression {
     private void insertAtSelection(String toAdd) {
         //delete the current highlighted selection (if it exists)
         if (getSelectionStart() != getSelectionEnd()) {
-            setExpression(getExpression().substring(0, getSelectionStart())
-                    + getExpression().substring(getSelectionEnd(), length()));
+            mExpression.delete(getSelectionStart(), getSelectionEnd());
+            mEntryState.edited(mExpression, getSelectionStart());
             //update the selections to reflected deleted highlighted selection
             setSelection(getSelectionStart(), getSelectionStart());
         }
@@ -927,8 +874,8 @@ public class Expression {
         if (insertLocation > length() || insertLocation < 0)
             return;
         //actually insert text into the expression
-        setExpression(getExpression().substring(0, insertLocation) + toAdd
-                + getExpression().substring(insertLocation, length()));
+        mExpression.insert(insertLocation, toAdd);
+        mEntryState.edited(mExpression, insertLocation);
         //move up the selection start if necessary
         int selStart = getSelectionStart();
         int selEnd = getSelectionEnd();
@@ -945,13 +892,15 @@ public class Expression {
     }
 
     /**
-     * Gets the number after the E in expression (not including + and -)
+     * Gets the number after the E in a number (not including + and -)
      */
-    private int lastNumbExponent() {
-        //func returns "" if expression empty, and expression if doesn't contain E[+-]?
-        if (getExpression().contains("E")) {
-            String[] strA = getExpression().split("E[+-]?");
-            return Integer.parseInt(strA[strA.length - 1]);
+    private int lastNumbExponent(String numb) {
+        int e = numb.lastIndexOf('E');
+        if (e >= 0) {
+            int start = e + 1;
+            if (start < numb.length() && (numb.charAt(start) == '+' || numb.charAt(start) == '-'))
+                start++;
+            return Integer.parseInt(numb.substring(start));
         } else
             //need to be bigger than DISPLAY_PRECISION so calling func uses toString instead of toPlainString
             return mIntDisplayPrecision + 2;
@@ -967,21 +916,6 @@ public class Expression {
         return getFirstNumb(expressionToSelection());
     }
 
-    /**
-     * Gets the last partial number (returned as a String) at selection in current expression
-     *
-     * @return last partial number, invalid or not, or "" if expression empty, or entire expression
-     * if doesn't contain regexAnyValidOperator. Note if expression is "1+-5*" it will return "-5"
-     * This number might be valid (eg "1E3") or invalid, (eg "1E", "1.E-" or "34)")
-     */
-    private String getLastPartialNumb() {
-        String[] strA = expressionToSelection().split("(?<!^|[E*^/%+])" + regexAnyValidOperator);
-        if (strA.length == 0)
-            return "";
-        else
-            return strA[strA.length - 1];
-    }
-
 
     public enum NumFormat {NORMAL, PLAIN, SCI_NOTE, ENGINEERING}
 }
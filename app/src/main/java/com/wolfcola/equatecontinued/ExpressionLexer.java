@@ -0,0 +1,109 @@
+package com.wolfcola.equatecontinued;
+
+import java.util.ArrayList;
+
+/**
+ * Splits an expression string such as "2(3+4.1E-2)^2" into a list of
+ * {@link Token}s in a single pass over the string.
+ */
+class ExpressionLexer {
+
+    private ExpressionLexer() {
+    }
+
+    /**
+     * Tokenize an entire expression string
+     *
+     * @param str is the expression to tokenize, eg "-3*(5E2+1)"
+     * @return list of tokens in the order they appear in str
+     * @throws SolveException with {@link Solver#strSyntaxError} if str
+     *                        contains characters or numbers that can't be
+     *                        tokenized
+     */
+    static ArrayList<Token> tokenize(String str) {
+        ArrayList<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < str.length())
+            i = nextToken(str, i, tokens);
+        return tokens;
+    }
+
+    /**
+     * Reads the token starting at index i of str and adds it to tokens
+     *
+     * @return index of the first character after the token read
+     */
+    static int nextToken(String str, int i, ArrayList<Token> tokens) {
+        char c = str.charAt(i);
+        Token.Kind kind;
+        switch (c) {
+            case '+':
+                kind = Token.Kind.PLUS;
+                break;
+            case '-':
+                kind = Token.Kind.MINUS;
+                break;
+            case '*':
+                kind = Token.Kind.MULTIPLY;
+                break;
+            case '/':
+                kind = Token.Kind.DIVIDE;
+                break;
+            case '^':
+                kind = Token.Kind.POWER;
+                break;
+            case '%':
+                kind = Token.Kind.PERCENT;
+                break;
+            case '(':
+                kind = Token.Kind.OPEN_PARA;
+                break;
+            case ')':
+                kind = Token.Kind.CLOSE_PARA;
+                break;
+            case 'E':
+                //E that isn't part of a number, like "5E(3*2)" or "(6)E5"
+                int end = i + 1;
+                if (end < str.length() && (str.charAt(end) == '-' || str.charAt(end) == '+'))
+                    end++;
+                tokens.add(new Token(Token.Kind.EXPONENT, str.substring(i, end), i));
+                return end;
+            default:
+                if (isDigitOrDecimal(c))
+                    return readNumber(str, i, tokens);
+                throw new SolveException(Solver.strSyntaxError);
+        }
+        tokens.add(new Token(kind, String.valueOf(c), i));
+        return i + 1;
+    }
+
+    /**
+     * Reads a number such as "3", ".5", "2." or "6.1E-4" starting at index
+     * start. If the E isn't followed by digits, as in "5E(3*2)", the number
+     * stops just before the E.
+     */
+    private static int readNumber(String str, int start, ArrayList<Token> tokens) {
+        int i = start;
+        int len = str.length();
+        while (i < len && isDigitOrDecimal(str.charAt(i)))
+            i++;
+
+        if (i < len && str.charAt(i) == 'E') {
+            int k = i + 1;
+            if (k < len && (str.charAt(k) == '-' || str.charAt(k) == '+'))
+                k++;
+            //regular sci notation number, eg "6.1E-4"
+            if (k < len && Character.isDigit(str.charAt(k))) {
+                while (k < len && Character.isDigit(str.charAt(k)))
+                    k++;
+                i = k;
+            }
+        }
+        tokens.add(new Token(Token.Kind.NUMBER, str.substring(start, i), start));
+        return i;
+    }
+
+    private static boolean isDigitOrDecimal(char c) {
+        return (c >= '0' && c <= '9') || c == '.';
+    }
+}
@@ -0,0 +1,363 @@
+package com.wolfcola.equatecontinued;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Operator precedence (shunting yard) parser that compiles an expression
+ * string into an immutable {@link Node} tree. Besides the usual order of
+ * operations, the parser handles the calculator specific rules:
+ * <ul>
+ * <li>implied multiplies, such as "2(3)", "(2)(3)" and "(2)3"</li>
+ * <li>power operands, where "-2^2" is -(2^2) and "2^-3" is 2^(-3)</li>
+ * <li>percents, where "200*5%" is 200*(5*0.01), but "200+5%" is
+ * (200)*(1+5*0.01) when the percent is last or followed by + or -. A minus
+ * right before the number is part of the percent, so "-4%^2" is 0.0016</li>
+ * <li>operands scaled by a calculated exponent, such as "5E(3*2)" or
+ * "(6)E5"</li>
+ * </ul>
+ * The parser makes a single pass over the tokens and keeps its operands and
+ * operators on explicit stacks rather than the call stack, so deeply nested
+ * input (such as a few thousand pasted parentheses) takes linear time and
+ * can't overflow the stack. It follows the same steps as
+ * {@link IncrementalEvaluator}, which builds values instead of nodes.
+ */
+class ExpressionParser {
+    /**
+     * Deepest nesting of parentheses allowed, anything deeper is a syntax
+     * error. The parser and evaluators don't recurse, so this only bounds the
+     * memory used by pasted input.
+     */
+    static final int MAX_DEPTH = 100_000;
+
+    //what the next token is expected to be
+    private static final int MODE_OPERAND = 0;
+    //operand just after a ^, where a unary minus only applies to the operand
+    private static final int MODE_POWER_OPERAND = 1;
+    //number or parentheses just after an E, such as "5E(3*2)"
+    private static final int MODE_SCALE_OPERAND = 2;
+    //operator, postfix, close parenthesis or implied multiply
+    private static final int MODE_OPERATOR = 3;
+    //just after a percent that might be a percent of everything before it,
+    //which depends on the next token
+    private static final int MODE_PERCENT_PENDING = 4;
+
+    private final ArrayList<Node> mOperands = new ArrayList<>();
+    private final ArrayList<Op> mOperators = new ArrayList<>();
+    private int mMode = MODE_OPERAND;
+    //progress through a "+ [sign] number" that might precede a percent of:
+    //1 after the + or -, 2 after the sign and 3 after the number
+    private int mPercentOfStage;
+    //number of open parentheses on the operator stack
+    private int mDepth;
+
+    private ExpressionParser() {
+    }
+
+    /**
+     * Compile an expression into a tree
+     *
+     * @param str is the expression to compile, should already have all of its
+     *            parentheses closed
+     * @return root of the compiled tree, or null if the expression has nothing
+     * to solve (such as "" or "()")
+     * @throws SolveException with {@link Solver#strSyntaxError} if str isn't a
+     *                        valid expression
+     */
+    static Node parse(String str) {
+        return parse(ExpressionLexer.tokenize(str));
+    }
+
+    /**
+     * Compile a list of tokens into a tree, see {@link #parse(String)}
+     */
+    static Node parse(List<Token> tokens) {
+        if (isOnlyParentheses(tokens))
+            return null;
+
+        ExpressionParser parser = new ExpressionParser();
+        for (int i = 0; i < tokens.size(); i++)
+            parser.advance(tokens.get(i));
+        return parser.finish();
+    }
+
+    /**
+     * Returns true if tokens only contain balanced parentheses (or nothing at
+     * all), such as "" or "(())". These have nothing to solve.
+     */
+    private static boolean isOnlyParentheses(List<Token> tokens) {
+        int depth = 0;
+        for (Token t : tokens) {
+            if (t.is(Token.Kind.OPEN_PARA))
+                depth++;
+            else if (t.is(Token.Kind.CLOSE_PARA) && depth > 0)
+                depth--;
+            else
+                return false;
+        }
+        return depth == 0;
+    }
+
+    private static SolveException syntaxError() {
+        return new SolveException(Solver.strSyntaxError);
+    }
+
+    /**
+     * Take in the next token
+     */
+    private void advance(Token token) {
+        if (mMode == MODE_PERCENT_PENDING) {
+            //percent is taken of everything before it only if last or followed by + or -
+            if (token.is(Token.Kind.PLUS) || token.is(Token.Kind.MINUS))
+                applyPercentOf();
+            else
+                applyPercent();
+            mMode = MODE_OPERATOR;
+        }
+
+        int percentOfStage = mPercentOfStage;
+        mPercentOfStage = 0;
+        switch (mMode) {
+            case MODE_OPERAND:
+            case MODE_POWER_OPERAND:
+                advanceOperand(token, percentOfStage);
+                break;
+            case MODE_SCALE_OPERAND:
+                if (token.is(Token.Kind.NUMBER)) {
+                    mOperands.add(new Node.Literal(token));
+                    reduceTop();
+                    mMode = MODE_OPERATOR;
+                } else if (token.is(Token.Kind.OPEN_PARA)) {
+                    pushOpen(Op.OPEN_SCALE_PARA);
+                    mMode = MODE_OPERAND;
+                } else
+                    throw syntaxError();
+                break;
+            default:
+                advanceOperator(token, percentOfStage);
+                break;
+        }
+    }
+
+    /**
+     * Next token should start an operand: a number, parentheses or a sign
+     */
+    private void advanceOperand(Token token, int percentOfStage) {
+        switch (token.kind) {
+            case NUMBER:
+                mOperands.add(new Node.Literal(token));
+                mMode = MODE_OPERATOR;
+                if (percentOfStage == 1 || percentOfStage == 2)
+                    mPercentOfStage = 3;
+                break;
+            case OPEN_PARA:
+                pushOpen(Op.OPEN_PARA);
+                mMode = MODE_OPERAND;
+                break;
+            case MINUS:
+                //"-2^2" is -(2^2), but "2^-3^2" is (2^-3)^2
+                mOperators.add(mMode == MODE_POWER_OPERAND ? Op.NEGATE_EXPONENT : Op.NEGATE);
+                if (percentOfStage == 1)
+                    mPercentOfStage = 2;
+                break;
+            case PLUS:
+                //unary plus does nothing, but still counts as the percent's sign
+                if (percentOfStage == 1)
+                    mPercentOfStage = 2;
+                break;
+            default:
+                throw syntaxError();
+        }
+    }
+
+    /**
+     * Next token follows a complete operand: an operator, a postfix, a close
+     * parenthesis or an operand with an implied multiply
+     */
+    private void advanceOperator(Token token, int percentOfStage) {
+        switch (token.kind) {
+            case PLUS:
+            case MINUS:
+                reduce(Op.ADD.mPrecedence);
+                mOperators.add(token.is(Token.Kind.PLUS) ? Op.ADD : Op.SUBTRACT);
+                mMode = MODE_OPERAND;
+                mPercentOfStage = 1;
+                break;
+            case MULTIPLY:
+            case DIVIDE:
+                reduce(Op.MULTIPLY.mPrecedence);
+                mOperators.add(token.is(Token.Kind.MULTIPLY) ? Op.MULTIPLY : Op.DIVIDE);
+                mMode = MODE_OPERAND;
+                break;
+            case NUMBER:
+            case OPEN_PARA:
+                //implied multiply, such as "2(3)" or "(2)3"
+                reduce(Op.MULTIPLY.mPrecedence);
+                mOperators.add(Op.MULTIPLY);
+                mMode = MODE_OPERAND;
+                advanceOperand(token, 0);
+                break;
+            case POWER:
+                //powers are left associative
+                reduce(Op.POWER.mPrecedence);
+                mOperators.add(Op.POWER);
+                mMode = MODE_POWER_OPERAND;
+                break;
+            case PERCENT:
+                if (percentOfStage == 3)
+                    mMode = MODE_PERCENT_PENDING;
+                else
+                    applyPercent();
+                break;
+            case EXPONENT:
+                mOperators.add(token.text.endsWith("-") ? Op.SCALE_NEGATIVE : Op.SCALE);
+                mMode = MODE_SCALE_OPERAND;
+                break;
+            case CLOSE_PARA:
+                reduce(Op.ADD.mPrecedence);
+                //close without a matching open
+                if (mOperators.isEmpty())
+                    throw syntaxError();
+                mDepth--;
+                if (popOperator() == Op.OPEN_SCALE_PARA)
+                    reduceTop();
+                break;
+            default:
+                throw syntaxError();
+        }
+    }
+
+    private void pushOpen(Op open) {
+        if (++mDepth > MAX_DEPTH)
+            throw syntaxError();
+        mOperators.add(open);
+    }
+
+    /**
+     * Build nodes for the operators on top of the stack until reaching one
+     * with lower precedence than minPrecedence, or an open parenthesis
+     */
+    private void reduce(int minPrecedence) {
+        while (!mOperators.isEmpty()
+                && mOperators.get(mOperators.size() - 1).mPrecedence >= minPrecedence)
+            reduceTop();
+    }
+
+    /**
+     * Build the node for the operator on top of the stack with its operands
+     */
+    private void reduceTop() {
+        Op op = popOperator();
+        Node right = popOperand();
+        if (op == Op.NEGATE || op == Op.NEGATE_EXPONENT) {
+            mOperands.add(new Node.Negate(right));
+            return;
+        }
+        Node left = popOperand();
+        Node node;
+        switch (op) {
+            case ADD:
+                node = new Node.Binary('+', left, right);
+                break;
+            case SUBTRACT:
+                node = new Node.Binary('-', left, right);
+                break;
+            case MULTIPLY:
+                node = new Node.Binary('*', left, right);
+                break;
+            case DIVIDE:
+                node = new Node.Binary('/', left, right);
+                break;
+            case POWER:
+                node = new Node.Binary('^', left, right);
+                break;
+            case SCALE:
+                node = new Node.Scale(left, right);
+                break;
+            case SCALE_NEGATIVE:
+                node = new Node.Scale(left, new Node.Negate(right));
+                break;
+            default:
+                throw new IllegalArgumentException("In ExpressionParser.reduceTop, invalid operator...");
+        }
+        mOperands.add(node);
+    }
+
+    /**
+     * Turn the operand on top into a percent. A minus right before it is part
+     * of the percent, so "-4%^2" is (-0.04)^2 rather than -(0.04^2).
+     */
+    private void applyPercent() {
+        Node operand = popOperand();
+        if (!mOperators.isEmpty()) {
+            Op top = mOperators.get(mOperators.size() - 1);
+            if (top == Op.NEGATE || top == Op.NEGATE_EXPONENT) {
+                popOperator();
+                operand = new Node.Negate(operand);
+            }
+        }
+        mOperands.add(new Node.Percent(operand));
+    }
+
+    /**
+     * Turn the pending "+5%" or "-5%" into a percent of everything before it
+     */
+    private void applyPercentOf() {
+        Node percent = popOperand();
+        if (mOperators.get(mOperators.size() - 1) == Op.NEGATE) {
+            percent = new Node.Negate(percent);
+            popOperator();
+        }
+        boolean subtract = popOperator() == Op.SUBTRACT;
+        mOperands.add(new Node.PercentOf(popOperand(), subtract, percent));
+    }
+
+    /**
+     * Finish off the tree once every token was taken in
+     */
+    private Node finish() {
+        if (mMode == MODE_OPERAND || mMode == MODE_POWER_OPERAND
+                || mMode == MODE_SCALE_OPERAND)
+            throw syntaxError();
+        if (mMode == MODE_PERCENT_PENDING)
+            applyPercentOf();
+        while (!mOperators.isEmpty()) {
+            //open parenthesis that was never closed
+            if (mOperators.get(mOperators.size() - 1).mPrecedence < Op.ADD.mPrecedence)
+                throw syntaxError();
+            reduceTop();
+        }
+        return mOperands.get(0);
+    }
+
+    private Node popOperand() {
+        return mOperands.remove(mOperands.size() - 1);
+    }
+
+    private Op popOperator() {
+        return mOperators.remove(mOperators.size() - 1);
+    }
+
+
+    private enum Op {
+        OPEN_PARA(0),
+        //open parenthesis of a calculated exponent, such as "5E(3*2)"
+        OPEN_SCALE_PARA(0),
+        ADD(1),
+        SUBTRACT(1),
+        MULTIPLY(2),
+        DIVIDE(2),
+        NEGATE(3),
+        POWER(4),
+        //minus sign of an exponent, such as "2^-3"
+        NEGATE_EXPONENT(5),
+        SCALE(6),
+        SCALE_NEGATIVE(6);
+
+        final int mPrecedence;
+
+        Op(int precedence) {
+            mPrecedence = precedence;
+        }
+    }
+}
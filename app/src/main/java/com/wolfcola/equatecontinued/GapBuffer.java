@@ -0,0 +1,116 @@
+package com.wolfcola.equatecontinued;
+
+/**
+ * Text of an {@link Expression}, stored as a gap buffer. The unused part of
+ * the array (the gap) is kept where the last edit happened, so typing or
+ * deleting at the selection only moves the characters between the old and
+ * new edit points, rather than copying the whole expression every key press.
+ * <p>
+ * Reading through {@link CharSequence} doesn't copy anything. toString() is
+ * only built when needed, and is kept until the next edit.
+ */
+final class GapBuffer implements CharSequence {
+    private static final int MIN_GAP = 16;
+
+    private char[] mChars = new char[MIN_GAP];
+    private int mGapStart = 0;
+    private int mGapEnd = MIN_GAP;
+    //toString() of the current text, null after an edit
+    private String mString = "";
+
+    @Override
+    public int length() {
+        return mChars.length - (mGapEnd - mGapStart);
+    }
+
+    @Override
+    public char charAt(int index) {
+        return index < mGapStart ? mChars[index] : mChars[index + mGapEnd - mGapStart];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (mString == null) {
+            char[] text = new char[length()];
+            System.arraycopy(mChars, 0, text, 0, mGapStart);
+            System.arraycopy(mChars, mGapEnd, text, mGapStart, mChars.length - mGapEnd);
+            mString = new String(text);
+        }
+        return mString;
+    }
+
+    /**
+     * Replace all of the text, leaving the gap at the end
+     */
+    void replace(String text) {
+        int size = text.length() + MIN_GAP;
+        if (mChars.length < size || mChars.length > 4 * size)
+            mChars = new char[size];
+        text.getChars(0, text.length(), mChars, 0);
+        mGapStart = text.length();
+        mGapEnd = mChars.length;
+        mString = text;
+    }
+
+    /**
+     * @param index is where to insert, 0 for the start
+     */
+    void insert(int index, CharSequence text) {
+        if (text.length() == 0)
+            return;
+        moveGap(index);
+        if (mGapEnd - mGapStart < text.length())
+            growGap(text.length());
+        for (int i = 0; i < text.length(); i++)
+            mChars[mGapStart++] = text.charAt(i);
+        mString = null;
+    }
+
+    /**
+     * Delete characters from start up to but not including end
+     */
+    void delete(int start, int end) {
+        if (start >= end)
+            return;
+        moveGap(end);
+        mGapStart = start;
+        mString = null;
+    }
+
+    /**
+     * Moves the gap so it starts at index, by copying the characters between
+     * the gap and index to the other side of the gap
+     */
+    private void moveGap(int index) {
+        if (index < mGapStart) {
+            int count = mGapStart - index;
+            System.arraycopy(mChars, index, mChars, mGapEnd - count, count);
+            mGapStart -= count;
+            mGapEnd -= count;
+        } else if (index > mGapStart) {
+            int count = index - mGapStart;
+            System.arraycopy(mChars, mGapEnd, mChars, mGapStart, count);
+            mGapStart += count;
+            mGapEnd += count;
+        }
+    }
+
+    /**
+     * Grow the array so the gap holds at least size characters, doubling so
+     * a long paste done a character at a time is still linear
+     */
+    private void growGap(int size) {
+        int length = length();
+        char[] chars = new char[Math.max(mChars.length * 2, length + size + MIN_GAP)];
+        int after = mChars.length - mGapEnd;
+        System.arraycopy(mChars, 0, chars, 0, mGapStart);
+        System.arraycopy(mChars, mGapEnd, chars, chars.length - after, after);
+        mGapEnd = chars.length - after;
+        mChars = chars;
+    }
+}
@@ -0,0 +1,677 @@
+package com.wolfcola.equatecontinued;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Evaluates an expression one token at a time, keeping a checkpoint of the
+ * evaluation state after every token. When the next expression to evaluate
+ * shares a prefix with the previous one (which is the case for most key
+ * presses, such as typing or backspacing at the end of the expression), only
+ * the tokens after the shared prefix are evaluated again. An edit in the
+ * middle of the expression only throws away the checkpoints after the edit.
+ * <p>
+ * This gives exactly the same answers and errors as compiling the expression
+ * with {@link ExpressionParser} and evaluating the tree, but operands are
+ * evaluated as soon as they are complete, using an operator precedence
+ * (shunting yard) algorithm. The operand and operator stacks are immutable
+ * linked lists, so every checkpoint shares most of its stacks with the
+ * checkpoint before it. Operations are tried on the fast path with an
+ * {@link ExactArithmetic} first, just like {@link Solver} does for trees.
+ * <p>
+ * Not thread safe, each user (such as the Preview) should have its own.
+ * Evaluation can be abandoned part way through (see
+ * {@link #IncrementalEvaluator(BooleanSupplier)}), the checkpoints of the
+ * tokens evaluated so far are kept for the next call.
+ */
+class IncrementalEvaluator {
+    //number of characters past the end of a token the lexer might look at,
+    //eg a "5" followed by "E-2" turns into the number "5E-2"
+    private static final int LEXER_LOOKAHEAD = 3;
+
+    //what the next token is expected to be
+    private static final int MODE_OPERAND = 0;
+    //operand just after a ^, where a unary minus only applies to the operand
+    private static final int MODE_POWER_OPERAND = 1;
+    //number or parentheses just after an E, such as "5E(3*2)"
+    private static final int MODE_SCALE_OPERAND = 2;
+    //operator, postfix, close parenthesis or implied multiply
+    private static final int MODE_OPERATOR = 3;
+    //just after a percent that might be a percent of everything before it,
+    //which depends on the next token, see ExpressionParser#isPercentOfAhead()
+    private static final int MODE_PERCENT_PENDING = 4;
+
+    //checkpoints.get(i) is the state after the first i tokens of mText
+    private final ArrayList<State> mCheckpoints;
+    //scratch list for the lexer, only ever holds the most recent token
+    private final ArrayList<Token> mTokenBuffer;
+    private String mText;
+    private Arithmetic mMath;
+    //fast path, redone with mMath if it fails
+    private ExactArithmetic mExactMath;
+    //true if the last answer came entirely from the fast path
+    private boolean mAnswerExact;
+    //value of the last answer, null if it was empty or an error
+    private BigDecimal mAnswerValue;
+    //checked between operations, evaluation is abandoned once it returns true
+    private final BooleanSupplier mCancelled;
+
+
+    IncrementalEvaluator() {
+        this(null);
+    }
+
+    /**
+     * @param cancelled is checked between operations, once it returns true
+     *                  {@link #evaluate} throws a CancellationException. Null
+     *                  if evaluation can't be cancelled.
+     */
+    IncrementalEvaluator(BooleanSupplier cancelled) {
+        mCancelled = cancelled;
+        mCheckpoints = new ArrayList<>();
+        mTokenBuffer = new ArrayList<>(1);
+        reset(null);
+    }
+
+    /**
+     * Evaluate an expression, reusing the checkpoints of the previously
+     * evaluated expression for the part the two have in common
+     *
+     * @param str  is the cleaned expression to evaluate, eg "2+3(4)"
+     * @param math performs the individual operations, checkpoints are thrown
+     *             away if this isn't the same as the last call
+     * @return the unrounded answer, "" if there was nothing to solve, or one
+     * of the error strings
+     * @throws CancellationException if the cancel signal was set part way
+     *                               through
+     */
+    String evaluate(String str, Arithmetic math) {
+        if (math != mMath)
+            reset(math);
+
+        //keep the checkpoints of tokens that can't have changed
+        int common = commonPrefixLength(mText, str);
+        boolean unchanged = common == str.length() && common == mText.length();
+        int keep = mCheckpoints.size();
+        while (!unchanged && keep > 1
+                && mCheckpoints.get(keep - 1).mEnd + LEXER_LOOKAHEAD > common)
+            keep--;
+        mCheckpoints.subList(keep, mCheckpoints.size()).clear();
+        mText = str;
+
+        State state = mCheckpoints.get(keep - 1);
+        int i = state.mEnd;
+        mAnswerExact = false;
+        mAnswerValue = null;
+        while (i < str.length()) {
+            checkCancelled();
+            mTokenBuffer.clear();
+            try {
+                i = ExpressionLexer.nextToken(str, i, mTokenBuffer);
+            } catch (SolveException e) {
+                //invalid character, there's no point going any further
+                return e.getMessage();
+            }
+            state = advance(state, mTokenBuffer.get(0));
+            mCheckpoints.add(state);
+        }
+        return finish(state);
+    }
+
+    /**
+     * Number of checkpoints currently held, including the empty expression
+     */
+    int getCheckpointCount() {
+        return mCheckpoints.size();
+    }
+
+    /**
+     * @return true if the last answer didn't need BigDecimal for any
+     * operation, see {@link ExactArithmetic}
+     */
+    boolean isAnswerExact() {
+        return mAnswerExact;
+    }
+
+    /**
+     * @return the last answer as a number, so it doesn't need to be parsed
+     * from its text again. Null if the answer was empty or an error.
+     */
+    BigDecimal getAnswerValue() {
+        return mAnswerValue;
+    }
+
+    private void checkCancelled() {
+        if (mCancelled != null && mCancelled.getAsBoolean())
+            throw new CancellationException();
+    }
+
+    private void reset(Arithmetic math) {
+        mMath = math;
+        mExactMath = math == null ? null : new ExactArithmetic(math.getPrecision());
+        mText = "";
+        mCheckpoints.clear();
+        mCheckpoints.add(new State());
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int len = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < len && a.charAt(i) == b.charAt(i))
+            i++;
+        return i;
+    }
+
+    /**
+     * Calculate the state after one more token
+     */
+    private State advance(State prev, Token token) {
+        State state = new State(prev, token.end());
+        state.trackParentheses(token);
+        if (state.mSyntaxError)
+            return state;
+
+        if (state.mMode == MODE_PERCENT_PENDING) {
+            //percent is taken of everything before it only if last or followed by + or -
+            if (token.is(Token.Kind.PLUS) || token.is(Token.Kind.MINUS))
+                applyPercentOf(state);
+            else
+                percentTop(state);
+            state.mMode = MODE_OPERATOR;
+        }
+
+        int percentOfStage = state.mPercentOfStage;
+        state.mPercentOfStage = 0;
+        switch (state.mMode) {
+            case MODE_OPERAND:
+            case MODE_POWER_OPERAND:
+                advanceOperand(state, token, percentOfStage);
+                break;
+            case MODE_SCALE_OPERAND:
+                if (token.is(Token.Kind.NUMBER)) {
+                    pushLiteral(state, token);
+                    reduceScale(state);
+                } else if (token.is(Token.Kind.OPEN_PARA)) {
+                    pushOpen(state, Op.OPEN_SCALE_PARA);
+                    state.mMode = MODE_OPERAND;
+                } else
+                    state.mSyntaxError = true;
+                break;
+            default:
+                advanceOperator(state, token, percentOfStage);
+                break;
+        }
+        return state;
+    }
+
+    /**
+     * Next token should start an operand: a number, parentheses or a sign
+     */
+    private void advanceOperand(State state, Token token, int percentOfStage) {
+        switch (token.kind) {
+            case NUMBER:
+                pushLiteral(state, token);
+                state.mMode = MODE_OPERATOR;
+                if (percentOfStage == 1 || percentOfStage == 2)
+                    state.mPercentOfStage = 3;
+                break;
+            case OPEN_PARA:
+                pushOpen(state, Op.OPEN_PARA);
+                state.mMode = MODE_OPERAND;
+                break;
+            case MINUS:
+                //"-2^2" is -(2^2), but "2^-3^2" is (2^-3)^2
+                Op negate = state.mMode == MODE_POWER_OPERAND ? Op.NEGATE_EXPONENT : Op.NEGATE;
+                state.mOperators = new OpLink(negate, state.mOperators);
+                if (percentOfStage == 1)
+                    state.mPercentOfStage = 2;
+                break;
+            case PLUS:
+                //unary plus does nothing, but still counts as the percent's sign
+                if (percentOfStage == 1)
+                    state.mPercentOfStage = 2;
+                break;
+            default:
+                state.mSyntaxError = true;
+                break;
+        }
+    }
+
+    /**
+     * Next token follows a complete operand: an operator, a postfix, a close
+     * parenthesis or an operand with an implied multiply
+     */
+    private void advanceOperator(State state, Token token, int percentOfStage) {
+        switch (token.kind) {
+            case PLUS:
+            case MINUS:
+                reduce(state, Op.ADD.mPrecedence);
+                state.mOperators = new OpLink(token.is(Token.Kind.PLUS) ? Op.ADD : Op.SUBTRACT,
+                        state.mOperators);
+                state.mMode = MODE_OPERAND;
+                state.mPercentOfStage = 1;
+                break;
+            case MULTIPLY:
+            case DIVIDE:
+                reduce(state, Op.MULTIPLY.mPrecedence);
+                state.mOperators = new OpLink(token.is(Token.Kind.MULTIPLY) ? Op.MULTIPLY
+                        : Op.DIVIDE, state.mOperators);
+                state.mMode = MODE_OPERAND;
+                break;
+            case NUMBER:
+            case OPEN_PARA:
+                //implied multiply, such as "2(3)" or "(2)3"
+                reduce(state, Op.MULTIPLY.mPrecedence);
+                state.mOperators = new OpLink(Op.MULTIPLY, state.mOperators);
+                state.mMode = MODE_OPERAND;
+                advanceOperand(state, token, 0);
+                break;
+            case POWER:
+                //powers are left associative
+                reduce(state, Op.POWER.mPrecedence);
+                state.mOperators = new OpLink(Op.POWER, state.mOperators);
+                state.mMode = MODE_POWER_OPERAND;
+                break;
+            case PERCENT:
+                if (percentOfStage == 3)
+                    state.mMode = MODE_PERCENT_PENDING;
+                else
+                    percentTop(state);
+                break;
+            case EXPONENT:
+                state.mOperators = new OpLink(token.text.endsWith("-") ? Op.SCALE_NEGATIVE
+                        : Op.SCALE, state.mOperators);
+                state.mMode = MODE_SCALE_OPERAND;
+                break;
+            case CLOSE_PARA:
+                reduce(state, Op.ADD.mPrecedence);
+                if (state.mOperators == null) {
+                    //close without a matching open
+                    state.mSyntaxError = true;
+                    break;
+                }
+                Op open = state.mOperators.mOp;
+                state.mOperators = state.mOperators.mBelow;
+                state.mDepth--;
+                if (open == Op.OPEN_SCALE_PARA)
+                    reduceScale(state);
+                break;
+            default:
+                state.mSyntaxError = true;
+                break;
+        }
+    }
+
+    /**
+     * Push an open parenthesis, nesting deeper than
+     * {@link ExpressionParser#MAX_DEPTH} is a syntax error
+     */
+    private void pushOpen(State state, Op open) {
+        if (++state.mDepth > ExpressionParser.MAX_DEPTH) {
+            state.mSyntaxError = true;
+            return;
+        }
+        state.mOperators = new OpLink(open, state.mOperators);
+    }
+
+    private void pushLiteral(State state, Token token) {
+        BigDecimal value;
+        try {
+            value = new BigDecimal(token.text);
+        } catch (NumberFormatException e) {
+            state.mSyntaxError = true;
+            return;
+        }
+        state.mOperands = Operand.literal(value, token.text, state.mOperands);
+    }
+
+    /**
+     * Apply the pending E, just after its exponent was completed
+     */
+    private void reduceScale(State state) {
+        if (state.mSyntaxError)
+            return;
+        reduceTop(state);
+        state.mMode = MODE_OPERATOR;
+    }
+
+    /**
+     * Evaluate operators on top of the stack until reaching one with lower
+     * precedence than minPrecedence, or an open parenthesis
+     */
+    private void reduce(State state, int minPrecedence) {
+        while (state.mOperators != null && state.mOperators.mOp.mPrecedence >= minPrecedence)
+            reduceTop(state);
+    }
+
+    /**
+     * Evaluate the operator on top of the stack with its operands
+     */
+    private void reduceTop(State state) {
+        Op op = state.mOperators.mOp;
+        state.mOperators = state.mOperators.mBelow;
+        if (op == Op.NEGATE || op == Op.NEGATE_EXPONENT) {
+            negateTop(state);
+            return;
+        }
+        Operand right = state.mOperands;
+        Operand left = right.mBelow;
+        state.mOperands = calculate(op, left, right, state, left.mBelow);
+    }
+
+    /**
+     * Turn the operand on top into a percent, along with a minus right before
+     * it, see ExpressionParser#applyPercent()
+     */
+    private void percentTop(State state) {
+        if (state.mOperators != null && (state.mOperators.mOp == Op.NEGATE
+                || state.mOperators.mOp == Op.NEGATE_EXPONENT)) {
+            state.mOperators = state.mOperators.mBelow;
+            negateTop(state);
+        }
+        Operand top = state.mOperands;
+        state.mOperands = calculate(Op.PERCENT, null, top, state, top.mBelow);
+    }
+
+    private void negateTop(State state) {
+        Operand top = state.mOperands;
+        //keep the text of a negated literal, see Node.Negate#evaluateToString
+        if (top.mKind == Operand.LITERAL) {
+            String text = top.mText.startsWith("-") ? top.mText.substring(1) : "-" + top.mText;
+            state.mOperands = top.negate(text, Operand.NEGATED_LITERAL);
+        } else
+            state.mOperands = top.negate(null, Operand.OTHER);
+    }
+
+    /**
+     * Turn the pending "+5%" or "-5%" into a percent of everything before it
+     */
+    private void applyPercentOf(State state) {
+        Operand number = state.mOperands;
+        Operand percent = number;
+        if (state.mOperators.mOp == Op.NEGATE) {
+            percent = percent.negate(null, Operand.OTHER);
+            state.mOperators = state.mOperators.mBelow;
+        }
+        boolean subtract = state.mOperators.mOp == Op.SUBTRACT;
+        state.mOperators = state.mOperators.mBelow;
+        Operand base = number.mBelow;
+        if (state.mError != null)
+            state.mOperands = Operand.failed(base.mBelow);
+        else if (base.mExact && percent.mExact && mExactMath.percentOf(base.mUnscaled,
+                base.mScale, subtract, percent.mUnscaled, percent.mScale))
+            state.mOperands = Operand.exact(mExactMath, base.mBelow);
+        else {
+            BigDecimal result = null;
+            try {
+                result = mMath.percentOf(base.value(), subtract, percent.value());
+            } catch (SolveException e) {
+                state.mError = e.getMessage();
+            }
+            state.mOperands = new Operand(result, null, Operand.OTHER, base.mBelow);
+        }
+    }
+
+    /**
+     * Perform a single operation, on the fast path if both operands are on it
+     * and the answer is exact. Once an operation fails, the remaining
+     * operations are skipped and the first error is kept, just like
+     * evaluating the tree would.
+     *
+     * @param left  is null for a percent
+     * @param below is the rest of the operand stack, under the result
+     * @return the result, with a null value if this or an earlier operation
+     * failed
+     */
+    private Operand calculate(Op op, Operand left, Operand right, State state, Operand below) {
+        if (state.mError != null)
+            return Operand.failed(below);
+        if (right.mExact && (left == null || left.mExact) && calculateExact(op, left, right))
+            return Operand.exact(mExactMath, below);
+        BigDecimal value = calculate(op, left == null ? null : left.value(), right.value(), state);
+        return new Operand(value, null, Operand.OTHER, below);
+    }
+
+    private boolean calculateExact(Op op, Operand left, Operand right) {
+        switch (op) {
+            case ADD:
+                return mExactMath.add(left.mUnscaled, left.mScale, right.mUnscaled, right.mScale);
+            case SUBTRACT:
+                return mExactMath.subtract(left.mUnscaled, left.mScale, right.mUnscaled, right.mScale);
+            case MULTIPLY:
+                return mExactMath.multiply(left.mUnscaled, left.mScale, right.mUnscaled, right.mScale);
+            case DIVIDE:
+                return mExactMath.divide(left.mUnscaled, left.mScale, right.mUnscaled, right.mScale);
+            case POWER:
+                return mExactMath.power(left.mUnscaled, left.mScale, right.mUnscaled, right.mScale);
+            case PERCENT:
+                return mExactMath.percent(right.mUnscaled, right.mScale);
+            case SCALE:
+                return mExactMath.scaleByPowerOfTen(left.mUnscaled, left.mScale,
+                        right.mUnscaled, right.mScale);
+            case SCALE_NEGATIVE:
+                return mExactMath.scaleByPowerOfTen(left.mUnscaled, left.mScale,
+                        -right.mUnscaled, right.mScale);
+            default:
+                throw new IllegalArgumentException("In IncrementalEvaluator.calculateExact, invalid operator...");
+        }
+    }
+
+    /**
+     * Perform a single operation with BigDecimal
+     *
+     * @return the result, or null if the operation failed
+     */
+    private BigDecimal calculate(Op op, BigDecimal left, BigDecimal right, State state) {
+        try {
+            switch (op) {
+                case ADD:
+                    return mMath.add(left, right);
+                case SUBTRACT:
+                    return mMath.subtract(left, right);
+                case MULTIPLY:
+                    return mMath.multiply(left, right);
+                case DIVIDE:
+                    return mMath.divide(left, right);
+                case POWER:
+                    return mMath.power(left, right);
+                case PERCENT:
+                    return mMath.percent(right);
+                case SCALE:
+                    return mMath.scaleByPowerOfTen(left, right);
+                case SCALE_NEGATIVE:
+                    return mMath.scaleByPowerOfTen(left, right.negate());
+                default:
+                    throw new IllegalArgumentException("In IncrementalEvaluator.calculate, invalid operator...");
+            }
+        } catch (SolveException e) {
+            state.mError = e.getMessage();
+            return null;
+        }
+    }
+
+    /**
+     * Finish off the expression without changing the checkpointed state
+     */
+    private String finish(State last) {
+        if (last.mOnlyParentheses && last.mParenDepth == 0)
+            return "";
+        if (last.mSyntaxError || last.mMode == MODE_OPERAND || last.mMode == MODE_POWER_OPERAND
+                || last.mMode == MODE_SCALE_OPERAND)
+            return Solver.strSyntaxError;
+
+        State state = new State(last, last.mEnd);
+        if (state.mMode == MODE_PERCENT_PENDING)
+            applyPercentOf(state);
+        while (state.mOperators != null) {
+            //open parenthesis that was never closed
+            if (state.mOperators.mOp.mPrecedence < Op.ADD.mPrecedence)
+                return Solver.strSyntaxError;
+            checkCancelled();
+            reduceTop(state);
+        }
+        if (state.mError != null)
+            return state.mError;
+
+        Operand answer = state.mOperands;
+        mAnswerExact = answer.mExact || answer.mKind != Operand.OTHER;
+        mAnswerValue = answer.value();
+        return answer.mKind == Operand.OTHER ? answer.value().toString() : answer.mText;
+    }
+
+
+    private enum Op {
+        OPEN_PARA(0),
+        //open parenthesis of a calculated exponent, such as "5E(3*2)"
+        OPEN_SCALE_PARA(0),
+        ADD(1),
+        SUBTRACT(1),
+        MULTIPLY(2),
+        DIVIDE(2),
+        NEGATE(3),
+        POWER(4),
+        //minus sign of an exponent, such as "2^-3"
+        NEGATE_EXPONENT(5),
+        SCALE(6),
+        SCALE_NEGATIVE(6),
+        //never put on the stack, percents are applied right away
+        PERCENT(7);
+
+        final int mPrecedence;
+
+        Op(int precedence) {
+            mPrecedence = precedence;
+        }
+    }
+
+    /**
+     * Immutable operator stack element
+     */
+    private static final class OpLink {
+        final Op mOp;
+        final OpLink mBelow;
+
+        OpLink(Op op, OpLink below) {
+            mOp = op;
+            mBelow = below;
+        }
+    }
+
+    /**
+     * Immutable operand stack element
+     */
+    private static final class Operand {
+        static final int OTHER = 0;
+        static final int LITERAL = 1;
+        static final int NEGATED_LITERAL = 2;
+
+        //null if an operation failed, or if the value is only kept as a long
+        final BigDecimal mValue;
+        //same value for ExactArithmetic, only if mExact
+        final boolean mExact;
+        final long mUnscaled;
+        final int mScale;
+        //text as typed, only for literals and negated literals
+        final String mText;
+        final int mKind;
+        final Operand mBelow;
+
+        Operand(BigDecimal value, String text, int kind, Operand below) {
+            this(value, false, 0, 0, text, kind, below);
+        }
+
+        private Operand(BigDecimal value, boolean exact, long unscaled, int scale,
+                        String text, int kind, Operand below) {
+            mValue = value;
+            mExact = exact;
+            mUnscaled = unscaled;
+            mScale = scale;
+            mText = text;
+            mKind = kind;
+            mBelow = below;
+        }
+
+        static Operand literal(BigDecimal value, String text, Operand below) {
+            boolean exact = ExactArithmetic.fits(value);
+            return new Operand(value, exact, exact ? value.unscaledValue().longValue() : 0,
+                    value.scale(), text, LITERAL, below);
+        }
+
+        /**
+         * Answer of the last successful fast path operation
+         */
+        static Operand exact(ExactArithmetic math, Operand below) {
+            return new Operand(null, true, math.mUnscaled, math.mScale, null, OTHER, below);
+        }
+
+        static Operand failed(Operand below) {
+            return new Operand(null, null, OTHER, below);
+        }
+
+        /**
+         * @return the value as a BigDecimal, null if an operation failed
+         */
+        BigDecimal value() {
+            return mValue == null && mExact ? BigDecimal.valueOf(mUnscaled, mScale) : mValue;
+        }
+
+        Operand negate(String text, int kind) {
+            BigDecimal value = mValue == null ? null : mValue.negate();
+            return new Operand(value, mExact, -mUnscaled, mScale, text, kind, mBelow);
+        }
+    }
+
+    /**
+     * Evaluation state after a token. Only modified while it's being built.
+     */
+    private static final class State {
+        //index just past the last token
+        final int mEnd;
+        Operand mOperands;
+        OpLink mOperators;
+        int mMode;
+        //first error from an operation, such as divide by zero
+        String mError;
+        boolean mSyntaxError;
+        //progress through a "+ [sign] number" that might precede a percent of:
+        //1 after the + or -, 2 after the sign and 3 after the number
+        int mPercentOfStage;
+        //used to tell if the expression is only balanced parentheses
+        boolean mOnlyParentheses;
+        int mParenDepth;
+        //number of open parentheses on the operator stack
+        int mDepth;
+
+        State() {
+            mEnd = 0;
+            mMode = MODE_OPERAND;
+            mOnlyParentheses = true;
+        }
+
+        State(State prev, int end) {
+            mEnd = end;
+            mOperands = prev.mOperands;
+            mOperators = prev.mOperators;
+            mMode = prev.mMode;
+            mError = prev.mError;
+            mSyntaxError = prev.mSyntaxError;
+            mPercentOfStage = prev.mPercentOfStage;
+            mOnlyParentheses = prev.mOnlyParentheses;
+            mParenDepth = prev.mParenDepth;
+            mDepth = prev.mDepth;
+        }
+
+        void trackParentheses(Token token) {
+            if (!mOnlyParentheses)
+                return;
+            if (token.is(Token.Kind.OPEN_PARA))
+                mParenDepth++;
+            else if (token.is(Token.Kind.CLOSE_PARA) && mParenDepth > 0)
+                mParenDepth--;
+            else
+                mOnlyParentheses = false;
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package com.wolfcola.equatecontinued;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+
+/**
+ * Immutable node of a compiled expression tree. Trees are built by
+ * {@link ExpressionParser} and evaluated with an {@link Arithmetic}, which
+ * controls the precision of each operation. Trees can also be evaluated on
+ * the fast path with an {@link ExactArithmetic}, which gives the same answer
+ * when it succeeds, or in rational mode with a {@link RationalArithmetic}.
+ * <p>
+ * Trees can be as deep as the expression is long (such as "1+1+1..." or
+ * "-(-(-(..."), so they are evaluated without recursion: the nodes are put
+ * in post-order (operands before their operator) and then applied one after
+ * the other on a stack of values, like a postfix calculator.
+ */
+abstract class Node {
+    //operands of this node, mLeft is null for prefix and postfix operators,
+    //and both are null for literals
+    final Node mLeft;
+    final Node mRight;
+
+    Node(Node left, Node right) {
+        mLeft = left;
+        mRight = right;
+    }
+
+    /**
+     * Calculate the value of this node from the values of its operands
+     *
+     * @param left  is null if mLeft is
+     * @param right is null if mRight is
+     * @throws SolveException if the operation fails, such as divide by zero
+     */
+    abstract BigDecimal apply(Arithmetic math, BigDecimal left, BigDecimal right);
+
+    /**
+     * Same as {@link #apply}, but on the fast path, leaving the answer in
+     * exact. Values of missing operands are 0.
+     *
+     * @return false if the operation needs to be done with Arithmetic instead
+     */
+    abstract boolean applyExact(ExactArithmetic exact, long left, int leftScale,
+                                long right, int rightScale);
+
+    /**
+     * Same as {@link #apply}, but with exact fractions
+     *
+     * @return the answer, or null if the operation needs to be done with
+     * Arithmetic instead
+     */
+    abstract Rational applyRational(RationalArithmetic math, Rational left, Rational right);
+
+    /**
+     * Calculate the value of this node and all of its children
+     *
+     * @throws SolveException if any operation fails, such as divide by zero
+     */
+    final BigDecimal evaluate(Arithmetic math) {
+        ArrayList<Node> order = postOrder();
+        BigDecimal[] values = new BigDecimal[order.size()];
+        int size = 0;
+        for (Node node : order) {
+            BigDecimal right = node.mRight == null ? null : values[--size];
+            BigDecimal left = node.mLeft == null ? null : values[--size];
+            values[size++] = node.apply(math, left, right);
+        }
+        return values[0];
+    }
+
+    /**
+     * Calculate the value of this node and all of its children on the fast
+     * path, leaving the answer in exact
+     *
+     * @return false if any operation needs to be done with Arithmetic instead
+     */
+    final boolean evaluateExact(ExactArithmetic exact) {
+        ArrayList<Node> order = postOrder();
+        long[] values = new long[order.size()];
+        int[] scales = new int[order.size()];
+        int size = 0;
+        for (Node node : order) {
+            long right = 0;
+            int rightScale = 0;
+            long left = 0;
+            int leftScale = 0;
+            if (node.mRight != null) {
+                size--;
+                right = values[size];
+                rightScale = scales[size];
+            }
+            if (node.mLeft != null) {
+                size--;
+                left = values[size];
+                leftScale = scales[size];
+            }
+            if (!node.applyExact(exact, left, leftScale, right, rightScale))
+                return false;
+            values[size] = exact.mUnscaled;
+            scales[size] = exact.mScale;
+            size++;
+        }
+        return true;
+    }
+
+    /**
+     * Calculate the value of this node and all of its children with exact
+     * fractions
+     *
+     * @return the answer, or null if any operation needs to be done with
+     * Arithmetic instead
+     */
+    final Rational evaluateRational(RationalArithmetic math) {
+        ArrayList<Node> order = postOrder();
+        Rational[] values = new Rational[order.size()];
+        int size = 0;
+        for (Node node : order) {
+            Rational right = node.mRight == null ? null : values[--size];
+            Rational left = node.mLeft == null ? null : values[--size];
+            Rational value = node.applyRational(math, left, right);
+            if (value == null)
+                return null;
+            values[size++] = value;
+        }
+        return values[0];
+    }
+
+    /**
+     * Text of the answer after evaluation. Normally just the value, but a lone
+     * number is kept as it was typed, since its text decides if the rounded
+     * answer is displayed in plain or sci notation.
+     */
+    String evaluateToString(Arithmetic math) {
+        return evaluate(math).toString();
+    }
+
+    /**
+     * Same as {@link #evaluateToString(Arithmetic)}, but on the fast path
+     *
+     * @return the text of the answer, or null if any operation needs to be
+     * done with Arithmetic instead
+     */
+    String evaluateExactToString(ExactArithmetic exact) {
+        return evaluateExact(exact) ? exact.toString() : null;
+    }
+
+    /**
+     * Every node of this tree with operands before their operator, left
+     * operands first, so the nodes can be applied in order
+     */
+    private ArrayList<Node> postOrder() {
+        //collect the nodes in reverse (operator, right, then left), then flip
+        ArrayList<Node> order = new ArrayList<>();
+        ArrayList<Node> pending = new ArrayList<>();
+        pending.add(this);
+        while (!pending.isEmpty()) {
+            Node node = pending.remove(pending.size() - 1);
+            order.add(node);
+            if (node.mLeft != null)
+                pending.add(node.mLeft);
+            if (node.mRight != null)
+                pending.add(node.mRight);
+        }
+        for (int i = 0, j = order.size() - 1; i < j; i++, j--)
+            order.set(i, order.set(j, order.get(i)));
+        return order;
+    }
+
+    private static String negateText(String text) {
+        return text.startsWith("-") ? text.substring(1) : "-" + text;
+    }
+
+    /**
+     * A literal number, such as 4.3E2
+     */
+    static final class Literal extends Node {
+        private final String mText;
+        private final BigDecimal mValue;
+        //same value for ExactArithmetic, only if mFits
+        private final boolean mFits;
+        private final long mUnscaled;
+
+        /**
+         * @throws SolveException if the token isn't a valid number, like "2.3.4"
+         */
+        Literal(Token token) {
+            super(null, null);
+            mText = token.text;
+            try {
+                mValue = new BigDecimal(mText);
+            } catch (NumberFormatException e) {
+                throw new SolveException(Solver.strSyntaxError);
+            }
+            mFits = ExactArithmetic.fits(mValue);
+            mUnscaled = mFits ? mValue.unscaledValue().longValue() : 0;
+        }
+
+        @Override
+        BigDecimal apply(Arithmetic math, BigDecimal left, BigDecimal right) {
+            return mValue;
+        }
+
+        @Override
+        boolean applyExact(ExactArithmetic exact, long left, int leftScale,
+                           long right, int rightScale) {
+            return mFits && exact.load(mUnscaled, mValue.scale());
+        }
+
+        @Override
+        Rational applyRational(RationalArithmetic math, Rational left, Rational right) {
+            return math.load(mValue);
+        }
+
+        @Override
+        String evaluateToString(Arithmetic math) {
+            return mText;
+        }
+
+        @Override
+        String evaluateExactToString(ExactArithmetic exact) {
+            return mText;
+        }
+    }
+
+    /**
+     * Negation of the child, such as -(3+4) or the minus in -2^2
+     */
+    static final class Negate extends Node {
+
+        Negate(Node child) {
+            super(null, child);
+        }
+
+        @Override
+        BigDecimal apply(Arithmetic math, BigDecimal left, BigDecimal right) {
+            return right.negate();
+        }
+
+        @Override
+        boolean applyExact(ExactArithmetic exact, long left, int leftScale,
+                           long right, int rightScale) {
+            return exact.load(right, rightScale) && exact.negate();
+        }
+
+        @Override
+        Rational applyRational(RationalArithmetic math, Rational left, Rational right) {
+            return math.negate(right);
+        }
+
+        @Override
+        String evaluateToString(Arithmetic math) {
+            if (!(mRight instanceof Literal))
+                return super.evaluateToString(math);
+            return negateText(mRight.evaluateToString(math));
+        }
+
+        @Override
+        String evaluateExactToString(ExactArithmetic exact) {
+            if (!(mRight instanceof Literal))
+                return super.evaluateExactToString(exact);
+            return negateText(mRight.evaluateExactToString(exact));
+        }
+    }
+
+    /**
+     * One of the binary operators + - * / or ^
+     */
+    static final class Binary extends Node {
+        private final char mOperator;
+
+        Binary(char operator, Node left, Node right) {
+            super(left, right);
+            mOperator = operator;
+        }
+
+        @Override
+        BigDecimal apply(Arithmetic math, BigDecimal left, BigDecimal right) {
+            switch (mOperator) {
+                case '+':
+                    return math.add(left, right);
+                case '-':
+                    return math.subtract(left, right);
+                case '*':
+                    return math.multiply(left, right);
+                case '/':
+                    return math.divide(left, right);
+                case '^':
+                    return math.power(left, right);
+                default:
+                    throw new IllegalArgumentException("In Node.Binary, invalid operator...");
+            }
+        }
+
+        @Override
+        boolean applyExact(ExactArithmetic exact, long left, int leftScale,
+                           long right, int rightScale) {
+            switch (mOperator) {
+                case '+':
+                    return exact.add(left, leftScale, right, rightScale);
+                case '-':
+                    return exact.subtract(left, leftScale, right, rightScale);
+                case '*':
+                    return exact.multiply(left, leftScale, right, rightScale);
+                case '/':
+                    return exact.divide(left, leftScale, right, rightScale);
+                case '^':
+                    return exact.power(left, leftScale, right, rightScale);
+                default:
+                    throw new IllegalArgumentException("In Node.Binary, invalid operator...");
+            }
+        }
+
+        @Override
+        Rational applyRational(RationalArithmetic math, Rational left, Rational right) {
+            switch (mOperator) {
+                case '+':
+                    return math.add(left, right);
+                case '-':
+                    return math.subtract(left, right);
+                case '*':
+                    return math.multiply(left, right);
+                case '/':
+                    return math.divide(left, right);
+                case '^':
+                    return math.power(left, right);
+                default:
+                    throw new IllegalArgumentException("In Node.Binary, invalid operator...");
+            }
+        }
+    }
+
+    /**
+     * Plain percent such as 5% in "200*5%"
+     */
+    static final class Percent extends Node {
+
+        Percent(Node child) {
+            super(null, child);
+        }
+
+        @Override
+        BigDecimal apply(Arithmetic math, BigDecimal left, BigDecimal right) {
+            return math.percent(right);
+        }
+
+        @Override
+        boolean applyExact(ExactArithmetic exact, long left, int leftScale,
+                           long right, int rightScale) {
+            return exact.percent(right, rightScale);
+        }
+
+        @Override
+        Rational applyRational(RationalArithmetic math, Rational left, Rational right) {
+            return math.percent(right);
+        }
+    }
+
+    /**
+     * Percent added to or subtracted from everything before it, such as
+     * "200+5%" which means 200 plus 5% of 200
+     */
+    static final class PercentOf extends Node {
+        private final boolean mSubtract;
+
+        PercentOf(Node base, boolean subtract, Node percent) {
+            super(base, percent);
+            mSubtract = subtract;
+        }
+
+        @Override
+        BigDecimal apply(Arithmetic math, BigDecimal left, BigDecimal right) {
+            return math.percentOf(left, mSubtract, right);
+        }
+
+        @Override
+        boolean applyExact(ExactArithmetic exact, long left, int leftScale,
+                           long right, int rightScale) {
+            return exact.percentOf(left, leftScale, mSubtract, right, rightScale);
+        }
+
+        @Override
+        Rational applyRational(RationalArithmetic math, Rational left, Rational right) {
+            return math.percentOf(left, mSubtract, right);
+        }
+    }
+
+    /**
+     * An operand scaled by a calculated power of ten, such as "5E(3*2)"
+     * or "(6)E5"
+     */
+    static final class Scale extends Node {
+
+        Scale(Node mantissa, Node exponent) {
+            super(mantissa, exponent);
+        }
+
+        @Override
+        BigDecimal apply(Arithmetic math, BigDecimal left, BigDecimal right) {
+            return math.scaleByPowerOfTen(left, right);
+        }
+
+        @Override
+        boolean applyExact(ExactArithmetic exact, long left, int leftScale,
+                           long right, int rightScale) {
+            return exact.scaleByPowerOfTen(left, leftScale, right, rightScale);
+        }
+
+        @Override
+        Rational applyRational(RationalArithmetic math, Rational left, Rational right) {
+            return math.scaleByPowerOfTen(left, right);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.wolfcola.equatecontinued;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Turns answers into display text for {@link Expression}. Each format is a
+ * single pass over the digits, with no regular expressions and no
+ * DecimalFormat, but gives exactly the text the old DecimalFormat and regex
+ * cleanup did.
+ */
+final class NumberFormatter {
+    private NumberFormatter() {
+    }
+
+    /**
+     * Text of bd in plain or scientific notation, see
+     * {@link Expression#roundAndCleanExpression(Expression.NumFormat)}
+     *
+     * @param plain  is true if NORMAL should be shown without an exponent
+     * @param digits number of digits of precision in scientific notation
+     */
+    static String format(BigDecimal bd, Expression.NumFormat numFormat, boolean plain, int digits) {
+        switch (numFormat) {
+            case NORMAL:
+                return clean(plain ? bd.toPlainString() : bd.toString());
+            case PLAIN:
+                // only if the number after the exponent is reasonably small will we allow a plain format
+                if (Math.abs(bd.scale()) < 25)
+                    return clean(bd.toPlainString());
+                return toSciNotation(bd, digits, false);
+            case SCI_NOTE:
+                return toSciNotation(bd, digits, false);
+            case ENGINEERING:
+                return toSciNotation(bd, digits, true);
+            default:
+                throw new NumberFormatException("Invalid number format");
+        }
+    }
+
+    /**
+     * Clean up a number's formatting: removes trailing zeros after the
+     * decimal point (and the point itself if nothing is left after it), both
+     * at the end and before an E, and the + from "E+"
+     *
+     * @param number is a number such as BigDecimal.toString() gives
+     */
+    static String clean(String number) {
+        int length = number.length();
+        int e = number.indexOf('E');
+        int end = e < 0 ? length : e;
+        int point = number.indexOf('.');
+
+        int cut = end;
+        if (point >= 0 && point < end) {
+            while (cut > point + 1 && number.charAt(cut - 1) == '0')
+                cut--;
+            if (cut == point + 1)
+                cut = point;
+        }
+        boolean plus = e >= 0 && e + 1 < length && number.charAt(e + 1) == '+';
+        if (cut == end && !plus)
+            return number;
+
+        StringBuilder sb = new StringBuilder(length).append(number, 0, cut);
+        if (e >= 0)
+            sb.append('E').append(number, plus ? e + 2 : e + 1, length);
+        return sb.toString();
+    }
+
+    /**
+     * Scientific notation, rounded half even to the same significant digits
+     * DecimalFormat used for "0.0E0" or "##0.0E0" with digits fraction digits:
+     * its maximum integer digits (1, or 3 for engineering) plus digits. In
+     * engineering notation the exponent is always a multiple of 3 (eg 53E3 or
+     * 360E-9).
+     */
+    static String toSciNotation(BigDecimal bd, int digits, boolean engineering) {
+        if (bd.signum() == 0)
+            return "0E0";
+        int maxIntDigits = engineering ? 3 : 1;
+        BigDecimal rounded = bd.round(new MathContext(maxIntDigits + Math.max(1, digits),
+                RoundingMode.HALF_EVEN));
+
+        String unscaled = rounded.unscaledValue().abs().toString();
+        //the value is 0.[unscaled] times 10^decimalAt
+        int decimalAt = unscaled.length() - rounded.scale();
+        int count = unscaled.length();
+        while (count > 1 && unscaled.charAt(count - 1) == '0')
+            count--;
+
+        int exponent;
+        if (!engineering)
+            exponent = decimalAt - 1;
+        else if (decimalAt >= 1)
+            exponent = (decimalAt - 1) / 3 * 3;
+        else
+            exponent = (decimalAt - 3) / 3 * 3;
+        //engineering notation might need zeros to fill out the integer part
+        int intDigits = decimalAt - exponent;
+
+        StringBuilder sb = new StringBuilder(Math.max(count, intDigits) + 14);
+        if (bd.signum() < 0)
+            sb.append('-');
+        for (int i = 0; i < Math.max(count, intDigits); i++) {
+            if (i == intDigits)
+                sb.append('.');
+            sb.append(i < count ? unscaled.charAt(i) : '0');
+        }
+        return sb.append('E').append(exponent).toString();
+    }
+}
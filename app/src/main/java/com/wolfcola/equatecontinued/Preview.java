@@ -4,44 +4,128 @@ import android.text.Spanned;
 
 import com.wolfcola.equatecontinued.view.ViewUtils;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * Class used to store and operate on the result preview shows the user the
  * temporarily solved expression
+ * <p>
+ * Expressions are solved on a single worker (see {@link #set}), so a slow
+ * expression never holds up the UI thread. A new request abandons the one in
+ * progress, and requests made while the worker is busy collapse into one, so
+ * only the newest expression is ever published.
  */
 class Preview {
-    private String mText;
+    private volatile String mText;
     private Solver mSolver;
-    private Expression.NumFormat mNumFormat;
+    private volatile Expression.NumFormat mNumFormat;
+    //keeps state between key presses, so only the changed end of the
+    //expression needs to be evaluated again. Only used by the worker.
+    private final IncrementalEvaluator mEvaluator;
+    //runs the evaluations, should only have a single thread (or run them
+    //right away) so that requests are handled in order
+    private final Executor mExecutor;
+    //newest request that hasn't been started yet, null if there isn't one
+    private final AtomicReference<Request> mPending;
+    //bumped by every request, an evaluation is abandoned once it's out of date
+    private final AtomicLong mGeneration;
+    //generation of the request the worker is solving
+    private long mRunningGeneration;
+    private volatile boolean mRunning;
+    //called from the worker after a new preview was published
+    private volatile Runnable mOnUpdateListener;
 
-    private Preview() {
+    private Preview(Executor executor) {
         mText = "";
         mNumFormat = Expression.NumFormat.NORMAL;
+        mExecutor = executor;
+        mPending = new AtomicReference<>();
+        mGeneration = new AtomicLong();
+        mEvaluator = new IncrementalEvaluator(() -> mRunningGeneration != mGeneration.get());
     }
 
-    Preview(Solver solver) {
-        this();
+    /**
+     * @param executor is used to solve the previews, should either use a
+     *                 single worker thread or run tasks right away (for tests)
+     */
+    Preview(Solver solver, Executor executor) {
+        this(executor);
         mSolver = solver;
     }
 
 
     /**
-     * Sets the preview to a solved expression.
+     * Request the preview be set to a solved expression. The expression is
+     * solved on the worker, and listener set with
+     * {@link #setOnUpdateListener(Runnable)} is called once it's published.
      *
-     * @param expr      is the expression that will be solved
+     * @param expr      is the expression that will be solved, must not be
+     *                  changed afterwards
      * @param numFormat is the desired number format of the expression to be
      *                  solved.  Set to
      *                  {@link com.wolfcola.equatecontinued.Expression.NumFormat#ENGINEERING}
      *                  to display an SI suffix in the result.
      */
     public void set(Expression expr, Expression.NumFormat numFormat) {
-        mNumFormat = numFormat;
-        //engineering format determines if we put the preview into engineering
-        //sci notation, which later gets an SI suffix
-        Result res = mSolver.solve(expr, numFormat);
-        if (res == null)
-            setText("");
-        else
-            setText(res.getTextAnswer());
+        Request request = new Request(expr, numFormat, mGeneration.incrementAndGet());
+        //if a request is already waiting, the worker will just pick up this one
+        //instead, so a burst of key presses is only solved once
+        if (mPending.getAndSet(request) == null)
+            mExecutor.execute(this::solvePending);
+    }
+
+    /**
+     * Abandon any requested previews that haven't been published yet
+     */
+    void cancel() {
+        mPending.set(null);
+        mGeneration.incrementAndGet();
+    }
+
+    /**
+     * @return true if a requested preview hasn't been published yet
+     */
+    boolean isPending() {
+        return mRunning || mPending.get() != null;
+    }
+
+    void setOnUpdateListener(Runnable listener) {
+        mOnUpdateListener = listener;
+    }
+
+    /**
+     * Solve the newest request, runs on the worker
+     */
+    private void solvePending() {
+        //mark as running before taking the request, so isPending() never sees
+        //a gap between the two
+        mRunning = true;
+        try {
+            Request request = mPending.getAndSet(null);
+            if (request == null)
+                return;
+            mRunningGeneration = request.mGeneration;
+            //engineering format determines if we put the preview into engineering
+            //sci notation, which later gets an SI suffix
+            String answer = mSolver.solveAnswer(request.mExpression, request.mNumFormat,
+                    mEvaluator);
+            //a newer request came in, it will be published instead
+            if (request.mGeneration != mGeneration.get())
+                return;
+            mNumFormat = request.mNumFormat;
+            setText(answer);
+
+            Runnable listener = mOnUpdateListener;
+            if (listener != null)
+                listener.run();
+        } catch (CancellationException e) {
+            //abandoned for a newer request, which is already queued up
+        } finally {
+            mRunning = false;
+        }
     }
 
     boolean isEmpty() {
@@ -66,7 +150,7 @@ class Preview {
         if (mNumFormat == Expression.NumFormat.ENGINEERING) {
             String suffixText = SISuffixHelper.getSuffixName(mText);
             if (!suffixText.isEmpty())
-                suffix = " [" + SISuffixHelper.getSuffixName(mText) + "]";
+                suffix = " [" + suffixText + "]";
         }
         //only add on "= " if the string isn't already empty
         String returnText = mText;
@@ -80,4 +164,16 @@ class Preview {
     private void setText(String text) {
         this.mText = text;
     }
+
+    private static final class Request {
+        final Expression mExpression;
+        final Expression.NumFormat mNumFormat;
+        final long mGeneration;
+
+        Request(Expression expression, Expression.NumFormat numFormat, long generation) {
+            mExpression = expression;
+            mNumFormat = numFormat;
+            mGeneration = generation;
+        }
+    }
 }
@@ -0,0 +1,178 @@
+package com.wolfcola.equatecontinued;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+/**
+ * Immutable exact fraction, used by {@link RationalArithmetic} for the rational
+ * mode of the {@link Solver}. Always kept in lowest terms with a positive
+ * denominator, so two equal fractions have the same numerator and
+ * denominator.
+ */
+final class Rational {
+    static final Rational ZERO = new Rational(BigInteger.ZERO, BigInteger.ONE);
+    static final Rational ONE = new Rational(BigInteger.ONE, BigInteger.ONE);
+
+    final BigInteger mNumerator;
+    final BigInteger mDenominator;
+
+    private Rational(BigInteger numerator, BigInteger denominator) {
+        mNumerator = numerator;
+        mDenominator = denominator;
+    }
+
+    /**
+     * Reduce numerator/denominator to lowest terms
+     *
+     * @throws ArithmeticException if denominator is 0
+     */
+    static Rational of(BigInteger numerator, BigInteger denominator) {
+        if (denominator.signum() == 0)
+            throw new ArithmeticException("Rational with a zero denominator");
+        if (denominator.signum() < 0) {
+            numerator = numerator.negate();
+            denominator = denominator.negate();
+        }
+        BigInteger gcd = gcd(numerator.abs(), denominator);
+        if (!gcd.equals(BigInteger.ONE)) {
+            numerator = numerator.divide(gcd);
+            denominator = denominator.divide(gcd);
+        }
+        return new Rational(numerator, denominator);
+    }
+
+    /**
+     * Exact value of a decimal, such as 3/4 for 0.75. Only meant for numbers
+     * with a reasonable scale, since 1E-999999 would need a million digit
+     * denominator.
+     */
+    static Rational valueOf(BigDecimal x) {
+        if (x.scale() <= 0)
+            return new Rational(x.unscaledValue().multiply(BigInteger.TEN.pow(-x.scale())),
+                    BigInteger.ONE);
+        return of(x.unscaledValue(), BigInteger.TEN.pow(x.scale()));
+    }
+
+    /**
+     * Greatest common divisor of two non-negative numbers by the binary
+     * method. Decimals have denominators made mostly of twos, and those are
+     * shifted out rather than divided. What's left is odd, and is done with
+     * plain longs when it fits or BigInteger's own gcd otherwise.
+     */
+    static BigInteger gcd(BigInteger a, BigInteger b) {
+        if (a.signum() == 0)
+            return b;
+        if (b.signum() == 0)
+            return a;
+        int aTwos = a.getLowestSetBit();
+        int bTwos = b.getLowestSetBit();
+        a = a.shiftRight(aTwos);
+        b = b.shiftRight(bTwos);
+        BigInteger odd;
+        if (a.bitLength() < Long.SIZE && b.bitLength() < Long.SIZE)
+            odd = BigInteger.valueOf(gcd(a.longValue(), b.longValue()));
+        else
+            odd = a.gcd(b);
+        return odd.shiftLeft(Math.min(aTwos, bTwos));
+    }
+
+    /**
+     * Stein's binary gcd of two positive longs, using only shifts and
+     * subtracts
+     */
+    private static long gcd(long a, long b) {
+        int twos = Long.numberOfTrailingZeros(a | b);
+        a >>= Long.numberOfTrailingZeros(a);
+        while (b != 0) {
+            b >>= Long.numberOfTrailingZeros(b);
+            //both are odd now, so their difference is even
+            if (a > b) {
+                long t = a;
+                a = b;
+                b = t;
+            }
+            b -= a;
+        }
+        return a << twos;
+    }
+
+    boolean isInteger() {
+        return mDenominator.equals(BigInteger.ONE);
+    }
+
+    int signum() {
+        return mNumerator.signum();
+    }
+
+    /**
+     * Bits needed for the larger of the numerator and denominator
+     */
+    int bitLength() {
+        return Math.max(mNumerator.bitLength(), mDenominator.bitLength());
+    }
+
+    Rational negate() {
+        return new Rational(mNumerator.negate(), mDenominator);
+    }
+
+    /**
+     * Text of the answer, just the number for an integer, otherwise the
+     * fraction in parentheses such as "-(1/3)", so it can be put back into an
+     * expression (see {@link Expression#loadPreciseResult()}) as it is. The
+     * sign stays outside so "-(1/3)^2" is negative, like "-0.333^2".
+     */
+    @Override
+    public String toString() {
+        if (isInteger())
+            return mNumerator.toString();
+        String sign = signum() < 0 ? "-" : "";
+        return sign + "(" + mNumerator.abs() + "/" + mDenominator + ")";
+    }
+
+    /**
+     * Value of an answer's text, either a plain number or a fraction from
+     * {@link #toString()}, rounded to mc. For a fraction this is the only
+     * rounding done in rational mode.
+     *
+     * @throws NumberFormatException if text isn't a number or fraction
+     */
+    static BigDecimal toBigDecimal(String text, MathContext mc) {
+        if (!isFraction(text))
+            return new BigDecimal(text, mc);
+        int open = text.indexOf('(');
+        int slash = text.indexOf('/');
+        BigDecimal numerator = new BigDecimal(text.substring(open + 1, slash));
+        if (open > 0)
+            numerator = numerator.negate();
+        BigDecimal denominator = new BigDecimal(text.substring(slash + 1, text.length() - 1));
+        if (denominator.signum() == 0)
+            throw new NumberFormatException("Fraction with a zero denominator");
+        return numerator.divide(denominator, mc);
+    }
+
+    /**
+     * Exact value of a fraction from {@link #toString()}
+     *
+     * @throws NumberFormatException if text isn't a fraction
+     */
+    static Rational parseFraction(String text) {
+        if (!isFraction(text))
+            throw new NumberFormatException("Not a fraction: " + text);
+        int open = text.indexOf('(');
+        int slash = text.indexOf('/');
+        BigInteger numerator = new BigInteger(text.substring(open + 1, slash));
+        BigInteger denominator = new BigInteger(text.substring(slash + 1, text.length() - 1));
+        if (denominator.signum() == 0)
+            throw new NumberFormatException("Fraction with a zero denominator");
+        return of(open > 0 ? numerator.negate() : numerator, denominator);
+    }
+
+    /**
+     * @return true if text looks like a fraction from {@link #toString()}
+     */
+    static boolean isFraction(String text) {
+        return text.endsWith(")") && text.indexOf('/') > 0
+                && (text.startsWith("(") || text.startsWith("-("));
+    }
+}
@@ -0,0 +1,148 @@
+package com.wolfcola.equatecontinued;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Rational mode for {@link Arithmetic}, where every value is a {@link Rational}
+ * so nothing is rounded until the final answer is displayed. 1/3*3 is
+ * exactly 1, rather than 0.99999999999999999 rounded back up to 1.
+ * <p>
+ * Exactness is only kept while it's cheap. An operation fails (returns null)
+ * if its answer isn't rational (such as 2^.5), is an error (such as 1/0), or
+ * would need a numerator or denominator longer than the maximum number of
+ * bits. The expression should then be redone with Arithmetic, which reports
+ * errors and range problems the usual way.
+ */
+final class RationalArithmetic {
+    /**
+     * Default limit on the size of numerators and denominators, roughly 2500
+     * digits. Every value within it is well inside the range Arithmetic checks
+     * for, so rational mode never needs range checks of its own.
+     */
+    static final int MAX_BITS = 8192;
+    private static final Rational ONE_HUNDREDTH = Rational.of(BigInteger.ONE,
+            BigInteger.valueOf(100));
+
+    private final int mMaxBits;
+
+    RationalArithmetic() {
+        this(MAX_BITS);
+    }
+
+    /**
+     * @param maxBits is the most bits a numerator or denominator may have
+     */
+    RationalArithmetic(int maxBits) {
+        mMaxBits = maxBits;
+    }
+
+    /**
+     * Exact value of a number, such as a literal
+     */
+    Rational load(BigDecimal value) {
+        //digits of the numerator or denominator, compared first so 1E-999999
+        //isn't expanded
+        long digits = (long) value.precision() + Math.abs((long) value.scale());
+        if (digits * 3.33 > mMaxBits)
+            return null;
+        return fits(Rational.valueOf(value));
+    }
+
+    Rational negate(Rational operand) {
+        return operand.negate();
+    }
+
+    Rational add(Rational operand1, Rational operand2) {
+        BigInteger numerator = operand1.mNumerator.multiply(operand2.mDenominator)
+                .add(operand2.mNumerator.multiply(operand1.mDenominator));
+        return fits(Rational.of(numerator, operand1.mDenominator.multiply(operand2.mDenominator)));
+    }
+
+    Rational subtract(Rational operand1, Rational operand2) {
+        return add(operand1, operand2.negate());
+    }
+
+    Rational multiply(Rational operand1, Rational operand2) {
+        return fits(Rational.of(operand1.mNumerator.multiply(operand2.mNumerator),
+                operand1.mDenominator.multiply(operand2.mDenominator)));
+    }
+
+    Rational divide(Rational operand1, Rational operand2) {
+        if (operand2.signum() == 0)
+            return null;
+        return fits(Rational.of(operand1.mNumerator.multiply(operand2.mDenominator),
+                operand1.mDenominator.multiply(operand2.mNumerator)));
+    }
+
+    /**
+     * Powers with a whole exponent, the same special cases as
+     * {@link Arithmetic#power(BigDecimal, BigDecimal)}
+     */
+    Rational power(Rational base, Rational exponent) {
+        if (exponent.signum() == 0)
+            return Rational.ONE;
+        if (!exponent.isInteger() || exponent.mNumerator.bitLength() >= Integer.SIZE - 1)
+            return null;
+        int n = exponent.mNumerator.intValue();
+        if (base.signum() == 0)
+            //0^-1 is an error
+            return n > 0 ? Rational.ZERO : null;
+        //1 and -1 are the only bases that don't grow
+        if (base.isInteger() && base.mNumerator.abs().equals(BigInteger.ONE)) {
+            boolean negate = base.signum() < 0 && (n & 1) == 1;
+            return negate ? Rational.ONE.negate() : Rational.ONE;
+        }
+        //check the size before calculating anything
+        if ((long) (base.bitLength() - 1) * Math.abs(n) > mMaxBits)
+            return null;
+
+        //base is already in lowest terms, and so is any power of it
+        BigInteger numerator = base.mNumerator.pow(Math.abs(n));
+        BigInteger denominator = base.mDenominator.pow(Math.abs(n));
+        return fits(n > 0 ? Rational.of(numerator, denominator)
+                : Rational.of(denominator, numerator));
+    }
+
+    /**
+     * Plain percent, such as the 5% in "200*5%", which is just 5*0.01
+     */
+    Rational percent(Rational operand) {
+        return multiply(operand, ONE_HUNDREDTH);
+    }
+
+    /**
+     * Percent of a previous value, see
+     * {@link Arithmetic#percentOf(BigDecimal, boolean, BigDecimal)}
+     */
+    Rational percentOf(Rational base, boolean subtract, Rational percent) {
+        Rational fraction = percent(percent);
+        if (fraction == null)
+            return null;
+        Rational factor = subtract ? subtract(Rational.ONE, fraction)
+                : add(Rational.ONE, fraction);
+        return factor == null ? null : multiply(base, factor);
+    }
+
+    /**
+     * Scales a number by a power of ten that was itself calculated, such
+     * as "5E(3*2)" for 5E6
+     */
+    Rational scaleByPowerOfTen(Rational mantissa, Rational exponent) {
+        //a fractional power of ten is a syntax error, left for Arithmetic
+        if (!exponent.isInteger() || exponent.mNumerator.bitLength() >= Integer.SIZE - 1)
+            return null;
+        int n = exponent.mNumerator.intValue();
+        if ((long) Math.abs(n) * 3.33 > mMaxBits)
+            return null;
+        Rational power = Rational.of(BigInteger.TEN.pow(Math.abs(n)), BigInteger.ONE);
+        return n >= 0 ? multiply(mantissa, power) : divide(mantissa, power);
+    }
+
+    /**
+     * Returns the answer, or null if it's too large to keep exact
+     */
+    private Rational fits(Rational answer) {
+        return answer.bitLength() > mMaxBits ? null : answer;
+    }
+}
@@ -7,6 +7,8 @@ import com.wolfcola.equatecontinued.unit.UnitHistCurrency;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -15,6 +17,7 @@ import java.util.Locale;
 public class Result {
     private static final String JSON_QUERY = "query";
     private static final String JSON_ANSWER = "answer";
+    private static final String JSON_PRECISE_ANSWER = "precise_answer";
     private static final String JSON_QUERY_UNIT = "query_unit";
     private static final String JSON_ANSWER_UNIT = "answer_unit";
     private static final String JSON_QUERY_UNIT_TEXT = "query_unit_text";
@@ -27,6 +30,10 @@ public class Result {
     boolean mContainsUnits;
     private String mQuery;
     private String mAnswer;
+    //unrounded answer, "" if there isn't one (such as for an error)
+    private String mPreciseAnswer;
+    //value of mPreciseAnswer, null if it isn't known
+    private BigDecimal mAnswerValue;
     private String mQueryUnitText;
     private String mAnswerUnitText;
     private String mQueryUnitTextLong;
@@ -35,10 +42,21 @@ public class Result {
     private int mAnswerUnitPosInUnitArray;
     private String mUnitTypeKey;
     private long mTimestamp;
+    //id of this result in the ResultLog, 0 if it hasn't been saved there yet
+    private long mLogId;
 
     public Result(String query, String answer) {
+        this(query, answer, "", null);
+    }
+
+    /**
+     * @param preciseAnswer is the unrounded answer, see
+     *                      {@link Expression#getPreciseResult()}
+     * @param answerValue   is the value of preciseAnswer, null if it isn't known
+     */
+    public Result(String query, String answer, String preciseAnswer, BigDecimal answerValue) {
         setQueryWithSep(query);
-        setAnswerWithSep(answer);
+        setAnswerWithSep(answer, preciseAnswer, answerValue);
         mQueryUnitPosInUnitArray = -1;
         mAnswerUnitPosInUnitArray = -1;
         mContainsUnits = false;
@@ -53,6 +71,8 @@ public class Result {
     public Result(JSONObject json) throws JSONException {
         setQuery(json.getString(JSON_QUERY));
         setAnswer(json.getString(JSON_ANSWER));
+        //older results didn't save their precise answer
+        mPreciseAnswer = json.optString(JSON_PRECISE_ANSWER, "");
         mQueryUnitPosInUnitArray = json.getInt(JSON_QUERY_UNIT);
         mAnswerUnitPosInUnitArray = json.getInt(JSON_ANSWER_UNIT);
         mAnswerUnitText = json.getString(JSON_ANSWER_UNIT_TEXT);
@@ -64,11 +84,48 @@ public class Result {
         mTimestamp = json.getLong(JSON_TIMESTAMP);
     }
 
+    /**
+     * Load a result saved by {@link #write(StateWriter)}
+     */
+    public Result(StateReader in) throws IOException {
+        setQuery(in.readString());
+        setAnswer(in.readString());
+        mPreciseAnswer = in.readString();
+        mContainsUnits = in.readBoolean();
+        mTimestamp = in.readLong();
+        mQueryUnitPosInUnitArray = in.readSignedInt();
+        mAnswerUnitPosInUnitArray = in.readSignedInt();
+        mQueryUnitText = in.readString();
+        mAnswerUnitText = in.readString();
+        mQueryUnitTextLong = in.readString();
+        mAnswerUnitTextLong = in.readString();
+        mUnitTypeKey = in.readString();
+    }
+
+    /**
+     * Save the same data as {@link #toJSON()}, in the binary state format
+     */
+    public void write(StateWriter out) throws IOException {
+        out.writeString(getQuery());
+        out.writeString(getAnswer());
+        out.writeString(mPreciseAnswer);
+        out.writeBoolean(containsUnits());
+        out.writeLong(mTimestamp);
+        out.writeSignedInt(mQueryUnitPosInUnitArray);
+        out.writeSignedInt(mAnswerUnitPosInUnitArray);
+        out.writeString(mQueryUnitText);
+        out.writeString(mAnswerUnitText);
+        out.writeString(mQueryUnitTextLong);
+        out.writeString(mAnswerUnitTextLong);
+        out.writeString(getUnitTypeKey());
+    }
+
     public JSONObject toJSON() throws JSONException {
         JSONObject json = new JSONObject();
 
         json.put(JSON_QUERY, getQuery());
         json.put(JSON_ANSWER, getAnswer());
+        json.put(JSON_PRECISE_ANSWER, mPreciseAnswer);
         json.put(JSON_QUERY_UNIT, mQueryUnitPosInUnitArray);
         json.put(JSON_ANSWER_UNIT, mAnswerUnitPosInUnitArray);
         json.put(JSON_QUERY_UNIT_TEXT, mQueryUnitText);
@@ -116,8 +173,30 @@ public class Result {
         mAnswer = answer;
     }
 
-    public void setAnswerWithSep(String answer) {
+    /**
+     * @param answer        is the rounded answer without separators
+     * @param preciseAnswer is the unrounded answer
+     * @param answerValue   is the value of preciseAnswer, null if it isn't known
+     */
+    public void setAnswerWithSep(String answer, String preciseAnswer, BigDecimal answerValue) {
         setAnswer(ExpSeparatorHandler.addSep(answer));
+        mPreciseAnswer = preciseAnswer;
+        mAnswerValue = answerValue;
+    }
+
+    /**
+     * Returns the unrounded answer, "" if there isn't one
+     */
+    public String getPreciseAnswer() {
+        return mPreciseAnswer;
+    }
+
+    /**
+     * Returns the unrounded answer as a number, null if it isn't known, such
+     * as for a fraction or a result loaded from JSON
+     */
+    public BigDecimal getAnswerValue() {
+        return mAnswerValue;
     }
 
     /**
@@ -193,6 +272,14 @@ public class Result {
         return mContainsUnits;
     }
 
+    long getLogId() {
+        return mLogId;
+    }
+
+    void setLogId(long logId) {
+        mLogId = logId;
+    }
+
     public String getTimestamp() {
         return formatDate(mTimestamp);
     }
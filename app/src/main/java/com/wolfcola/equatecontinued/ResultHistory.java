@@ -0,0 +1,164 @@
+package com.wolfcola.equatecontinued;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * History of results, oldest first, that holds at most a set number of
+ * results. The results are kept in a circular array, so adding a result once
+ * the history is full just overwrites the oldest one rather than shifting
+ * every result down. The array starts small and doubles as results are added,
+ * so a large capacity doesn't cost anything until the history fills up.
+ * <p>
+ * Removing a result from the middle (such as the user deleting it from the
+ * history list) still moves the results on the shorter side of it.
+ */
+class ResultHistory extends AbstractList<Result> implements RandomAccess {
+    private static final int INITIAL_ARRAY_SIZE = 16;
+
+    private Result[] mResults;
+    //index in mResults of the oldest result
+    private int mHead;
+    private int mSize;
+    private int mCapacity;
+
+    /**
+     * @param capacity is the most results kept, must be at least 1
+     */
+    ResultHistory(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        mCapacity = capacity;
+        mResults = new Result[Math.min(capacity, INITIAL_ARRAY_SIZE)];
+    }
+
+    int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Change the most results kept. If there are more results than that, the
+     * oldest ones are dropped.
+     *
+     * @param capacity is the most results kept, must be at least 1
+     */
+    void setCapacity(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        if (capacity == mCapacity)
+            return;
+        int drop = Math.max(0, mSize - capacity);
+        mCapacity = capacity;
+        //copy the newest results to the start of an array that fits them
+        Result[] results = new Result[Math.min(capacity, Math.max(mSize - drop,
+                INITIAL_ARRAY_SIZE))];
+        for (int i = drop; i < mSize; i++)
+            results[i - drop] = mResults[index(i)];
+        mResults = results;
+        mHead = 0;
+        mSize -= drop;
+        modCount++;
+    }
+
+    @Override
+    public Result get(int pos) {
+        checkPos(pos);
+        return mResults[index(pos)];
+    }
+
+    @Override
+    public Result set(int pos, Result result) {
+        checkPos(pos);
+        int i = index(pos);
+        Result old = mResults[i];
+        mResults[i] = result;
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Add a result as the newest, dropping the oldest if the history is full
+     *
+     * @return always true
+     */
+    @Override
+    public boolean add(Result result) {
+        if (mSize == mCapacity) {
+            //overwrite the oldest
+            mResults[mHead] = result;
+            mHead = (mHead + 1) % mResults.length;
+        } else {
+            if (mSize == mResults.length)
+                grow();
+            mResults[index(mSize)] = result;
+            mSize++;
+        }
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Only adding to the end is supported, since that's the only place
+     * results are ever added
+     */
+    @Override
+    public void add(int pos, Result result) {
+        if (pos != mSize)
+            throw new UnsupportedOperationException("Results can only be added to the end");
+        add(result);
+    }
+
+    @Override
+    public Result remove(int pos) {
+        checkPos(pos);
+        Result removed = mResults[index(pos)];
+        if (pos < mSize / 2) {
+            //closer to the oldest, so move the older results up one
+            for (int i = pos; i > 0; i--)
+                mResults[index(i)] = mResults[index(i - 1)];
+            mResults[mHead] = null;
+            mHead = (mHead + 1) % mResults.length;
+        } else {
+            for (int i = pos; i < mSize - 1; i++)
+                mResults[index(i)] = mResults[index(i + 1)];
+            mResults[index(mSize - 1)] = null;
+        }
+        mSize--;
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(mResults, null);
+        mHead = 0;
+        mSize = 0;
+        modCount++;
+    }
+
+    private void grow() {
+        Result[] results = new Result[(int) Math.min(mCapacity, mResults.length * 2L)];
+        for (int i = 0; i < mSize; i++)
+            results[i] = mResults[index(i)];
+        mResults = results;
+        mHead = 0;
+    }
+
+    /**
+     * @return index in mResults of the result at pos, where 0 is the oldest
+     */
+    private int index(int pos) {
+        int i = mHead + pos;
+        return i < mResults.length ? i : i - mResults.length;
+    }
+
+    private void checkPos(int pos) {
+        if (pos < 0 || pos >= mSize)
+            throw new IndexOutOfBoundsException("Index: " + pos + ", Size: " + mSize);
+    }
+}
@@ -0,0 +1,401 @@
+package com.wolfcola.equatecontinued;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+
+/**
+ * Saves the result history as an append-only log, so saving only writes the
+ * results added and deleted since the last save rather than the whole
+ * history. Every result gets an id when it's first logged, and the log is a
+ * list of records:
+ * <pre>
+ *     ADD id result    a result was added to the end of the history
+ *                      (logs from before the binary state format hold the
+ *                      result's JSON, and are still read)
+ *     DELETE id        a result was deleted (or dropped as the oldest)
+ *     CLEAR            every result before this was deleted
+ * </pre>
+ * Each record is written as its payload length, type, id, payload (the
+ * result written by a {@link StateWriter} of its own, for ADD) and a CRC32 of the rest. A record cut short by the
+ * app being killed mid-write, or that fails its CRC, ends the log, and is
+ * cut off when the log is loaded.
+ * <p>
+ * Once more than half the records are garbage (deleted results and their
+ * tombstones), the log is compacted on a background thread. Compacting
+ * copies the records of the live results into a new file, then copies over
+ * anything appended in the meantime, and replaces the log with it.
+ */
+public class ResultLog {
+    private static final int MAGIC = 0x45514C31; //"EQL1"
+    private static final int HEADER_SIZE = 4;
+    //length, type and id before the payload, then the CRC after it
+    private static final int RECORD_OVERHEAD = 4 + 1 + 8 + 4;
+    private static final byte TYPE_ADD = 1;
+    private static final byte TYPE_DELETE = 2;
+    private static final byte TYPE_CLEAR = 3;
+    private static final byte TYPE_ADD_BINARY = 4;
+    //logs with fewer records than this aren't worth compacting
+    private static final int MIN_COMPACT_RECORDS = 256;
+    //anything longer isn't a record this log wrote
+    private static final int MAX_PAYLOAD = 1 << 24;
+
+    private final File mFile;
+    private final Executor mCompactor;
+    //ids of the logged results still in the history, oldest (and lowest) first
+    private long[] mLiveIds = new long[0];
+    private long mNextId = 1;
+    //records in the log, live or not
+    private int mRecords;
+    //true once the log on disk has been loaded or written by this object, a
+    //log that hasn't been is rewritten rather than appended to, since its
+    //ids aren't known
+    private boolean mLoaded;
+    private boolean mCompacting;
+    //bumped by clear(), so a compaction that started before doesn't bring
+    //back the old log
+    private int mGeneration;
+
+    /**
+     * @param file      is where the log is kept
+     * @param compactor runs compactions, should be a background thread (or
+     *                  run them right away, for tests)
+     */
+    public ResultLog(File file, Executor compactor) {
+        mFile = file;
+        mCompactor = compactor;
+    }
+
+    public boolean exists() {
+        return mFile.exists();
+    }
+
+    /**
+     * Delete the log and forget the results in it, such as when the
+     * calculator is reset
+     */
+    public synchronized void clear() {
+        //noinspection ResultOfMethodCallIgnored
+        mFile.delete();
+        mLiveIds = new long[0];
+        mRecords = 0;
+        mLoaded = false;
+        mGeneration++;
+    }
+
+    /**
+     * @return number of records in the log, including deleted results and
+     * their tombstones
+     */
+    public synchronized int getRecordCount() {
+        return mRecords;
+    }
+
+    /**
+     * @return number of records that don't hold a result in the history
+     */
+    public synchronized int getGarbageCount() {
+        return mRecords - mLiveIds.length;
+    }
+
+    /**
+     * Read the results in the log into results, oldest first. If the log
+     * ends with a torn record, it's cut off. A result that can't be read is
+     * skipped, and deleted from the log on the next sync.
+     *
+     * @param results is the history to add the results to, should be empty
+     */
+    public synchronized void load(List<Result> results) throws IOException {
+        //payloads of the results still live after each record, by id
+        Map<Long, Record> live = new LinkedHashMap<>();
+        mLoaded = false;
+        mRecords = 0;
+        mNextId = 1;
+        long good = HEADER_SIZE;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(mFile)))) {
+            if (in.readInt() == MAGIC) {
+                Record record = new Record();
+                while (record.read(in)) {
+                    if (record.isAdd())
+                        live.put(record.mId, record.copy());
+                    else if (record.mType == TYPE_DELETE)
+                        live.remove(record.mId);
+                    else
+                        live.clear();
+                    mNextId = Math.max(mNextId, record.mId + 1);
+                    mRecords++;
+                    good += RECORD_OVERHEAD + record.mPayload.length;
+                }
+            } else
+                //not a log, so the next sync starts a new one
+                good = 0;
+        } catch (EOFException e) {
+            //header never written
+            good = 0;
+        }
+
+        //cut off a torn record, so new records follow the last good one
+        if (good < mFile.length()) {
+            try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+                file.setLength(good);
+            }
+        }
+
+        mLiveIds = new long[live.size()];
+        int i = 0;
+        for (Map.Entry<Long, Record> entry : live.entrySet()) {
+            mLiveIds[i++] = entry.getKey();
+            Result result;
+            try {
+                result = entry.getValue().toResult();
+            } catch (IOException e) {
+                continue;
+            }
+            result.setLogId(entry.getKey());
+            results.add(result);
+        }
+        mLoaded = true;
+    }
+
+    /**
+     * Append records for the results added to and deleted from the history
+     * since it was last loaded or synced, then compact the log in the
+     * background if it's mostly garbage
+     *
+     * @param results is the whole history, oldest first
+     */
+    public synchronized void sync(List<Result> results) throws IOException {
+        long[] oldIds = mLiveIds;
+        long[] liveIds = new long[results.size()];
+        //if the log is missing, or was never loaded (so the ids in it aren't
+        //known), every result is written to a new one
+        boolean newFile = !mLoaded || !mFile.exists() || mFile.length() < HEADER_SIZE;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(mFile, !newFile)))) {
+            if (newFile) {
+                out.writeInt(MAGIC);
+                mRecords = 0;
+                oldIds = new long[0];
+            }
+            //logged results are still in the same order, and new ones are only
+            //ever added at the end, so walk both lists together. Anything
+            //skipped over in oldIds was deleted.
+            int old = 0;
+            int live = 0;
+            for (Result result : results) {
+                long id = result.getLogId();
+                if (id == 0 || newFile) {
+                    if (old < oldIds.length) {
+                        writeRemoved(out, oldIds, old, live == 0);
+                        old = oldIds.length;
+                    }
+                    if (id == 0) {
+                        id = mNextId++;
+                        result.setLogId(id);
+                    }
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    result.write(new StateWriter(bytes));
+                    writeRecord(out, TYPE_ADD_BINARY, id, bytes.toByteArray());
+                } else {
+                    while (old < oldIds.length && oldIds[old] < id)
+                        writeRecord(out, TYPE_DELETE, oldIds[old++], new byte[0]);
+                    if (old < oldIds.length && oldIds[old] == id)
+                        old++;
+                }
+                liveIds[live++] = id;
+            }
+            if (old < oldIds.length)
+                writeRemoved(out, oldIds, old, live == 0);
+        }
+        mLiveIds = liveIds;
+        mLoaded = true;
+
+        if (!mCompacting && mRecords >= MIN_COMPACT_RECORDS
+                && getGarbageCount() * 2 > mRecords) {
+            mCompacting = true;
+            long end = mFile.length();
+            long[] ids = mLiveIds.clone();
+            int records = mRecords;
+            int generation = mGeneration;
+            mCompactor.execute(() -> compact(end, ids, records, generation));
+        }
+    }
+
+    /**
+     * Write tombstones for the results that were deleted
+     *
+     * @param from    is the first of ids that was deleted, the rest were too
+     * @param cleared is true if none of the logged results are left, which
+     *                is written as a single CLEAR
+     */
+    private void writeRemoved(DataOutputStream out, long[] ids, int from, boolean cleared)
+            throws IOException {
+        if (cleared)
+            writeRecord(out, TYPE_CLEAR, 0, new byte[0]);
+        else
+            for (int i = from; i < ids.length; i++)
+                writeRecord(out, TYPE_DELETE, ids[i], new byte[0]);
+    }
+
+    private void writeRecord(DataOutputStream out, byte type, long id, byte[] payload)
+            throws IOException {
+        out.writeInt(payload.length);
+        out.writeByte(type);
+        out.writeLong(id);
+        out.write(payload);
+        out.writeInt(Record.crc(type, id, payload));
+        mRecords++;
+    }
+
+    /**
+     * Rewrite the log with only the live results, runs on the compactor.
+     * Records before end don't change, so they're copied without holding the
+     * lock, then anything appended after end is copied over under the lock.
+     *
+     * @param end     is the length of the log when the compaction started
+     * @param liveIds are the ids of the live results at end, in order
+     * @param records is the number of records before end
+     */
+    private void compact(long end, long[] liveIds, int records, int generation) {
+        File tmp = new File(mFile.getPath() + ".tmp");
+        try {
+            int kept = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(mFile)));
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                         new FileOutputStream(tmp)))) {
+                in.readInt();
+                out.writeInt(MAGIC);
+                long pos = HEADER_SIZE;
+                Record record = new Record();
+                while (pos < end && record.read(in)) {
+                    pos += RECORD_OVERHEAD + record.mPayload.length;
+                    if (record.isAdd()
+                            && Arrays.binarySearch(liveIds, record.mId) >= 0) {
+                        out.writeInt(record.mPayload.length);
+                        out.writeByte(record.mType);
+                        out.writeLong(record.mId);
+                        out.write(record.mPayload);
+                        out.writeInt(record.mCrc);
+                        kept++;
+                    }
+                }
+            }
+
+            synchronized (this) {
+                if (generation != mGeneration)
+                    throw new IOException("Log was cleared while compacting");
+                //copy whatever was appended while compacting
+                try (InputStream in = new FileInputStream(mFile);
+                     FileOutputStream out = new FileOutputStream(tmp, true)) {
+                    long skipped = 0;
+                    while (skipped < end)
+                        skipped += in.skip(end - skipped);
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = in.read(buffer)) > 0)
+                        out.write(buffer, 0, read);
+                    out.getFD().sync();
+                }
+                if (!tmp.renameTo(mFile))
+                    throw new IOException("Could not replace " + mFile);
+                mRecords = kept + mRecords - records;
+                mCompacting = false;
+            }
+        } catch (IOException e) {
+            //the old log is still whole, so just try again after the next sync
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            synchronized (this) {
+                mCompacting = false;
+            }
+        }
+    }
+
+    /**
+     * A record read back from the log
+     */
+    private static final class Record {
+        byte mType;
+        long mId;
+        byte[] mPayload;
+        int mCrc;
+
+        /**
+         * @return false at the end of the log, or at a torn or corrupt record
+         */
+        boolean read(DataInputStream in) throws IOException {
+            try {
+                int length = in.readInt();
+                if (length < 0 || length > MAX_PAYLOAD)
+                    return false;
+                mType = in.readByte();
+                mId = in.readLong();
+                mPayload = new byte[length];
+                in.readFully(mPayload);
+                mCrc = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            return mType >= TYPE_ADD && mType <= TYPE_ADD_BINARY
+                    && mCrc == crc(mType, mId, mPayload);
+        }
+
+        boolean isAdd() {
+            return mType == TYPE_ADD || mType == TYPE_ADD_BINARY;
+        }
+
+        Record copy() {
+            Record record = new Record();
+            record.mType = mType;
+            record.mId = mId;
+            record.mPayload = mPayload;
+            record.mCrc = mCrc;
+            return record;
+        }
+
+        /**
+         * @return the result an ADD record holds
+         */
+        Result toResult() throws IOException {
+            if (mType == TYPE_ADD_BINARY)
+                return new Result(new StateReader(new ByteArrayInputStream(mPayload)));
+            try {
+                return new Result(new JSONObject(
+                        new String(mPayload, StandardCharsets.UTF_8)));
+            } catch (JSONException e) {
+                throw new IOException("Bad result in log", e);
+            }
+        }
+
+        static int crc(byte type, long id, byte[] payload) {
+            CRC32 crc = new CRC32();
+            crc.update(type);
+            for (int shift = 56; shift >= 0; shift -= 8)
+                crc.update((int) (id >>> shift));
+            crc.update(payload);
+            return (int) crc.getValue();
+        }
+    }
+}
@@ -1,31 +1,51 @@
 package com.wolfcola.equatecontinued
 
 object SISuffixHelper {
-    private val siSuffixMap = mapOf(
-        "E24" to "yotta",
-        "E21" to "zetta",
-        "E18" to "exa",
-        "E15" to "peta",
-        "E12" to "tera",
-        "E9" to "giga",
-        "E6" to "mega",
-        "E3" to "kilo",
-        "E2" to "hecto",
-        "E1" to "deca",
-        "E-1" to "deci",
-        "E-2" to "centi",
-        "E-3" to "milli",
-        "E-6" to "micro",
-        "E-9" to "nano",
-        "E-12" to "pico",
-        "E-15" to "femto",
-        "E-18" to "atto",
-        "E-21" to "zepto"
-    )
-
+    /**
+     * Name of the SI prefix for the exponent of a number in engineering
+     * notation, such as "kilo" for "5E3", or "" if there isn't one. Reads the
+     * exponent in a single pass rather than matching the text.
+     */
     @JvmStatic
-    fun getSuffixName(number: String): String {
-        if (number.matches(Regex(".*E.*E.*")) || !number.contains("E")) return ""
-        return siSuffixMap[number.substring(number.indexOf("E"))] ?: ""
+    fun getSuffixName(number: CharSequence): String {
+        val e = number.indexOf('E')
+        //nothing for no exponent, or more than one
+        if (e < 0 || number.indexOf('E', e + 1) >= 0) return ""
+
+        var i = e + 1
+        val negative = i < number.length && number[i] == '-'
+        if (negative) i++
+        //only exponents written the plain way, so not "E+3" or "E03"
+        if (i == number.length || number[i] == '0') return ""
+        var exponent = 0
+        while (i < number.length) {
+            val c = number[i++]
+            if (c !in '0'..'9' || exponent > 24) return ""
+            exponent = exponent * 10 + (c - '0')
+        }
+        return getSuffixName(if (negative) -exponent else exponent)
+    }
+
+    private fun getSuffixName(exponent: Int): String = when (exponent) {
+        24 -> "yotta"
+        21 -> "zetta"
+        18 -> "exa"
+        15 -> "peta"
+        12 -> "tera"
+        9 -> "giga"
+        6 -> "mega"
+        3 -> "kilo"
+        2 -> "hecto"
+        1 -> "deca"
+        -1 -> "deci"
+        -2 -> "centi"
+        -3 -> "milli"
+        -6 -> "micro"
+        -9 -> "nano"
+        -12 -> "pico"
+        -15 -> "femto"
+        -18 -> "atto"
+        -21 -> "zepto"
+        else -> ""
     }
 }
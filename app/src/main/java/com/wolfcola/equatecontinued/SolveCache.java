@@ -0,0 +1,232 @@
+package com.wolfcola.equatecontinued;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least recently used cache of solved expressions. The preview solves
+ * the expression after every key press, so pressing equals (or re-solving a
+ * result from the history list) usually only needs a lookup here.
+ * <p>
+ * Entries are keyed by the normalized expression (see
+ * {@link Expression#addImpliedParMult(String)}), and hold the compiled tree
+ * along with the answers for each combination of operating MathContext,
+ * rational mode, display precision and {@link Expression.NumFormat}. The size of the cache is
+ * measured in characters of expression and answer text rather than in number
+ * of entries, so a few huge expressions can't pin down a lot of memory.
+ * <p>
+ * All methods are synchronized since the cache is shared by the Preview and
+ * the Solver.
+ */
+public class SolveCache {
+    //rough cost in chars of the objects that make up an entry or answer
+    private static final int ENTRY_OVERHEAD = 32;
+    private static final int ANSWER_OVERHEAD = 16;
+
+    //access ordered, so the eldest entry is the least recently used
+    private final LinkedHashMap<String, Entry> mEntries;
+    private final int mMaxWeight;
+    private int mWeight;
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+
+    /**
+     * @param maxWeight is the maximum total size of all the entries, roughly
+     *                  measured in chars of expression and answer text
+     */
+    SolveCache(int maxWeight) {
+        mMaxWeight = maxWeight;
+        mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Look up the answer of a previously solved expression. Counts as either a
+     * hit or a miss.
+     *
+     * @param expression       is the normalized expression
+     * @param mcOperate        is the MathContext the expression was evaluated with
+     * @param rational         is true if it was evaluated in rational mode
+     * @param displayPrecision is the precision the answer was rounded to
+     * @param numFormat        is the format the answer was rounded with
+     * @return the cached answer, or null if there isn't one
+     */
+    synchronized Answer get(String expression, MathContext mcOperate, boolean rational,
+                            int displayPrecision, Expression.NumFormat numFormat) {
+        Entry entry = mEntries.get(expression);
+        Answer answer = entry == null ? null
+                : entry.findAnswer(mcOperate, rational, displayPrecision, numFormat);
+        if (answer == null)
+            mMissCount++;
+        else
+            mHitCount++;
+        return answer;
+    }
+
+    /**
+     * Returns the compiled tree of a previously solved expression, or null if
+     * it isn't cached (or was never compiled, such as for the Preview)
+     */
+    synchronized Node getTree(String expression) {
+        Entry entry = mEntries.get(expression);
+        return entry == null ? null : entry.mTree;
+    }
+
+    /**
+     * Add the answer of a solved expression, evicting least recently used
+     * entries until the cache fits within its maximum weight again.
+     *
+     * @param expression is the normalized expression
+     * @param tree       is the compiled expression, null if it wasn't compiled
+     */
+    synchronized void put(String expression, Node tree, Answer answer) {
+        Entry entry = mEntries.get(expression);
+        if (entry == null) {
+            Entry newEntry = new Entry(expression, tree);
+            //don't bother caching something that would evict everything else
+            if (newEntry.mWeight + answer.weight() > mMaxWeight)
+                return;
+            entry = newEntry;
+            mEntries.put(expression, entry);
+            mWeight += entry.mWeight;
+        } else if (entry.findAnswer(answer.mMcOperate, answer.mRational,
+                answer.mDisplayPrecision, answer.mNumFormat) != null)
+            return;
+        else if (entry.mTree == null)
+            entry.mTree = tree;
+
+        entry.addAnswer(answer);
+        mWeight += answer.weight();
+        trimToSize(entry);
+    }
+
+    private void trimToSize(Entry keep) {
+        Iterator<Map.Entry<String, Entry>> it = mEntries.entrySet().iterator();
+        while (mWeight > mMaxWeight && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            if (eldest == keep)
+                continue;
+            it.remove();
+            mWeight -= eldest.mWeight;
+            mEvictionCount++;
+        }
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * @return number of expressions currently cached
+     */
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * @return total size of the cached entries, see {@link #getMaxWeight()}
+     */
+    public synchronized int getWeight() {
+        return mWeight;
+    }
+
+    /**
+     * @return maximum total size of the cached entries, roughly measured in
+     * chars of expression and answer text
+     */
+    public int getMaxWeight() {
+        return mMaxWeight;
+    }
+
+
+    /**
+     * Outcome of solving an expression, enough to put an Expression in the
+     * same state that {@link Solver#solve} would leave it in.
+     */
+    static final class Answer {
+        final String mText;
+        //unrounded answer, null if the answer was an error or empty
+        final String mPreciseResult;
+        //value of mPreciseResult, null if it isn't known (such as a fraction)
+        final BigDecimal mPreciseValue;
+        final MathContext mMcOperate;
+        final boolean mRational;
+        final int mDisplayPrecision;
+        final Expression.NumFormat mNumFormat;
+
+        /**
+         * @param text             is the rounded and cleaned answer, or an error
+         * @param preciseResult    is the unrounded answer, null if the answer
+         *                         wasn't rounded (errors and empty answers)
+         * @param preciseValue     is the value of preciseResult, null if it
+         *                         isn't known
+         * @param mcOperate        is the MathContext used to evaluate
+         * @param rational         is true if it was evaluated in rational mode
+         * @param displayPrecision is the precision the answer was rounded to
+         * @param numFormat        is the format the answer was rounded with
+         */
+        Answer(String text, String preciseResult, BigDecimal preciseValue, MathContext mcOperate,
+               boolean rational, int displayPrecision, Expression.NumFormat numFormat) {
+            mText = text;
+            mPreciseResult = preciseResult;
+            mPreciseValue = preciseValue;
+            mMcOperate = mcOperate;
+            mRational = rational;
+            mDisplayPrecision = displayPrecision;
+            mNumFormat = numFormat;
+        }
+
+        boolean isRounded() {
+            return mPreciseResult != null;
+        }
+
+        private int weight() {
+            int weight = ANSWER_OVERHEAD + mText.length();
+            if (mPreciseResult != null)
+                weight += mPreciseResult.length();
+            return weight;
+        }
+    }
+
+    private static final class Entry {
+        private Node mTree;
+        private final ArrayList<Answer> mAnswers = new ArrayList<>(1);
+        private int mWeight;
+
+        Entry(String expression, Node tree) {
+            mTree = tree;
+            //count the expression twice, once for the key and once for its tree
+            mWeight = ENTRY_OVERHEAD + 2 * expression.length();
+        }
+
+        Answer findAnswer(MathContext mcOperate, boolean rational, int displayPrecision,
+                          Expression.NumFormat numFormat) {
+            for (Answer answer : mAnswers) {
+                if (answer.mNumFormat == numFormat
+                        && answer.mRational == rational
+                        && answer.mDisplayPrecision == displayPrecision
+                        && answer.mMcOperate.equals(mcOperate))
+                    return answer;
+            }
+            return null;
+        }
+
+        void addAnswer(Answer answer) {
+            mAnswers.add(answer);
+            mWeight += answer.weight();
+        }
+    }
+}
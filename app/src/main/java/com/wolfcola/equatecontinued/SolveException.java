@@ -0,0 +1,15 @@
+package com.wolfcola.equatecontinued;
+
+/**
+ * Thrown while parsing or evaluating an expression. The message is always one
+ * of the user facing error strings in {@link Solver}, such as
+ * {@link Solver#strSyntaxError}, so it can be displayed directly.
+ */
+class SolveException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    SolveException(String errorMessage) {
+        //errors are expected user input, skip the expensive stack trace
+        super(errorMessage, null, false, false);
+    }
+}
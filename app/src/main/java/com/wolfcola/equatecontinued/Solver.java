@@ -1,11 +1,10 @@
 package com.wolfcola.equatecontinued;
 
-import com.wolfcola.equatecontinued.unit.Unit;
+import com.wolfcola.equatecontinued.unit.UnitConversion;
 
 import java.math.BigDecimal;
 import java.math.MathContext;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Solver {
     //error messages
@@ -13,14 +12,66 @@ public class Solver {
     public static final String strDivideZeroError = "Divide By Zero Error";
     public static final String strInfinityError = "Number Too Large";
 
+    //max size of the cache, roughly measured in chars of expression and answer text
+    private static final int CACHE_MAX_WEIGHT = 64 * 1024;
 
-    //we want the display precision to be a bit less than calculated
-    private MathContext mMcOperate;
+
+    //performs the individual operations, its precision should be a bit more
+    //than the display precision. Replaced as a whole when the precision
+    //changes, so a solve in progress on the preview worker isn't affected.
+    private volatile Arithmetic mArithmetic;
+    //keep answers as exact fractions where possible, see RationalArithmetic
+    private volatile boolean mRationalMode;
+    //answers of recently solved expressions, shared with the preview
+    private final SolveCache mCache;
+    //number of evaluations done entirely with ExactArithmetic, or not
+    private final AtomicLong mFastPathCount = new AtomicLong();
+    private final AtomicLong mFallbackCount = new AtomicLong();
 
 
     Solver(int solvePrecision) {
-        if (solvePrecision > 0)
-            mMcOperate = new MathContext(solvePrecision);
+        mCache = new SolveCache(CACHE_MAX_WEIGHT);
+        setPrecision(solvePrecision);
+    }
+
+    /**
+     * Change the number of digits used for calculations. Answers cached at
+     * other precisions are kept, in case the precision is changed back.
+     */
+    void setPrecision(int solvePrecision) {
+        if (solvePrecision > 0 && (mArithmetic == null
+                || mArithmetic.getPrecision() != solvePrecision))
+            mArithmetic = new Arithmetic(new MathContext(solvePrecision));
+    }
+
+    int getPrecision() {
+        return mArithmetic.getPrecision();
+    }
+
+    /**
+     * Turn rational mode on or off. In rational mode answers such as 1/3 are
+     * kept as exact fractions, so using them in later calculations or unit
+     * conversions doesn't add rounding errors. Anything that can't be done
+     * exactly (or cheaply) is still done with decimals.
+     */
+    void setRationalMode(boolean rational) {
+        mRationalMode = rational;
+    }
+
+    boolean isRationalMode() {
+        return mRationalMode;
+    }
+
+    SolveCache getCache() {
+        return mCache;
+    }
+
+    long getFastPathCount() {
+        return mFastPathCount.get();
+    }
+
+    long getFallbackCount() {
+        return mFallbackCount.get();
     }
 
 
@@ -73,174 +124,280 @@ public class Solver {
      * Solves a given Expression
      * Cleans off the expression, adds missing parentheses, then loads in more
      * accurate result values if possible into expression.
-     * Iterates over expression using PEMAS order of operations
+     * Compiles the expression into a tree using PEMAS order of operations
+     * and evaluates it. Answers are cached, so solving the same expression
+     * again (such as pressing equals after the preview) is just a lookup.
      *
      * @param exp is the Expression to solve
      * @return the expression before conversion (potentially used for result list)
      */
     Result solve(Expression exp, Expression.NumFormat numFormat) {
-        //clean off any dangling operators and E's (not parentheses!!)
-        exp.cleanDanglingOps();
+        return solve(exp, numFormat, null);
+    }
 
-        //if more open parentheses then close, add corresponding close para's
-        exp.closeOpenPar();
+    /**
+     * Solves a given Expression, see {@link #solve(Expression, Expression.NumFormat)}
+     *
+     * @param evaluator is used to evaluate the expression if it isn't cached,
+     *                  reusing what it can from the last expression it
+     *                  evaluated. If null, the expression is compiled from
+     *                  scratch instead.
+     */
+    Result solve(Expression exp, Expression.NumFormat numFormat,
+                 IncrementalEvaluator evaluator) {
+        cleanExpression(exp);
 
         //save away query before we start manipulating it
-        String cleanedQuery = exp.toString();
         //add implied multiplies for display purposes
-        cleanedQuery = Expression.addImpliedParMult(cleanedQuery);
+        String cleanedQuery = Expression.addImpliedParMult(exp.getText());
         //if expression empty|invalid, don't need to solve anything
-        if (exp.isEmpty())
+        if (!solveCleaned(exp, numFormat, evaluator))
             return null;
 
-        //load in the precise result if possible
-        exp.loadPreciseResult();
+        //errors and empty answers weren't rounded, so have no precise result
+        if (exp.isInvalid() || exp.isEmpty())
+            return new Result(cleanedQuery, exp.toString());
+        return new Result(cleanedQuery, exp.toString(), exp.getPreciseResult(),
+                exp.getPreciseValue());
+    }
 
-        //deal with percent operators
-        String strExp = Expression.replacePercentOps(exp.toString());
+    /**
+     * Solve an expression for the preview, the same as
+     * {@link #solve(Expression, Expression.NumFormat, IncrementalEvaluator)}
+     * but only the answer is needed. The query isn't copied into a Result,
+     * so a key press in a long expression doesn't add separators to all of it.
+     *
+     * @return the answer with separators, "" if there was nothing to solve
+     */
+    String solveAnswer(Expression exp, Expression.NumFormat numFormat,
+                       IncrementalEvaluator evaluator) {
+        cleanExpression(exp);
+        if (!solveCleaned(exp, numFormat, evaluator))
+            return "";
+        return ExpSeparatorHandler.addSep(exp.toString());
+    }
 
-        //put parenthesis around ^ expressions; -(1)^2 to -((1)^2)
-        strExp = Expression.groupPowerOperands(strExp);
+    private static void cleanExpression(Expression exp) {
+        //clean off any dangling operators and E's (not parentheses!!)
+        exp.cleanDanglingOps();
 
-        //add implied multiples for parenthesis
-        strExp = Expression.addImpliedParMult(strExp);
+        //if more open parentheses then close, add corresponding close para's
+        exp.closeOpenPar();
+    }
 
-        //main calculation: first the P of PEMAS, this function then calls remaining EMAS
-        strExp = collapsePara(strExp);
-        //save solved expression away
-        exp.replaceExpression(strExp);
+    /**
+     * Solve an expression that was already cleaned, loading the answer into it
+     *
+     * @return false if the expression was empty, so there was nothing to solve
+     */
+    private boolean solveCleaned(Expression exp, Expression.NumFormat numFormat,
+                                 IncrementalEvaluator evaluator) {
+        if (exp.isEmpty())
+            return false;
+
+        //load in the precise result if possible
+        exp.loadPreciseResult();
 
-        roundAndClean(exp, numFormat);
+        //key the cache on the same form as the query, so the query of a
+        //result from the history list maps back to its original expression
+        String normalized = Expression.addImpliedParMult(exp.getText());
+        //the same precision and mode all the way through, even if they change part way
+        Arithmetic math = mArithmetic;
+        boolean rational = mRationalMode;
+        SolveCache.Answer cached = mCache.get(normalized, math.getMathContext(), rational,
+                exp.getDisplayPrecision(), numFormat);
+        if (cached != null) {
+            if (cached.isRounded())
+                exp.loadRoundedResult(cached.mText, cached.mPreciseResult, cached.mPreciseValue,
+                        numFormat);
+            else
+                exp.replaceExpression(cached.mText);
+        } else
+            solveAndCache(exp, normalized, numFormat, math, rational, evaluator);
 
         //flag used to tell backspace and numbers to clear the expression when pressed
         exp.setSolved(true);
-        return new Result(cleanedQuery, exp.toString());
+        return true;
     }
 
 
     /**
-     * Function used to convert from one unit to another
+     * Function used to convert from one unit to another. The precise result
+     * of exp is converted directly, usually with a single multiply, and the
+     * rounded answer is loaded back into exp.
      *
-     * @param fromUnit is unit being converted from
-     * @param toUnit   is unit being converted to
+     * @param conversion is from {@link com.wolfcola.equatecontinued.unit.UnitType#getConversion},
+     *                   null if the units can't be converted
      */
-    void convertFromTo(Unit fromUnit, Unit toUnit, Expression exp) {
-        String toSolve = fromUnit.convertTo(toUnit, exp.getPreciseResult());
-        exp.replaceExpression(toSolve);
+    void convertFromTo(UnitConversion conversion, Expression exp) {
+        if (conversion == null) {
+            exp.replaceExpression("");
+            return;
+        }
+        //the same precision and mode all the way through, even if they change part way
+        Arithmetic math = mArithmetic;
+        boolean rational = mRationalMode;
+        String preciseResult = exp.getPreciseResult();
+        String answer;
+        BigDecimal value = null;
+        try {
+            Rational exact = rational ? convertExactly(conversion, preciseResult) : null;
+            if (exact != null)
+                answer = exact.toString();
+            else {
+                BigDecimal precise = exp.getPreciseValue() != null ? exp.getPreciseValue()
+                        : Rational.toBigDecimal(preciseResult, math.getMathContext());
+                value = convert(conversion, precise, math);
+                answer = value.toString();
+            }
+        } catch (SolveException e) {
+            answer = e.getMessage();
+        } catch (NumberFormatException e) {
+            answer = strSyntaxError;
+        }
 
-        solve(exp, Expression.NumFormat.NORMAL);
+        if (value != null)
+            exp.loadResult(answer, value, Expression.NumFormat.NORMAL);
+        else {
+            exp.replaceExpression(answer);
+            roundAndClean(exp, Expression.NumFormat.NORMAL);
+        }
+        exp.setSolved(true);
     }
 
     /**
-     * Recursively loop over all parentheses, invoke other operators in results found within
+     * Convert a single value, for converting many values with the same
+     * conversion without an Expression for each
      *
-     * @param str is the String to loop the parentheses solving over
+     * @throws SolveException if the conversion fails
      */
-    private String collapsePara(String str) {
-        //find the first open parentheses
-        int firstPara = str.indexOf("(");
-
-        //if no open parentheses exists, move on
-        if (firstPara != -1) {
-            //loop over all parentheses
-            int matchingPara = Expression.findMatchingClosePara(str, firstPara);
-
-            //we didn't find the matching parentheses put up syntax error and quit
-            if (matchingPara == -1) {
-                str = strSyntaxError;
-                return str;
-            } else {
-                //this is the section before any parentheses, aka "25+" in "25+(9)", or just "" if "(9)"
-                String firstSection = str.substring(0, firstPara);
-                //this is the inside of the outermost parentheses set, recurse over inside to find more parentheses
-                String middleSection = collapsePara(str.substring(firstPara + 1, matchingPara));
-                //this is after the close of the outermost found set, might be lots of operators/numbers or ""
-                String endSection = str.substring(matchingPara + 1);
-
-                //all parentheses found, splice string back together
-                str = collapsePara(firstSection + middleSection + endSection);
-            }
-        }
-        //perform other operations in proper order of operations
-        str = collapseOps(Expression.regexGroupedExponent, str);
-        str = collapseOps(Expression.regexGroupedMultiDiv, str);
-        str = collapseOps(Expression.regexGroupedAddSub, str);
-        return str;
+    BigDecimal convertValue(UnitConversion conversion, BigDecimal value) {
+        return convert(conversion, value, mArithmetic);
+    }
+
+    /**
+     * Convert a value with Arithmetic, so errors and range problems are
+     * reported the same way as when solving
+     *
+     * @throws SolveException if the conversion fails, such as 1/0 for an
+     *                        inverted unit
+     */
+    private static BigDecimal convert(UnitConversion conversion, BigDecimal value,
+                                      Arithmetic math) {
+        BigDecimal factor = conversion.getFactor(math.getMathContext());
+        if (factor == null)
+            throw new SolveException(strDivideZeroError);
+        if (conversion.getShift().signum() != 0)
+            value = math.add(value, conversion.getShift());
+        value = conversion.isInverted() ? math.divide(factor, value)
+                : math.multiply(value, factor);
+        if (conversion.getOffset().signum() != 0)
+            value = math.add(value, conversion.getOffset());
+        //0 times the factor keeps the factor's scale, which would show as 0E-16
+        return value.signum() == 0 ? BigDecimal.ZERO : value;
     }
 
+    /**
+     * Convert a precise result in rational mode, so an exact answer stays
+     * exact
+     *
+     * @return the exact answer, or null if it can't be kept exact
+     */
+    private static Rational convertExactly(UnitConversion conversion, String preciseResult) {
+        RationalArithmetic exact = new RationalArithmetic();
+        Rational value = Rational.isFraction(preciseResult) ? Rational.parseFraction(preciseResult)
+                : exact.load(new BigDecimal(preciseResult));
+        //unit values are short ratios, which always fit
+        Rational factor = exact.divide(exact.load(conversion.getNumerator()),
+                exact.load(conversion.getDenominator()));
+        if (value == null || factor == null)
+            return null;
+        value = exact.add(value, exact.load(conversion.getShift()));
+        if (value == null)
+            return null;
+        value = conversion.isInverted() ? exact.divide(factor, value)
+                : exact.multiply(value, factor);
+        return value == null ? null : exact.add(value, exact.load(conversion.getOffset()));
+    }
 
     /**
-     * Loop over/collapse down input str, solves for either +- or /*.  places result in expression
+     * Evaluate a normalized expression, round the answer into exp, then add
+     * the answer to the cache
      *
-     * @param regexOperatorType is the type of operators to look for in regex form
-     * @param str               is the string to operate upon
+     * @param normalized is the cleaned expression to evaluate, eg "2+3*(4)"
+     * @param math       performs the individual operations
+     * @param rational   is true to keep the answer as an exact fraction
+     * @param evaluator  is the incremental evaluator to use, or null to
+     *                   compile the expression into a tree. Not used in
+     *                   rational mode.
      */
-    private String collapseOps(String regexOperatorType, String str) {
-        //find the first instance of operator in the str (we want left to right per order of operations)
-        Pattern ptn = Pattern.compile(Expression.regexGroupedNonNegNumber + regexOperatorType + Expression.regexGroupedNumber);
-        Matcher mat = ptn.matcher(str);
-        BigDecimal result;
-        //this loop will loop through each occurrence of the "# op #" sequence
-        while (mat.find()) {
-            BigDecimal operand1;
-            BigDecimal operand2;
-            String operator;
-
-            //be sure string is formatted properly
+    private void solveAndCache(Expression exp, String normalized,
+                               Expression.NumFormat numFormat, Arithmetic math,
+                               boolean rational, IncrementalEvaluator evaluator) {
+        //main calculation: percents, implied multiplies and powers are all
+        //handled by the parser (or evaluator) in one pass
+        Node tree = null;
+        String strExp;
+        //the answer as a number, if the evaluator has it
+        BigDecimal value = null;
+        if (evaluator != null && !rational) {
+            strExp = evaluator.evaluate(normalized, math);
+            if (!strExp.isEmpty())
+                countEvaluation(evaluator.isAnswerExact());
+            value = evaluator.getAnswerValue();
+        } else {
+            tree = mCache.getTree(normalized);
             try {
-                operand1 = new BigDecimal(mat.group(1));
-                operand2 = new BigDecimal(mat.group(Expression.numGroupsInRegexGroupedNumber + 2));
-                operator = mat.group(Expression.numGroupsInRegexGroupedNumber + 1);
-            } catch (NumberFormatException e) {
-                //throw syntax error if we have a weirdly formatted string
-                str = strSyntaxError;
-                return str;
+                if (tree == null)
+                    tree = ExpressionParser.parse(normalized);
+                strExp = tree == null ? "" : evaluateTree(tree, math, rational);
+            } catch (SolveException e) {
+                strExp = e.getMessage();
             }
+        }
+        //save solved expression away, and round it
+        if (value != null)
+            exp.loadResult(strExp, value, numFormat);
+        else {
+            exp.replaceExpression(strExp);
+            roundAndClean(exp, numFormat);
+        }
+
+        String preciseResult = null;
+        if (!Expression.isInvalid(strExp) && !strExp.isEmpty()) {
+            //rounding failed, don't bother caching such an odd case
+            if (exp.isInvalid())
+                return;
+            preciseResult = strExp;
+        }
+        mCache.put(normalized, tree, new SolveCache.Answer(exp.toString(), preciseResult,
+                preciseResult == null ? null : exp.getPreciseValue(), math.getMathContext(),
+                rational, exp.getDisplayPrecision(), numFormat));
+    }
 
-            //perform actual operation on found operator and operands
-            if (operator.equals("+")) {
-                //crude fix for 1E999999+1, which hangs the app. Could be handled better with real infinity...
-                if (operand1.scale() < -9000 || operand2.scale() < -9000)
-                    return strInfinityError;
-                result = operand1.add(operand2, mMcOperate);
-            } else if (operator.equals("-")) {
-                if (operand1.scale() < -9000 || operand2.scale() < -9000)
-                    return strInfinityError;
-                result = operand1.subtract(operand2, mMcOperate);
-            } else if (operator.equals("*"))
-                result = operand1.multiply(operand2, mMcOperate);
-            else if (operator.equals("^")) {
-                // TODO: Math.pow() converts to double, losing precision for large exponents (e.g. 2^53+).
-                // A proper fix would use an arbitrary-precision BigDecimal power implementation.
-                double dResult = Math.pow(operand1.doubleValue(), operand2.doubleValue());
-                //catch infinity errors could be neg or pos
-                try {
-                    result = BigDecimal.valueOf(dResult);
-                } catch (NumberFormatException ex) {
-                    if (dResult == Double.POSITIVE_INFINITY || dResult == Double.NEGATIVE_INFINITY)
-                        str = strInfinityError;
-                        //else case most likely shouldn't occur
-                    else
-                        str = strSyntaxError;
-                    return str;
-                }
-            } else if (operator.equals("/")) {
-                //catch divide by zero errors
-                try {
-                    result = operand1.divide(operand2, mMcOperate);
-                } catch (ArithmeticException ex) {
-                    str = strDivideZeroError;
-                    return str;
-                }
-            } else
-                throw new IllegalArgumentException("In collapseOps, invalid operator...");
-            //save cut out the old str and save in the result
-            str = str.substring(0, mat.start()) + result + str.substring(mat.end());
-
-            //reset the matcher with a our new str
-            mat = ptn.matcher(str);
+    /**
+     * Evaluate a compiled expression, on the fast path if possible and
+     * otherwise with BigDecimal. In rational mode, exact fractions are tried
+     * before BigDecimal.
+     *
+     * @throws SolveException if any operation fails, such as divide by zero
+     */
+    private String evaluateTree(Node tree, Arithmetic math, boolean rational) {
+        String answer = tree.evaluateExactToString(new ExactArithmetic(math.getPrecision()));
+        countEvaluation(answer != null);
+        if (answer == null && rational) {
+            Rational exact = tree.evaluateRational(new RationalArithmetic());
+            if (exact != null)
+                answer = exact.toString();
         }
-        return str;
+        return answer != null ? answer : tree.evaluateToString(math);
+    }
+
+    private void countEvaluation(boolean fastPath) {
+        if (fastPath)
+            mFastPathCount.incrementAndGet();
+        else
+            mFallbackCount.incrementAndGet();
     }
 
     private void roundAndClean(Expression exp, Expression.NumFormat numFormat) {
@@ -0,0 +1,122 @@
+package com.wolfcola.equatecontinued;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads saved state written by {@link StateWriter}, one value at a time and
+ * in the same order it was written
+ */
+public class StateReader {
+    //anything longer isn't a string or bytes StateWriter wrote
+    private static final int MAX_LENGTH = 1 << 24;
+
+    private final InputStream mIn;
+    //every string read so far, by index
+    private final List<String> mStrings = new ArrayList<>();
+
+    public StateReader(InputStream in) {
+        mIn = in;
+    }
+
+    /**
+     * Read the header written by {@link StateWriter#writeHeader(int, int)}
+     *
+     * @param magic      is the magic number the state should start with
+     * @param maxVersion is the newest version of the format that can be read
+     * @return the version of the format the state was written in
+     * @throws IOException if the state doesn't start with magic, or was
+     *                     written in a newer version of the format
+     */
+    public int readHeader(int magic, int maxVersion) throws IOException {
+        int read = 0;
+        for (int i = 0; i < 4; i++)
+            read = read << 8 | readByte();
+        if (read != magic)
+            throw new IOException("Not a saved state");
+        int version = readInt();
+        if (version > maxVersion)
+            throw new IOException("Saved state is version " + version
+                    + ", only up to " + maxVersion + " can be read");
+        return version;
+    }
+
+    public int readInt() throws IOException {
+        long value = readLong();
+        if (value > 0xFFFFFFFFL)
+            throw new IOException("Int out of range");
+        return (int) value;
+    }
+
+    public long readLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Varint too long");
+    }
+
+    public int readSignedInt() throws IOException {
+        int value = readInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    public double readDouble() throws IOException {
+        long bits = 0;
+        for (int i = 0; i < 8; i++)
+            bits = bits << 8 | readByte();
+        return Double.longBitsToDouble(bits);
+    }
+
+    public String readString() throws IOException {
+        int value = readInt();
+        if ((value & 1) != 0) {
+            int index = value >>> 1;
+            if (index >= mStrings.size())
+                throw new IOException("Bad string index " + index);
+            return mStrings.get(index);
+        }
+        String string = new String(readBytes(value >>> 1), StandardCharsets.UTF_8);
+        mStrings.add(string);
+        return string;
+    }
+
+    /**
+     * Read bytes written by {@link StateWriter#writeBytes(byte[])}
+     */
+    public byte[] readBytes() throws IOException {
+        return readBytes(readInt());
+    }
+
+    private byte[] readBytes(int length) throws IOException {
+        if (length < 0 || length > MAX_LENGTH)
+            throw new IOException("Too long to be saved state");
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < bytes.length) {
+            int count = mIn.read(bytes, read, bytes.length - read);
+            if (count < 0)
+                throw new EOFException();
+            read += count;
+        }
+        return bytes;
+    }
+
+    private int readByte() throws IOException {
+        int b = mIn.read();
+        if (b < 0)
+            throw new EOFException();
+        return b;
+    }
+}
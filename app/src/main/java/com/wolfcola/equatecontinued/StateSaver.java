@@ -0,0 +1,141 @@
+package com.wolfcola.equatecontinued;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Saves state to a file on a background thread. The caller takes a snapshot
+ * of its state (quick, on the main thread) and hands it to
+ * {@link #save(Snapshot)}, the snapshot is then written out after a short
+ * delay. Saves made before the write starts replace the pending snapshot, so
+ * a burst of saves is only written once.
+ * <p>
+ * The snapshot is written to a temporary file, synced to disk, then renamed
+ * over the old file, so the app being killed part way through a write leaves
+ * the last good state in place.
+ */
+public class StateSaver {
+    private final File mFile;
+    private final long mDelayMillis;
+    //a single writer, so writes happen in order and never overlap
+    private final ScheduledExecutorService mWriter;
+    //newest snapshot not yet written, null if there isn't one
+    private Snapshot mPending;
+    private boolean mScheduled;
+    private int mWriteCount;
+
+    /**
+     * State captured at the time of a save, written on the writer thread. It
+     * shouldn't refer to anything the main thread might change afterwards.
+     */
+    public interface Snapshot {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * @param file        is where the state is saved
+     * @param delayMillis is how long to wait after a save before writing it,
+     *                    for any more saves to come in
+     */
+    public StateSaver(File file, long delayMillis) {
+        mFile = file;
+        mDelayMillis = delayMillis;
+        mWriter = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * Write snapshot in the background, in place of any snapshot not yet
+     * written
+     */
+    public synchronized void save(Snapshot snapshot) {
+        mPending = snapshot;
+        if (!mScheduled) {
+            mScheduled = true;
+            mWriter.schedule(this::writePending, mDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Drop the snapshot not yet written, if there is one, then run task on the
+     * writer thread once any write in progress is done. Used to change the
+     * saved state (such as clearing it) without a save from before
+     * overwriting the change.
+     */
+    public synchronized void cancelAndRun(Runnable task) {
+        mPending = null;
+        mWriter.execute(task);
+    }
+
+    /**
+     * Write the pending snapshot now, and wait for it to be written, such as
+     * when the app is closing
+     *
+     * @param timeoutMillis is the longest to wait
+     * @return true if everything saved so far was written in time, false if
+     * it's still being written or the write failed
+     */
+    public boolean flush(long timeoutMillis) {
+        Future<Boolean> flushed = mWriter.submit(this::writePending);
+        try {
+            return flushed.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @return number of snapshots written so far
+     */
+    public synchronized int getWriteCount() {
+        return mWriteCount;
+    }
+
+    /**
+     * Write the pending snapshot, runs on the writer
+     *
+     * @return false if the write failed
+     */
+    private boolean writePending() {
+        Snapshot snapshot;
+        synchronized (this) {
+            snapshot = mPending;
+            mPending = null;
+            mScheduled = false;
+        }
+        if (snapshot == null)
+            return true;
+
+        File tmp = new File(mFile.getPath() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                BufferedOutputStream buffered = new BufferedOutputStream(out);
+                snapshot.write(buffered);
+                buffered.flush();
+                out.getFD().sync();
+            }
+            if (!tmp.renameTo(mFile))
+                throw new IOException("Could not replace " + mFile);
+        } catch (IOException | RuntimeException e) {
+            //the old state is still whole, and the next save tries again
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            return false;
+        }
+        synchronized (this) {
+            mWriteCount++;
+        }
+        return true;
+    }
+}
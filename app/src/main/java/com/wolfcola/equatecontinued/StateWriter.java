@@ -0,0 +1,98 @@
+package com.wolfcola.equatecontinued;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes saved state in a compact binary form, read back by
+ * {@link StateReader}. Values are written in order with no field names, so
+ * the reader has to read them back in the same order. Integers are varints,
+ * so small numbers (positions, counts, flags) take a single byte.
+ * <p>
+ * Strings go through a string table: the first time a string is written its
+ * text is written and it's given the next index, after that only its index is
+ * written. Unit names and unit type keys repeat a lot, so most of them cost a
+ * byte or two.
+ */
+public class StateWriter {
+    private final OutputStream mOut;
+    //index of every string written so far
+    private final Map<String, Integer> mStrings = new HashMap<>();
+
+    public StateWriter(OutputStream out) {
+        mOut = out;
+    }
+
+    /**
+     * Start the state with a magic number, to tell it apart from other
+     * files, and the version of the format it's written in
+     */
+    public void writeHeader(int magic, int version) throws IOException {
+        for (int shift = 24; shift >= 0; shift -= 8)
+            mOut.write(magic >>> shift);
+        writeInt(version);
+    }
+
+    /**
+     * Write a non-negative int, 7 bits per byte
+     */
+    public void writeInt(int value) throws IOException {
+        writeLong(value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Write a non-negative long, 7 bits per byte
+     */
+    public void writeLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            mOut.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        mOut.write((int) value);
+    }
+
+    /**
+     * Write an int that may be negative (such as -1 for no unit), small
+     * negative numbers are still a single byte
+     */
+    public void writeSignedInt(int value) throws IOException {
+        writeInt((value << 1) ^ (value >> 31));
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        mOut.write(value ? 1 : 0);
+    }
+
+    public void writeDouble(double value) throws IOException {
+        long bits = Double.doubleToLongBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8)
+            mOut.write((int) (bits >>> shift));
+    }
+
+    /**
+     * Write a length followed by bytes, such as state that was written with
+     * a StateWriter of its own
+     */
+    public void writeBytes(byte[] value) throws IOException {
+        writeInt(value.length);
+        mOut.write(value);
+    }
+
+    /**
+     * Write a string, or just its index if it was written before
+     */
+    public void writeString(String value) throws IOException {
+        Integer index = mStrings.get(value);
+        if (index != null) {
+            writeInt(index << 1 | 1);
+            return;
+        }
+        mStrings.put(value, mStrings.size());
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length << 1);
+        mOut.write(bytes);
+    }
+}
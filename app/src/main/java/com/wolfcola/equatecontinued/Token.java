@@ -0,0 +1,50 @@
+package com.wolfcola.equatecontinued;
+
+/**
+ * A single lexical element of an expression, such as "4.5E3", "*" or "(".
+ * Tokens are immutable and remember where in the source string they started.
+ */
+final class Token {
+    final Kind kind;
+    final String text;
+    //index of the first character of this token in the source string
+    final int start;
+
+    Token(Kind kind, String text, int start) {
+        this.kind = kind;
+        this.text = text;
+        this.start = start;
+    }
+
+    /**
+     * Index just past the last character of this token in the source string
+     */
+    int end() {
+        return start + text.length();
+    }
+
+    boolean is(Kind k) {
+        return kind == k;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    enum Kind {
+        //plain or sci notation number, such as "5", ".2", "3." or "6E-4"
+        NUMBER,
+        //an E that isn't part of a number, which scales the previous operand,
+        //such as the "E" or "E-" in "5E(3*2)", "5E-(3*2)" or "(6)E5"
+        EXPONENT,
+        PLUS,
+        MINUS,
+        MULTIPLY,
+        DIVIDE,
+        POWER,
+        PERCENT,
+        OPEN_PARA,
+        CLOSE_PARA
+    }
+}
@@ -1,8 +1,13 @@
 package com.wolfcola.equatecontinued.unit;
 
+import com.wolfcola.equatecontinued.StateReader;
+import com.wolfcola.equatecontinued.StateWriter;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.Locale;
 
 public abstract class Unit  /*implements JsonSerializer<Unit>, JsonDeserializer<Unit> */ {
@@ -14,6 +19,9 @@ public abstract class Unit  /*implements JsonSerializer<Unit>, JsonDeserializer<
     private String mAbbreviation;
     private String mLongName;
     private double mValue;
+    //changes whenever mValue does, so conversions built from it can tell
+    //they're out of date
+    private int mValueVersion;
 
     protected Unit(String name, String longName, double value) {
         mAbbreviation = name;
@@ -48,6 +56,7 @@ public abstract class Unit  /*implements JsonSerializer<Unit>, JsonDeserializer<
             return false;
 
         mValue = json.getDouble(JSON_VALUE);
+        mValueVersion++;
 
         return true; //successful
 
@@ -85,6 +94,33 @@ public abstract class Unit  /*implements JsonSerializer<Unit>, JsonDeserializer<
         return json;
     }
 
+    /**
+     * Save the same data as {@link #toJSON()}, in the binary state format
+     */
+    protected void write(StateWriter out) throws IOException {
+        out.writeString(toString());
+        out.writeDouble(getValue());
+    }
+
+    /**
+     * Load data saved by {@link #write(StateWriter)}. As with
+     * {@link #loadJSON(JSONObject)}, the data is only used if it was saved
+     * from a Unit of the same name, but it's always read, so the rest of the
+     * state can be read after it.
+     *
+     * @return boolean if this Unit matches saved Unit
+     */
+    protected boolean read(StateReader in) throws IOException {
+        String name = in.readString();
+        double value = in.readDouble();
+        if (!name.equals(toString()))
+            return false;
+
+        mValue = value;
+        mValueVersion++;
+        return true;
+    }
+
     /**
      * Get the full name of the unit. For an abbreviated name, use getAbbreviation()
      * toString().
@@ -129,6 +165,22 @@ public abstract class Unit  /*implements JsonSerializer<Unit>, JsonDeserializer<
      */
     public void setValue(double value) {
         mValue = value;
+        mValueVersion++;
+    }
+
+    /**
+     * @return a number that changes whenever the value of this unit does
+     */
+    int getValueVersion() {
+        return mValueVersion;
+    }
+
+    /**
+     * @return the value of this unit as a BigDecimal, the same number its
+     * double prints as
+     */
+    BigDecimal getBigDecimalValue() {
+        return BigDecimal.valueOf(getValue());
     }
 
     /**
@@ -149,7 +201,14 @@ public abstract class Unit  /*implements JsonSerializer<Unit>, JsonDeserializer<
     }
 
 
-    public abstract String convertTo(Unit toUnit, String expressionToConv);
+    /**
+     * Build the conversion from this unit to another of the same type. Use
+     * {@link UnitType#getConversion(Unit, Unit)}, which keeps the conversions
+     * it's built.
+     *
+     * @return the conversion, or null if the units can't be converted
+     */
+    abstract UnitConversion conversionTo(Unit toUnit);
 
     @Override
     public boolean equals(Object other) {
@@ -0,0 +1,114 @@
+package com.wolfcola.equatecontinued.unit;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Conversion from one unit to another, with the unit values already parsed.
+ * A value x converts to
+ * <pre>
+ *     (x + shift) * numerator / denominator + offset
+ * </pre>
+ * or, for a conversion that inverts (such as min/mi to mph),
+ * <pre>
+ *     numerator / denominator / (x + shift) + offset
+ * </pre>
+ * The shift and offset are only used by temperatures. Numerator over
+ * denominator is kept as the exact ratio of the unit values, and is also
+ * cached as a single factor for the MathContext it was last needed in, so a
+ * conversion is normally just a multiply.
+ */
+public final class UnitConversion {
+    //extra digits the factor is kept to, so multiplying by it only rounds
+    //once at the precision asked for
+    private static final int GUARD_DIGITS = 3;
+
+    private final BigDecimal mShift;
+    private final BigDecimal mNumerator;
+    private final BigDecimal mDenominator;
+    private final BigDecimal mOffset;
+    private final boolean mInverted;
+    //versions of the unit values this was built from, see Unit#getValueVersion()
+    private final int mFromVersion;
+    private final int mToVersion;
+
+    //numerator / denominator, rounded to GUARD_DIGITS more than mFactorContext
+    private BigDecimal mFactor;
+    private MathContext mFactorContext;
+
+    UnitConversion(Unit fromUnit, Unit toUnit, BigDecimal shift, BigDecimal numerator,
+                   BigDecimal denominator, BigDecimal offset, boolean inverted) {
+        mShift = shift;
+        mNumerator = numerator;
+        mDenominator = denominator;
+        mOffset = offset;
+        mInverted = inverted;
+        mFromVersion = fromUnit.getValueVersion();
+        mToVersion = toUnit.getValueVersion();
+    }
+
+    /**
+     * Conversion that only scales, x * numerator / denominator, inverting x
+     * first if inverted is true
+     */
+    UnitConversion(Unit fromUnit, Unit toUnit, BigDecimal numerator, BigDecimal denominator,
+                   boolean inverted) {
+        this(fromUnit, toUnit, BigDecimal.ZERO, numerator, denominator, BigDecimal.ZERO, inverted);
+    }
+
+    /**
+     * @return true if neither unit's value changed since this was built
+     */
+    boolean isCurrent(Unit fromUnit, Unit toUnit) {
+        return fromUnit.getValueVersion() == mFromVersion
+                && toUnit.getValueVersion() == mToVersion;
+    }
+
+    /**
+     * Added to the value before it's scaled, such as -32 from Fahrenheit
+     */
+    public BigDecimal getShift() {
+        return mShift;
+    }
+
+    public BigDecimal getNumerator() {
+        return mNumerator;
+    }
+
+    public BigDecimal getDenominator() {
+        return mDenominator;
+    }
+
+    /**
+     * Added after the value is scaled, such as 273.15 to Kelvin
+     */
+    public BigDecimal getOffset() {
+        return mOffset;
+    }
+
+    /**
+     * @return true if the value is inverted before it's scaled
+     */
+    public boolean isInverted() {
+        return mInverted;
+    }
+
+    /**
+     * Numerator over denominator, calculated once per MathContext
+     *
+     * @return the factor to a few more digits than mc, or null if the
+     * denominator is 0 (such as for a currency that was never updated), or
+     * if the numerator is 0 for an inverting conversion, since that is really
+     * 1 / (x * denominator / numerator)
+     */
+    public synchronized BigDecimal getFactor(MathContext mc) {
+        if (mDenominator.signum() == 0 || (mInverted && mNumerator.signum() == 0))
+            return null;
+        if (!mc.equals(mFactorContext)) {
+            mFactor = mNumerator.divide(mDenominator,
+                    new MathContext(mc.getPrecision() + GUARD_DIGITS, mc.getRoundingMode()));
+            mFactorContext = mc;
+        }
+        return mFactor;
+    }
+}
@@ -1,8 +1,12 @@
 package com.wolfcola.equatecontinued.unit;
 
+import com.wolfcola.equatecontinued.StateReader;
+import com.wolfcola.equatecontinued.StateWriter;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.util.Date;
 import java.util.GregorianCalendar;
 
@@ -110,6 +114,35 @@ public class UnitCurrency extends Unit {
         return json;
     }
 
+    /**
+     * Save the update time
+     */
+    @Override
+    protected void write(StateWriter out) throws IOException {
+        super.write(out);
+        out.writeLong(mTimeLastUpdated.getTime());
+        out.writeDouble(mFraction);
+        out.writeString(mParentCurrency);
+    }
+
+    /**
+     * Load in the update time
+     */
+    @Override
+    protected boolean read(StateReader in) throws IOException {
+        boolean success = super.read(in);
+        long updated = in.readLong();
+        double fraction = in.readDouble();
+        String parent = in.readString();
+        //only load in the time if the saved data matches this UNIT
+        if (success) {
+            setUpdateDate(new Date(updated));
+            mFraction = fraction;
+            mParentCurrency = parent;
+        }
+        return success;
+    }
+
     public Date getUpdateDate() {
         return mTimeLastUpdated;
     }
@@ -127,8 +160,9 @@ public class UnitCurrency extends Unit {
 
 
     @Override
-    public String convertTo(Unit toUnit, String expressionToConvert) {
-        return expressionToConvert + "*" + toUnit.getValue() + "/" + getValue();
+    UnitConversion conversionTo(Unit toUnit) {
+        return new UnitConversion(this, toUnit, toUnit.getBigDecimalValue(),
+                getBigDecimalValue(), false);
     }
 
     public boolean isFractionCurrency() {
@@ -1,5 +1,6 @@
 package com.wolfcola.equatecontinued.unit;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Locale;
 
@@ -29,13 +30,14 @@ public class UnitHistCurrency extends Unit {
     }
 
     @Override
-    public String convertTo(Unit toUnit, String expressionToConvert) {
-        double toUnitValue;
+    UnitConversion conversionTo(Unit toUnit) {
+        double fromValue;
         if (this == toUnit)
-            toUnitValue = getPreviousUnitValue();
+            fromValue = getPreviousUnitValue();
         else
-            toUnitValue = getValue();
-        return expressionToConvert + "*" + toUnit.getValue() + "/" + toUnitValue;
+            fromValue = getValue();
+        return new UnitConversion(this, toUnit, toUnit.getBigDecimalValue(),
+                BigDecimal.valueOf(fromValue), false);
     }
 
     /**
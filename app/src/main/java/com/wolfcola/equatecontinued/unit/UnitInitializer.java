@@ -54,130 +54,130 @@ class UnitInitializer {
 
 
         UnitType unitsOfWeight = new UnitType(tabNames.get(nameInd++));
-        unitsOfWeight.addUnit(new UnitScalar("oz", "Ounces", 1 / 0.028349523125)); //exact
-        unitsOfWeight.addUnit(new UnitScalar("lb", "Pounds", 1 / 0.45359237)); //exact
-        unitsOfWeight.addUnit(new UnitScalar("ton US", "Short tons", 1 / 907.18474)); //exact
-        unitsOfWeight.addUnit(new UnitScalar("ton UK", "Long tons", 1 / 1016.0469088)); //exact
-        unitsOfWeight.addUnit(new UnitScalar("st", "Stones", 1 / 6.35029318)); //exact
-
-        unitsOfWeight.addUnit(new UnitScalar("\u00B5g", "Micrograms", 1 / 1e-9));
-        unitsOfWeight.addUnit(new UnitScalar("mg", "Milligrams", 1 / 1e-6));
-        unitsOfWeight.addUnit(new UnitScalar("g", "Grams", 1 / 0.001));
-        unitsOfWeight.addUnit(new UnitScalar("kg", "Kilograms", 1));
-        unitsOfWeight.addUnit(new UnitScalar("ton", "Metric tons", 1 / 1e3));
-
-        unitsOfWeight.addUnit(new UnitScalar("oz t", "Troy ounces", 1 / 0.0311034768)); //exact
-        unitsOfWeight.addUnit(new UnitScalar("gr", "Grains", 1 / 6.479891E-5)); //exact
-        unitsOfWeight.addUnit(new UnitScalar("dwt", "Pennyweights", 20 / 0.0311034768)); //exact, 1/20 troy oz
-        unitsOfWeight.addUnit(new UnitScalar("CD", "Carats", 5000)); // =200mg
-        unitsOfWeight.addUnit(new UnitScalar("llama", "Avg llama weight", 1 / 165.0)); //avg of 130 and 200kg
+        unitsOfWeight.addUnit(new UnitScalar("oz", "Ounces", "1/0.028349523125")); //exact
+        unitsOfWeight.addUnit(new UnitScalar("lb", "Pounds", "1/0.45359237")); //exact
+        unitsOfWeight.addUnit(new UnitScalar("ton US", "Short tons", "1/907.18474")); //exact
+        unitsOfWeight.addUnit(new UnitScalar("ton UK", "Long tons", "1/1016.0469088")); //exact
+        unitsOfWeight.addUnit(new UnitScalar("st", "Stones", "1/6.35029318")); //exact
+
+        unitsOfWeight.addUnit(new UnitScalar("\u00B5g", "Micrograms", "1/1e-9"));
+        unitsOfWeight.addUnit(new UnitScalar("mg", "Milligrams", "1/1e-6"));
+        unitsOfWeight.addUnit(new UnitScalar("g", "Grams", "1/0.001"));
+        unitsOfWeight.addUnit(new UnitScalar("kg", "Kilograms", "1"));
+        unitsOfWeight.addUnit(new UnitScalar("ton", "Metric tons", "1/1e3"));
+
+        unitsOfWeight.addUnit(new UnitScalar("oz t", "Troy ounces", "1/0.0311034768")); //exact
+        unitsOfWeight.addUnit(new UnitScalar("gr", "Grains", "1/6.479891E-5")); //exact
+        unitsOfWeight.addUnit(new UnitScalar("dwt", "Pennyweights", "20/0.0311034768")); //exact, 1/20 troy oz
+        unitsOfWeight.addUnit(new UnitScalar("CD", "Carats", "5000")); // =200mg
+        unitsOfWeight.addUnit(new UnitScalar("llama", "Avg llama weight", "1/165")); //avg of 130 and 200kg
         unitTypeArray.add(unitsOfWeight);
 
 
         UnitType unitsOfLength = new UnitType(tabNames.get(nameInd++));
-        unitsOfLength.addUnit(new UnitScalar("in", "Inches", 1 / 0.0254));//exact
-        unitsOfLength.addUnit(new UnitScalar("ft", "Feet", 1 / 0.3048));//exact: in*12
-        unitsOfLength.addUnit(new UnitScalar("yd", "Yards", 1 / 0.9144));//exact: in*12*3
-        unitsOfLength.addUnit(new UnitScalar("mi", "Miles", 1 / 1609.344));//exact: in*12*5280
-        unitsOfLength.addUnit(new UnitScalar("km", "Kilometers", 1 / 1000.0));
-
-        unitsOfLength.addUnit(new UnitScalar("\u00B5m", "Micrometers", 1E6));
-        unitsOfLength.addUnit(new UnitScalar("mm", "Millimeters", 1000));
-        unitsOfLength.addUnit(new UnitScalar("cm", "Centimeters", 100));
-        unitsOfLength.addUnit(new UnitScalar("m", "Meters", 1));
-
-        unitsOfLength.addUnit(new UnitScalar("nm", "Nanometers", 1E9));
-        unitsOfLength.addUnit(new UnitScalar("pm", "Picometers", 1E12));
-        unitsOfLength.addUnit(new UnitScalar("\u212B", "\u212Bngstr\u00F6ms", 1E10));
-        unitsOfLength.addUnit(new UnitScalar("mil", "Thousandths of an inch", 1 / 2.54E-5));
-        unitsOfLength.addUnit(new UnitScalar("fur", "Furlongs", 1 / 201.168)); //exact: 1/8 mile
-        unitsOfLength.addUnit(new UnitScalar("pc", "Parsecs", 3.24078E-17));
-        unitsOfLength.addUnit(new UnitScalar("nmi", "Nautical miles", 1 / 1852.0));
-        unitsOfLength.addUnit(new UnitScalar("ly", "Light years", 1 / 9.4607E15));
-        unitsOfLength.addUnit(new UnitScalar("au", "Astronomical units", 1 / 1.495978707E11)); //exact
-        unitsOfLength.addUnit(new UnitScalar("llama", "Avg llama height", 1 / 1.75));
+        unitsOfLength.addUnit(new UnitScalar("in", "Inches", "1/0.0254"));//exact
+        unitsOfLength.addUnit(new UnitScalar("ft", "Feet", "1/0.3048"));//exact: in*12
+        unitsOfLength.addUnit(new UnitScalar("yd", "Yards", "1/0.9144"));//exact: in*12*3
+        unitsOfLength.addUnit(new UnitScalar("mi", "Miles", "1/1609.344"));//exact: in*12*5280
+        unitsOfLength.addUnit(new UnitScalar("km", "Kilometers", "1/1000"));
+
+        unitsOfLength.addUnit(new UnitScalar("\u00B5m", "Micrometers", "1E6"));
+        unitsOfLength.addUnit(new UnitScalar("mm", "Millimeters", "1000"));
+        unitsOfLength.addUnit(new UnitScalar("cm", "Centimeters", "100"));
+        unitsOfLength.addUnit(new UnitScalar("m", "Meters", "1"));
+
+        unitsOfLength.addUnit(new UnitScalar("nm", "Nanometers", "1E9"));
+        unitsOfLength.addUnit(new UnitScalar("pm", "Picometers", "1E12"));
+        unitsOfLength.addUnit(new UnitScalar("\u212B", "\u212Bngstr\u00F6ms", "1E10"));
+        unitsOfLength.addUnit(new UnitScalar("mil", "Thousandths of an inch", "1/2.54E-5"));
+        unitsOfLength.addUnit(new UnitScalar("fur", "Furlongs", "1/201.168")); //exact: 1/8 mile
+        unitsOfLength.addUnit(new UnitScalar("pc", "Parsecs", "3.24078E-17"));
+        unitsOfLength.addUnit(new UnitScalar("nmi", "Nautical miles", "1/1852"));
+        unitsOfLength.addUnit(new UnitScalar("ly", "Light years", "1/9.4607E15"));
+        unitsOfLength.addUnit(new UnitScalar("au", "Astronomical units", "1/1.495978707E11")); //exact
+        unitsOfLength.addUnit(new UnitScalar("llama", "Avg llama height", "1/1.75"));
         unitTypeArray.add(unitsOfLength);
 
 
         UnitType unitsOfArea = new UnitType(tabNames.get(nameInd++));
-        unitsOfArea.addUnit(new UnitScalar("in\u00B2", "Square inches", 1 / 0.00064516));//exact: 0.0254^2
-        unitsOfArea.addUnit(new UnitScalar("ft\u00B2", "Square feet", 1 / 0.09290304));//0.3048^2
-        unitsOfArea.addUnit(new UnitScalar("yd\u00B2", "Square yards", 1 / 0.83612736));//0.3048^2*9
-        unitsOfArea.addUnit(new UnitScalar("acre", "Acres", 1 / 4046.8564224));//0.3048^2*9*4840
-        unitsOfArea.addUnit(new UnitScalar("mi\u00B2", "Square miles", 1 / 2589988.110336));//1609.344^2
-
-        unitsOfArea.addUnit(new UnitScalar("mm\u00B2", "Square millimeters", 1 / 0.000001));
-        unitsOfArea.addUnit(new UnitScalar("cm\u00B2", "Square centimeters", 1 / 0.0001));
-        unitsOfArea.addUnit(new UnitScalar("m\u00B2", "Square meters", 1));
-        unitsOfArea.addUnit(new UnitScalar("km\u00B2", "Square kilometers", 1 / 1000000.0));
-
-        unitsOfArea.addUnit(new UnitScalar("ha", "Hectares", 1 / 10000.0));
-        unitsOfArea.addUnit(new UnitScalar("a", "Ares", 0.01));
-        unitsOfArea.addUnit(new UnitScalar("cir mil", "Circular mils", 1 / 5.067E-10));
+        unitsOfArea.addUnit(new UnitScalar("in\u00B2", "Square inches", "1/0.00064516"));//exact: 0.0254^2
+        unitsOfArea.addUnit(new UnitScalar("ft\u00B2", "Square feet", "1/0.09290304"));//0.3048^2
+        unitsOfArea.addUnit(new UnitScalar("yd\u00B2", "Square yards", "1/0.83612736"));//0.3048^2*9
+        unitsOfArea.addUnit(new UnitScalar("acre", "Acres", "1/4046.8564224"));//0.3048^2*9*4840
+        unitsOfArea.addUnit(new UnitScalar("mi\u00B2", "Square miles", "1/2589988.110336"));//1609.344^2
+
+        unitsOfArea.addUnit(new UnitScalar("mm\u00B2", "Square millimeters", "1/0.000001"));
+        unitsOfArea.addUnit(new UnitScalar("cm\u00B2", "Square centimeters", "1/0.0001"));
+        unitsOfArea.addUnit(new UnitScalar("m\u00B2", "Square meters", "1"));
+        unitsOfArea.addUnit(new UnitScalar("km\u00B2", "Square kilometers", "1/1000000"));
+
+        unitsOfArea.addUnit(new UnitScalar("ha", "Hectares", "1/10000"));
+        unitsOfArea.addUnit(new UnitScalar("a", "Ares", "0.01"));
+        unitsOfArea.addUnit(new UnitScalar("cir mil", "Circular mils", "1/5.067E-10"));
         unitTypeArray.add(unitsOfArea);
 
 
         UnitType unitsOfVolume = new UnitType(tabNames.get(nameInd++));
-        unitsOfVolume.addUnit(new UnitScalar("tbsp", "Tablespoons", 1 / 0.00001478676478125));//exact: gal/256
-        unitsOfVolume.addUnit(new UnitScalar("cup", "Cups", 1 / 0.0002365882365));//exact: gal/16
-        unitsOfVolume.addUnit(new UnitScalar("pt", "Pints (US)", 1 / 0.000473176473));//exact: gal/8
-        unitsOfVolume.addUnit(new UnitScalar("qt", "Quarts (US)", 1 / 0.000946352946));//exact: gal/4
-        unitsOfVolume.addUnit(new UnitScalar("gal", "Gallons (US)", 1 / 0.003785411784));//exact: according to wiki
-
-        unitsOfVolume.addUnit(new UnitScalar("tsp", "Teaspoons", 1 / 0.00000492892159375));//exact: gal/768
-        unitsOfVolume.addUnit(new UnitScalar("fl oz", "Fluid ounces (US)", 1 / 0.0000295735295625));//exact: gal/128
-        unitsOfVolume.addUnit(new UnitScalar("mL", "Milliliters", 1E6));
-        unitsOfVolume.addUnit(new UnitScalar("L", "Liters", 1000));
-
-        unitsOfVolume.addUnit(new UnitScalar("cL", "Centiliters", 1E5));
-        unitsOfVolume.addUnit(new UnitScalar("dL", "Deciliters", 1E4));
-        unitsOfVolume.addUnit(new UnitScalar("gal UK", "Gallons (UK)", 1000 / 4.54609));//exact: 4.54609L/gal uk
-        unitsOfVolume.addUnit(new UnitScalar("qt UK", "Quarts (UK)", 1000 / 1.1365225));//exact: gal uk/4
-        unitsOfVolume.addUnit(new UnitScalar("pt UK", "Pints (UK)", 1000 / 0.56826125));//exact: gal uk/8
-        unitsOfVolume.addUnit(new UnitScalar("fl oz UK", "Fluid ounces (UK)", 1000 / 0.0284130625));//exact: gal uk/160
-        unitsOfVolume.addUnit(new UnitScalar("shot", "Shots (US)", 1 / 0.00004436029434375));//exact for 1.5 fl oz
-        unitsOfVolume.addUnit(new UnitScalar("keg", "Half barrel keg", 1 / 0.058673882652)); //exact
-        unitsOfVolume.addUnit(new UnitScalar("m\u00B3", "Cubic meters", 1));
-        unitsOfVolume.addUnit(new UnitScalar("in\u00B3", "Cubic inches", 1 / 0.000016387064));//exact: gal/231
-        unitsOfVolume.addUnit(new UnitScalar("ft\u00B3", "Cubic feet", 1 / 0.028316846592));//exact: gal/231*12^3
-        unitsOfVolume.addUnit(new UnitScalar("yd\u00B3", "Cubic yards", 1 / 0.764554857984));//exact: 3^3 ft^3
-        unitsOfVolume.addUnit(new UnitScalar("cm\u00B3", "Cubic centimeters", 1E6));
+        unitsOfVolume.addUnit(new UnitScalar("tbsp", "Tablespoons", "1/0.00001478676478125"));//exact: gal/256
+        unitsOfVolume.addUnit(new UnitScalar("cup", "Cups", "1/0.0002365882365"));//exact: gal/16
+        unitsOfVolume.addUnit(new UnitScalar("pt", "Pints (US)", "1/0.000473176473"));//exact: gal/8
+        unitsOfVolume.addUnit(new UnitScalar("qt", "Quarts (US)", "1/0.000946352946"));//exact: gal/4
+        unitsOfVolume.addUnit(new UnitScalar("gal", "Gallons (US)", "1/0.003785411784"));//exact: according to wiki
+
+        unitsOfVolume.addUnit(new UnitScalar("tsp", "Teaspoons", "1/0.00000492892159375"));//exact: gal/768
+        unitsOfVolume.addUnit(new UnitScalar("fl oz", "Fluid ounces (US)", "1/0.0000295735295625"));//exact: gal/128
+        unitsOfVolume.addUnit(new UnitScalar("mL", "Milliliters", "1E6"));
+        unitsOfVolume.addUnit(new UnitScalar("L", "Liters", "1000"));
+
+        unitsOfVolume.addUnit(new UnitScalar("cL", "Centiliters", "1E5"));
+        unitsOfVolume.addUnit(new UnitScalar("dL", "Deciliters", "1E4"));
+        unitsOfVolume.addUnit(new UnitScalar("gal UK", "Gallons (UK)", "1000/4.54609"));//exact: 4.54609L/gal uk
+        unitsOfVolume.addUnit(new UnitScalar("qt UK", "Quarts (UK)", "1000/1.1365225"));//exact: gal uk/4
+        unitsOfVolume.addUnit(new UnitScalar("pt UK", "Pints (UK)", "1000/0.56826125"));//exact: gal uk/8
+        unitsOfVolume.addUnit(new UnitScalar("fl oz UK", "Fluid ounces (UK)", "1000/0.0284130625"));//exact: gal uk/160
+        unitsOfVolume.addUnit(new UnitScalar("shot", "Shots (US)", "1/0.00004436029434375"));//exact for 1.5 fl oz
+        unitsOfVolume.addUnit(new UnitScalar("keg", "Half barrel keg", "1/0.058673882652")); //exact
+        unitsOfVolume.addUnit(new UnitScalar("m\u00B3", "Cubic meters", "1"));
+        unitsOfVolume.addUnit(new UnitScalar("in\u00B3", "Cubic inches", "1/0.000016387064"));//exact: gal/231
+        unitsOfVolume.addUnit(new UnitScalar("ft\u00B3", "Cubic feet", "1/0.028316846592"));//exact: gal/231*12^3
+        unitsOfVolume.addUnit(new UnitScalar("yd\u00B3", "Cubic yards", "1/0.764554857984"));//exact: 3^3 ft^3
+        unitsOfVolume.addUnit(new UnitScalar("cm\u00B3", "Cubic centimeters", "1E6"));
 
 
         unitTypeArray.add(unitsOfVolume);
 
 
         UnitType unitsOfSpeed = new UnitType(tabNames.get(nameInd++));
-        unitsOfSpeed.addUnit(new UnitScalar("min/mi", "Minute miles", 1 / 26.8224, true));
-        unitsOfSpeed.addUnit(new UnitScalar("mi/min", "Miles per minute", 1 / 26.8224));
-        unitsOfSpeed.addUnit(new UnitScalar("ft/s", "Feet per second", 1 / 0.3048));
-        unitsOfSpeed.addUnit(new UnitScalar("mph", "Miles per hour", 1 / 0.44704));
-        unitsOfSpeed.addUnit(new UnitScalar("knot", "Knots", 1 / 0.514444));
-
-        unitsOfSpeed.addUnit(new UnitScalar("min/km", "Minutes per kilometer", 60 / 1000.0, true));
-        unitsOfSpeed.addUnit(new UnitScalar("km/min", "Kilometers per minute", 60 / 1000.0));
-        unitsOfSpeed.addUnit(new UnitScalar("m/s", "Meters per second", 1));
-        unitsOfSpeed.addUnit(new UnitScalar("kph", "Kilometers per hour", 3600 / 1000.0));
-
-        unitsOfSpeed.addUnit(new UnitScalar("km/s", "Kilometers per second", 1 / 1000.0));
-        unitsOfSpeed.addUnit(new UnitScalar("mi/s", "Miles per second", 1 / 0.44704 / 3600));
-        unitsOfSpeed.addUnit(new UnitScalar("c sound", "Speed of sound (sea level)", 1 / 340.3));
-        unitsOfSpeed.addUnit(new UnitScalar("c light", "Speed of light (vacuum)", 1 / 299792458.0));
+        unitsOfSpeed.addUnit(new UnitScalar("min/mi", "Minute miles", "1/26.8224", true));
+        unitsOfSpeed.addUnit(new UnitScalar("mi/min", "Miles per minute", "1/26.8224"));
+        unitsOfSpeed.addUnit(new UnitScalar("ft/s", "Feet per second", "1/0.3048"));
+        unitsOfSpeed.addUnit(new UnitScalar("mph", "Miles per hour", "1/0.44704"));
+        unitsOfSpeed.addUnit(new UnitScalar("knot", "Knots", "1/0.514444"));
+
+        unitsOfSpeed.addUnit(new UnitScalar("min/km", "Minutes per kilometer", "60/1000", true));
+        unitsOfSpeed.addUnit(new UnitScalar("km/min", "Kilometers per minute", "60/1000"));
+        unitsOfSpeed.addUnit(new UnitScalar("m/s", "Meters per second", "1"));
+        unitsOfSpeed.addUnit(new UnitScalar("kph", "Kilometers per hour", "3600/1000"));
+
+        unitsOfSpeed.addUnit(new UnitScalar("km/s", "Kilometers per second", "1/1000"));
+        unitsOfSpeed.addUnit(new UnitScalar("mi/s", "Miles per second", "125/201168"));
+        unitsOfSpeed.addUnit(new UnitScalar("c sound", "Speed of sound (sea level)", "1/340.3"));
+        unitsOfSpeed.addUnit(new UnitScalar("c light", "Speed of light (vacuum)", "1/299792458"));
         unitTypeArray.add(unitsOfSpeed);
 
 
         UnitType unitsOfTime = new UnitType(tabNames.get(nameInd++));
-        unitsOfTime.addUnit(new UnitScalar("sec", "Seconds", 1));
-        unitsOfTime.addUnit(new UnitScalar("min", "Minutes", 1 / 60.0));
-        unitsOfTime.addUnit(new UnitScalar("hour", "Hours", 1 / 3600.0));
-        unitsOfTime.addUnit(new UnitScalar("day", "Days", 1 / 86400.0));
-        unitsOfTime.addUnit(new UnitScalar("week", "Weeks", 1 / 604800.0));
-
-        unitsOfTime.addUnit(new UnitScalar("mo", "Months", 1 / 2629743.84)); //Exact - average month -- below divided by 12
-        unitsOfTime.addUnit(new UnitScalar("year", "Years", 1 / 31556926.08)); //Exact - Nasa says 365.2422 days per year avg
-        unitsOfTime.addUnit(new UnitScalar("ms", "Milliseconds", 1000));
-        unitsOfTime.addUnit(new UnitScalar("\u00B5s", "Microseconds", 1E6));
-        unitsOfTime.addUnit(new UnitScalar("ns", "Nanoseconds", 1E9));
+        unitsOfTime.addUnit(new UnitScalar("sec", "Seconds", "1"));
+        unitsOfTime.addUnit(new UnitScalar("min", "Minutes", "1/60"));
+        unitsOfTime.addUnit(new UnitScalar("hour", "Hours", "1/3600"));
+        unitsOfTime.addUnit(new UnitScalar("day", "Days", "1/86400"));
+        unitsOfTime.addUnit(new UnitScalar("week", "Weeks", "1/604800"));
+
+        unitsOfTime.addUnit(new UnitScalar("mo", "Months", "1/2629743.84")); //Exact - average month -- below divided by 12
+        unitsOfTime.addUnit(new UnitScalar("year", "Years", "1/31556926.08")); //Exact - Nasa says 365.2422 days per year avg
+        unitsOfTime.addUnit(new UnitScalar("ms", "Milliseconds", "1000"));
+        unitsOfTime.addUnit(new UnitScalar("\u00B5s", "Microseconds", "1E6"));
+        unitsOfTime.addUnit(new UnitScalar("ns", "Nanoseconds", "1E9"));
 
         unitTypeArray.add(unitsOfTime);
 
@@ -186,124 +186,124 @@ class UnitInitializer {
         unitsOfFuel.addUnit(new UnitScalar());
         unitsOfFuel.addUnit(new UnitScalar());
         unitsOfFuel.addUnit(new UnitScalar());
-        unitsOfFuel.addUnit(new UnitScalar("mpg US", "Miles per gallon (US)", 3.785411784 / 1.609344)); //exact
-        unitsOfFuel.addUnit(new UnitScalar("mpg UK", "Miles per gallon (UK)", 4.54609 / 1.609344)); //exact
+        unitsOfFuel.addUnit(new UnitScalar("mpg US", "Miles per gallon (US)", "3.785411784/1.609344")); //exact
+        unitsOfFuel.addUnit(new UnitScalar("mpg UK", "Miles per gallon (UK)", "4.54609/1.609344")); //exact
 
         unitsOfFuel.addUnit(new UnitScalar());
         unitsOfFuel.addUnit(new UnitScalar());
-        unitsOfFuel.addUnit(new UnitScalar("L/100km", "Liter per 100 Kilometers", .01, true));
-        unitsOfFuel.addUnit(new UnitScalar("km/L", "Meters per liter", 1));
-        unitsOfFuel.addUnit(new UnitScalar("mi/L", "Miles per liter", 1 / 1.609344)); //exact
+        unitsOfFuel.addUnit(new UnitScalar("L/100km", "Liter per 100 Kilometers", "0.01", true));
+        unitsOfFuel.addUnit(new UnitScalar("km/L", "Meters per liter", "1"));
+        unitsOfFuel.addUnit(new UnitScalar("mi/L", "Miles per liter", "1/1.609344")); //exact
         unitTypeArray.add(unitsOfFuel);
 
 
         UnitType unitsOfPower = new UnitType(tabNames.get(nameInd++));
-        unitsOfPower.addUnit(new UnitScalar("MW", "Megawatts", 1E-6));
-        unitsOfPower.addUnit(new UnitScalar("kW", "Kilowatts", 1E-3));
-        unitsOfPower.addUnit(new UnitScalar("W", "Watts", 1));
-        unitsOfPower.addUnit(new UnitScalar("hp", "Imperial horsepower", 0.00134102208959503)); //exact, see below
-        unitsOfPower.addUnit(new UnitScalar("PS", "Metric horsepower", 1 / 735.49875)); //exact from wiki?
+        unitsOfPower.addUnit(new UnitScalar("MW", "Megawatts", "1E-6"));
+        unitsOfPower.addUnit(new UnitScalar("kW", "Kilowatts", "1E-3"));
+        unitsOfPower.addUnit(new UnitScalar("W", "Watts", "1"));
+        unitsOfPower.addUnit(new UnitScalar("hp", "Imperial horsepower", "0.00134102208959503")); //exact, see below
+        unitsOfPower.addUnit(new UnitScalar("PS", "Metric horsepower", "1/735.49875")); //exact from wiki?
 
         unitsOfPower.addUnit(new UnitScalar());
-        unitsOfPower.addUnit(new UnitScalar("Btu/hr", "Btus/Hour", 3.412141632)); //approx
-        unitsOfPower.addUnit(new UnitScalar("Btu/min", "Btus/Minute", 0.0568690272)); //approx
-        unitsOfPower.addUnit(new UnitScalar("ft-lb/min", "Foot-Pounds/Minute", 0.737562149277265 * 60)); //exact, see below
-        unitsOfPower.addUnit(new UnitScalar("ft-lb/sec", "Foot-Pounds/Second", 0.737562149277265)); //exact, see below
+        unitsOfPower.addUnit(new UnitScalar("Btu/hr", "Btus/Hour", "3.412141632")); //approx
+        unitsOfPower.addUnit(new UnitScalar("Btu/min", "Btus/Minute", "0.0568690272")); //approx
+        unitsOfPower.addUnit(new UnitScalar("ft-lb/min", "Foot-Pounds/Minute", "44.2537289566359")); //exact, see below
+        unitsOfPower.addUnit(new UnitScalar("ft-lb/sec", "Foot-Pounds/Second", "0.737562149277265")); //exact, see below
         unitTypeArray.add(unitsOfPower);
 
 
         UnitType unitsOfEnergy = new UnitType(tabNames.get(nameInd++));
-        unitsOfEnergy.addUnit(new UnitScalar("cal", "Calories", 0.239005736)); //approx
-        unitsOfEnergy.addUnit(new UnitScalar("kCal", "Kilocalories", 0.239005736 / 1E3)); //approx, but exact comp to cal
-        unitsOfEnergy.addUnit(new UnitScalar("BTU", "British thermal units", 0.00094781712)); //approx
-        unitsOfEnergy.addUnit(new UnitScalar("ft-lb", "Foot-pounds", 0.737562149277265)); //exact - assumes g=9.80665m^2/s
-        unitsOfEnergy.addUnit(new UnitScalar("in-lb", "Inch-pounds", 12 / 0.737562149277265)); //exact from ft-lb
-
-        unitsOfEnergy.addUnit(new UnitScalar("kJ", "Kilojoules", 0.001));
-        unitsOfEnergy.addUnit(new UnitScalar("J", "Joules", 1));
-        unitsOfEnergy.addUnit(new UnitScalar("Wh", "Watt-Hours", 1 / 3.6E3)); //exact
-        unitsOfEnergy.addUnit(new UnitScalar("kWh", "Kilowatt-Hours", 1 / 3.6E6)); //exact
-
-        unitsOfEnergy.addUnit(new UnitScalar("Nm", "Newton-Meters", 1));
-        unitsOfEnergy.addUnit(new UnitScalar("MJ", "Megajoules", 1E-6));
-        unitsOfEnergy.addUnit(new UnitScalar("eV", "Electronvolts", 6.241509E18));
-        unitsOfEnergy.addUnit(new UnitScalar("Ha", "Hartrees", 2.29371044869059200E17));
+        unitsOfEnergy.addUnit(new UnitScalar("cal", "Calories", "0.239005736")); //approx
+        unitsOfEnergy.addUnit(new UnitScalar("kCal", "Kilocalories", "0.239005736/1E3")); //approx, but exact comp to cal
+        unitsOfEnergy.addUnit(new UnitScalar("BTU", "British thermal units", "0.00094781712")); //approx
+        unitsOfEnergy.addUnit(new UnitScalar("ft-lb", "Foot-pounds", "0.737562149277265")); //exact - assumes g=9.80665m^2/s
+        unitsOfEnergy.addUnit(new UnitScalar("in-lb", "Inch-pounds", "12/0.737562149277265")); //exact from ft-lb
+
+        unitsOfEnergy.addUnit(new UnitScalar("kJ", "Kilojoules", "0.001"));
+        unitsOfEnergy.addUnit(new UnitScalar("J", "Joules", "1"));
+        unitsOfEnergy.addUnit(new UnitScalar("Wh", "Watt-Hours", "1/3.6E3")); //exact
+        unitsOfEnergy.addUnit(new UnitScalar("kWh", "Kilowatt-Hours", "1/3.6E6")); //exact
+
+        unitsOfEnergy.addUnit(new UnitScalar("Nm", "Newton-Meters", "1"));
+        unitsOfEnergy.addUnit(new UnitScalar("MJ", "Megajoules", "1E-6"));
+        unitsOfEnergy.addUnit(new UnitScalar("eV", "Electronvolts", "6.241509E18"));
+        unitsOfEnergy.addUnit(new UnitScalar("Ha", "Hartrees", "2.29371044869059200E17"));
         unitTypeArray.add(unitsOfEnergy);
 
         UnitType unitsOfForce = new UnitType(tabNames.get(nameInd++));
         unitsOfForce.addUnit(new UnitScalar());
         unitsOfForce.addUnit(new UnitScalar());
-        unitsOfForce.addUnit(new UnitScalar("dyn", "Dynes", 1E5));
-        unitsOfForce.addUnit(new UnitScalar("kgf", "Kilogram-Force", 1 / 9.80665)); //exact
-        unitsOfForce.addUnit(new UnitScalar("N", "Newtons", 1));
+        unitsOfForce.addUnit(new UnitScalar("dyn", "Dynes", "1E5"));
+        unitsOfForce.addUnit(new UnitScalar("kgf", "Kilogram-Force", "1/9.80665")); //exact
+        unitsOfForce.addUnit(new UnitScalar("N", "Newtons", "1"));
 
         unitsOfForce.addUnit(new UnitScalar());
         unitsOfForce.addUnit(new UnitScalar());
-        unitsOfForce.addUnit(new UnitScalar("pdl", "Poundals", 1 / 0.138254954376)); //exact
-        unitsOfForce.addUnit(new UnitScalar("lbf", "Pound-Force", 1 / 4.4482216152605)); //exact
-        unitsOfForce.addUnit(new UnitScalar("ozf", "Ounce-Force", 16 / 4.4482216152605));  //exact
+        unitsOfForce.addUnit(new UnitScalar("pdl", "Poundals", "1/0.138254954376")); //exact
+        unitsOfForce.addUnit(new UnitScalar("lbf", "Pound-Force", "1/4.4482216152605")); //exact
+        unitsOfForce.addUnit(new UnitScalar("ozf", "Ounce-Force", "16/4.4482216152605"));  //exact
         unitTypeArray.add(unitsOfForce);
 
 
         UnitType unitsOfTorque = new UnitType(tabNames.get(nameInd++));
-        unitsOfTorque.addUnit(new UnitScalar("Nm", "Newton meters", 1));
-        unitsOfTorque.addUnit(new UnitScalar("Ncm", "Newton centimeters", 100));
-        unitsOfTorque.addUnit(new UnitScalar("kgf m", "Kilogram-Force Meters", 1 / 9.80665)); //exact
-        unitsOfTorque.addUnit(new UnitScalar("kgf cm", "Kilogram-Force Centimeters", 100 / 9.80665)); //exact
-        unitsOfTorque.addUnit(new UnitScalar("dyn m", "Dyne meters", 1E5));
-
-        unitsOfTorque.addUnit(new UnitScalar("lbf in", "Pound-Force Inches", 12 / 1.3558179483314004));  //exact
-        unitsOfTorque.addUnit(new UnitScalar("lbf ft", "Pound-Force Feet", 1 / 1.3558179483314004));  //exact
-        unitsOfTorque.addUnit(new UnitScalar("ozf in", "Ounce-Force Inches", 192 / 1.3558179483314004));  //exact
-        unitsOfTorque.addUnit(new UnitScalar("ozf ft", "Ounce-Force Feet", 16 / 1.3558179483314004));  //exact
-        unitsOfTorque.addUnit(new UnitScalar("dyn cm", "Dyne centimeters", 1));
+        unitsOfTorque.addUnit(new UnitScalar("Nm", "Newton meters", "1"));
+        unitsOfTorque.addUnit(new UnitScalar("Ncm", "Newton centimeters", "100"));
+        unitsOfTorque.addUnit(new UnitScalar("kgf m", "Kilogram-Force Meters", "1/9.80665")); //exact
+        unitsOfTorque.addUnit(new UnitScalar("kgf cm", "Kilogram-Force Centimeters", "100/9.80665")); //exact
+        unitsOfTorque.addUnit(new UnitScalar("dyn m", "Dyne meters", "1E5"));
+
+        unitsOfTorque.addUnit(new UnitScalar("lbf in", "Pound-Force Inches", "12/1.3558179483314004"));  //exact
+        unitsOfTorque.addUnit(new UnitScalar("lbf ft", "Pound-Force Feet", "1/1.3558179483314004"));  //exact
+        unitsOfTorque.addUnit(new UnitScalar("ozf in", "Ounce-Force Inches", "192/1.3558179483314004"));  //exact
+        unitsOfTorque.addUnit(new UnitScalar("ozf ft", "Ounce-Force Feet", "16/1.3558179483314004"));  //exact
+        unitsOfTorque.addUnit(new UnitScalar("dyn cm", "Dyne centimeters", "1"));
         unitTypeArray.add(unitsOfTorque);
 
         UnitType unitsOfPressure = new UnitType(tabNames.get(nameInd++));
-        unitsOfPressure.addUnit(new UnitScalar("N/m\u00B2", "Newton/Square Meter", 1));
-        unitsOfPressure.addUnit(new UnitScalar("lb/ft\u00B2", "Pounds/Square Foot", 144 / 6894.757293168));  //approx
-        unitsOfPressure.addUnit(new UnitScalar("psi", "Pounds/Square Inch", 1 / 6894.757293168)); //approx
-        unitsOfPressure.addUnit(new UnitScalar("atm", "Atmospheres", 1 / 101325.0));  //exact
-        unitsOfPressure.addUnit(new UnitScalar("bar", "Bars", 0.00001));  //exact
-
-        unitsOfPressure.addUnit(new UnitScalar("kg/m\u00B2", "Kilogram/Square Meter", 1 / 9.80665)); //approx?
-        unitsOfPressure.addUnit(new UnitScalar("kPa", "Kilopascals", 0.001)); //exact
-        unitsOfPressure.addUnit(new UnitScalar("Pa", "Pascals", 1)); //exact
-        unitsOfPressure.addUnit(new UnitScalar("inHg", "Inches of mercury", 1 / 3386.388640341)); //exact using cmHg - 1/(1333.22387415*2.54)
-
-        unitsOfPressure.addUnit(new UnitScalar("cmHg", "Centimeters of mercury", 1 / 1333.22387415)); //exact
-        unitsOfPressure.addUnit(new UnitScalar("cmH\u2082O", "Centimeters of water", 1 / 98.0665)); //exact
-        unitsOfPressure.addUnit(new UnitScalar("mmHg", "Millimeters of mercury", 1 / 133.322387415)); //exact
-        unitsOfPressure.addUnit(new UnitScalar("N/cm\u00B2", "Newton/Square Centimeters", 1E-4));
-        unitsOfPressure.addUnit(new UnitScalar("N/mm\u00B2", "Newton/Square Millimeters", 1E-6));
-        unitsOfPressure.addUnit(new UnitScalar("kg/cm\u00B2", "Kilogram/Square Centimeter", 1 / 98066.5)); //approx?
-        unitsOfPressure.addUnit(new UnitScalar("Torr", "Torr", 760 / 101325.0)); //exact
-        unitsOfPressure.addUnit(new UnitScalar("mTorr", "Millitorr", 760 / 101.325)); //exact
+        unitsOfPressure.addUnit(new UnitScalar("N/m\u00B2", "Newton/Square Meter", "1"));
+        unitsOfPressure.addUnit(new UnitScalar("lb/ft\u00B2", "Pounds/Square Foot", "144/6894.757293168"));  //approx
+        unitsOfPressure.addUnit(new UnitScalar("psi", "Pounds/Square Inch", "1/6894.757293168")); //approx
+        unitsOfPressure.addUnit(new UnitScalar("atm", "Atmospheres", "1/101325"));  //exact
+        unitsOfPressure.addUnit(new UnitScalar("bar", "Bars", "0.00001"));  //exact
+
+        unitsOfPressure.addUnit(new UnitScalar("kg/m\u00B2", "Kilogram/Square Meter", "1/9.80665")); //approx?
+        unitsOfPressure.addUnit(new UnitScalar("kPa", "Kilopascals", "0.001")); //exact
+        unitsOfPressure.addUnit(new UnitScalar("Pa", "Pascals", "1")); //exact
+        unitsOfPressure.addUnit(new UnitScalar("inHg", "Inches of mercury", "1/3386.388640341")); //exact using cmHg - 1/(1333.22387415*2.54)
+
+        unitsOfPressure.addUnit(new UnitScalar("cmHg", "Centimeters of mercury", "1/1333.22387415")); //exact
+        unitsOfPressure.addUnit(new UnitScalar("cmH\u2082O", "Centimeters of water", "1/98.0665")); //exact
+        unitsOfPressure.addUnit(new UnitScalar("mmHg", "Millimeters of mercury", "1/133.322387415")); //exact
+        unitsOfPressure.addUnit(new UnitScalar("N/cm\u00B2", "Newton/Square Centimeters", "1E-4"));
+        unitsOfPressure.addUnit(new UnitScalar("N/mm\u00B2", "Newton/Square Millimeters", "1E-6"));
+        unitsOfPressure.addUnit(new UnitScalar("kg/cm\u00B2", "Kilogram/Square Centimeter", "1/98066.5")); //approx?
+        unitsOfPressure.addUnit(new UnitScalar("Torr", "Torr", "760/101325")); //exact
+        unitsOfPressure.addUnit(new UnitScalar("mTorr", "Millitorr", "760/101.325")); //exact
         unitTypeArray.add(unitsOfPressure);
 
         UnitType unitsOfDigital = new UnitType(tabNames.get(nameInd++));
-        unitsOfDigital.addUnit(new UnitScalar("byte", "Bytes", 1. / 8));
-        unitsOfDigital.addUnit(new UnitScalar("kB", "Kilobytes", 1. / (8. * Math.pow(2, 10))));  //approx
-        unitsOfDigital.addUnit(new UnitScalar("MB", "Megabytes", 1. / (8. * Math.pow(2, 20))));  //exact
-        unitsOfDigital.addUnit(new UnitScalar("GB", "Gigabytes", 1. / (8. * Math.pow(2, 30))));  //exact
-        unitsOfDigital.addUnit(new UnitScalar("TB", "Terabytes", 1. / (8. * Math.pow(2, 40))));  //exact
-
-        unitsOfDigital.addUnit(new UnitScalar("bit", "Bits", 1));
-        unitsOfDigital.addUnit(new UnitScalar("kbit", "Kilobits", 1. / Math.pow(2, 10)));  //approx
-        unitsOfDigital.addUnit(new UnitScalar("Mbit", "Megabits", 1. / Math.pow(2, 20)));  //exact
-        unitsOfDigital.addUnit(new UnitScalar("Gbit", "Gigabits", 1. / Math.pow(2, 30)));  //exact
-
-
-        unitsOfDigital.addUnit(new UnitScalar("nibble", "Nibbles", 1. / 4.));  //exact
-        unitsOfDigital.addUnit(new UnitScalar("Tbit", "Terabits", 1. / Math.pow(2, 40)));  //exact
-        unitsOfDigital.addUnit(new UnitScalar("PB", "Petabytes", 1. / (8. * Math.pow(2, 50))));  //approx
-        unitsOfDigital.addUnit(new UnitScalar("EB", "Exabytes", 1. / (8. * Math.pow(2, 60))));  //approx
-        unitsOfDigital.addUnit(new UnitScalar("ZB", "Zettabytes", 1. / (8. * Math.pow(2, 70))));  //exact
-        unitsOfDigital.addUnit(new UnitScalar("YB", "Yottabytes", 1. / (8. * Math.pow(2, 80))));  //exact
-        unitsOfDigital.addUnit(new UnitScalar("Pbit", "Petabits", 1. / Math.pow(2, 50)));  //approx
-        unitsOfDigital.addUnit(new UnitScalar("Ebit", "Exabits", 1. / Math.pow(2, 60)));  //exact
-        unitsOfDigital.addUnit(new UnitScalar("Zbit", "Zettabits", 1. / Math.pow(2, 70)));  //exact
-        unitsOfDigital.addUnit(new UnitScalar("Ybit", "Yottabits", 1. / Math.pow(2, 80)));  //exact
+        unitsOfDigital.addUnit(new UnitScalar("byte", "Bytes", "1/8"));
+        unitsOfDigital.addUnit(new UnitScalar("kB", "Kilobytes", "1/8192"));  //approx
+        unitsOfDigital.addUnit(new UnitScalar("MB", "Megabytes", "1/8388608"));  //exact
+        unitsOfDigital.addUnit(new UnitScalar("GB", "Gigabytes", "1/8589934592"));  //exact
+        unitsOfDigital.addUnit(new UnitScalar("TB", "Terabytes", "1/8796093022208"));  //exact
+
+        unitsOfDigital.addUnit(new UnitScalar("bit", "Bits", "1"));
+        unitsOfDigital.addUnit(new UnitScalar("kbit", "Kilobits", "1/1024"));  //approx
+        unitsOfDigital.addUnit(new UnitScalar("Mbit", "Megabits", "1/1048576"));  //exact
+        unitsOfDigital.addUnit(new UnitScalar("Gbit", "Gigabits", "1/1073741824"));  //exact
+
+
+        unitsOfDigital.addUnit(new UnitScalar("nibble", "Nibbles", "1/4"));  //exact
+        unitsOfDigital.addUnit(new UnitScalar("Tbit", "Terabits", "1/1099511627776"));  //exact
+        unitsOfDigital.addUnit(new UnitScalar("PB", "Petabytes", "1/9007199254740992"));  //approx
+        unitsOfDigital.addUnit(new UnitScalar("EB", "Exabytes", "1/9223372036854775808"));  //approx
+        unitsOfDigital.addUnit(new UnitScalar("ZB", "Zettabytes", "1/9444732965739290427392"));  //exact
+        unitsOfDigital.addUnit(new UnitScalar("YB", "Yottabytes", "1/9671406556917033397649408"));  //exact
+        unitsOfDigital.addUnit(new UnitScalar("Pbit", "Petabits", "1/1125899906842624"));  //approx
+        unitsOfDigital.addUnit(new UnitScalar("Ebit", "Exabits", "1/1152921504606846976"));  //exact
+        unitsOfDigital.addUnit(new UnitScalar("Zbit", "Zettabits", "1/1180591620717411303424"));  //exact
+        unitsOfDigital.addUnit(new UnitScalar("Ybit", "Yottabits", "1/1208925819614629174706176"));  //exact
         unitTypeArray.add(unitsOfDigital);
 
         return unitTypeArray;
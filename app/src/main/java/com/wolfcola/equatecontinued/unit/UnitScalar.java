@@ -1,5 +1,9 @@
 package com.wolfcola.equatecontinued.unit;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
 
 public class UnitScalar extends Unit {
 //	private static final String JSON_INVERTED = "inverted";
@@ -7,12 +11,41 @@ public class UnitScalar extends Unit {
     //flag used to distinguish if the Unit needs to be inverted before converting
     //eg: min/miles should be inverted to miles/min before conversion to mph
     private boolean mInverted = false;
+    //exact value as numerator over denominator in lowest terms, null if the
+    //value is only known as a double
+    private BigInteger mNumerator;
+    private BigInteger mDenominator;
+    //value version the exact value belongs to, see Unit#getValueVersion()
+    private int mExactVersion;
 
     public UnitScalar(String name, String longName, double value, boolean inverted) {
         super(name, longName, value);
         mInverted = inverted;
     }
 
+    /**
+     * Unit with an exact value, such as "1/0.0254" for inches
+     *
+     * @param value is a decimal number, or two separated by a "/", eg "1E6"
+     *              or "16/4.4482216152605"
+     */
+    public UnitScalar(String name, String longName, String value, boolean inverted) {
+        this(name, longName, parseRatio(value), inverted);
+    }
+
+    public UnitScalar(String name, String longName, String value) {
+        this(name, longName, value, false);
+    }
+
+    private UnitScalar(String name, String longName, BigInteger[] ratio, boolean inverted) {
+        super(name, longName, new BigDecimal(ratio[0])
+                .divide(new BigDecimal(ratio[1]), MathContext.DECIMAL64).doubleValue());
+        mInverted = inverted;
+        mNumerator = ratio[0];
+        mDenominator = ratio[1];
+        mExactVersion = getValueVersion();
+    }
+
     public UnitScalar(String name, String longName, double value) {
         super(name, longName, value);
     }
@@ -40,26 +73,65 @@ public class UnitScalar extends Unit {
     }
 
     /**
-     * Perform Unit conversion
-     *
-     * @param toUnit              is desired unit to convert into
-     * @param expressionToConvert is the expression to convert
-     * @return returns the expression string to be evaluated, will
-     * contain something like 33*fromValue/toValue.  Will possibly
-     * also include inversion for inverted units. For example, 33 min/mile
-     * to mph would be 1/33*...
+     * Parse "a" or "a/b" into numerator and denominator in lowest terms.
+     * Each decimal a is its unscaled digits over a power of ten, so nothing is
+     * rounded.
      */
-    public String convertTo(Unit toUnit, String expressionToConvert) {
-        String invertFrom = "";
-        String invertTo = "";
-
-        if (isInverted())
-            invertFrom = "1/";
-        if (((UnitScalar) toUnit).isInverted()) {
-            invertFrom = "1/";
-            invertTo = "1/";
+    private static BigInteger[] parseRatio(String value) {
+        int slash = value.indexOf('/');
+        BigDecimal top = new BigDecimal(slash < 0 ? value : value.substring(0, slash));
+        BigDecimal bottom = slash < 0 ? BigDecimal.ONE : new BigDecimal(value.substring(slash + 1));
+        if (bottom.signum() == 0)
+            throw new IllegalArgumentException("unit value " + value + " divides by zero");
+        //a/10^s over b/10^t is a*10^t over b*10^s
+        BigInteger numerator = top.unscaledValue();
+        BigInteger denominator = bottom.unscaledValue();
+        int scale = bottom.scale() - top.scale();
+        if (scale > 0)
+            numerator = numerator.multiply(BigInteger.TEN.pow(scale));
+        else
+            denominator = denominator.multiply(BigInteger.TEN.pow(-scale));
+        if (denominator.signum() < 0) {
+            numerator = numerator.negate();
+            denominator = denominator.negate();
         }
-        return invertFrom + expressionToConvert + "*" + invertTo + "("
-                + toUnit.getValue() + "/" + getValue() + ")";
+        BigInteger gcd = numerator.gcd(denominator);
+        return new BigInteger[]{numerator.divide(gcd), denominator.divide(gcd)};
+    }
+
+    /**
+     * @return true if this unit's value is known exactly and hasn't been
+     * changed since
+     */
+    private boolean isExact() {
+        return mNumerator != null && getValueVersion() == mExactVersion;
+    }
+
+    private BigDecimal getValueNumerator() {
+        return isExact() ? new BigDecimal(mNumerator) : getBigDecimalValue();
+    }
+
+    private BigDecimal getValueDenominator() {
+        return isExact() ? new BigDecimal(mDenominator) : BigDecimal.ONE;
+    }
+
+    /**
+     * Conversion that multiplies by toValue/fromValue.  An inverted unit's
+     * value is that of the unit it's the inverse of, so the value is inverted
+     * on the way in or out. For example, 33 min/mile to mph would be
+     * 1/33*(toValue/fromValue), and mph to min/mile 1/(33*(toValue/fromValue)).
+     * Units with exact values give an exact ratio, so inches to centimeters
+     * is exactly 2.54.
+     */
+    @Override
+    UnitConversion conversionTo(Unit toUnit) {
+        UnitScalar to = (UnitScalar) toUnit;
+        boolean invertTo = to.isInverted();
+        //toValue/fromValue is (toNum*fromDen)/(toDen*fromNum)
+        BigDecimal fromValue = getValueNumerator().multiply(to.getValueDenominator());
+        BigDecimal toValue = to.getValueNumerator().multiply(getValueDenominator());
+        //inverting both on the way in and out just flips the ratio
+        return new UnitConversion(this, toUnit, invertTo ? fromValue : toValue,
+                invertTo ? toValue : fromValue, isInverted() != invertTo);
     }
 }
@@ -1,9 +1,12 @@
 package com.wolfcola.equatecontinued.unit;
 
+import java.math.BigDecimal;
+
 public class UnitTemperature extends Unit {
     public static final double FAHRENHEIT = 1;
     public static final double CELSIUS = 2;
     public static final double KELVIN = 3;
+    private static final BigDecimal KELVIN_OFFSET = new BigDecimal("273.15");
 
     public UnitTemperature(String name, String longName, double tempType) {
         super(name, longName, tempType);
@@ -13,24 +16,40 @@ public class UnitTemperature extends Unit {
         super("", "", 0);
     }
 
+    /**
+     * Every temperature converts through Celsius, from Fahrenheit it's
+     * (x-32)*5/9 and from Kelvin x-273.15, then to Fahrenheit it's c*9/5+32
+     * and to Kelvin c+273.15. Put together that's a single shift, scale and
+     * offset.
+     */
     @Override
-    public String convertTo(Unit toUnit, String expressionToConvert) {
-        //converting from Fahrenheit, always go to Celsius
-        if (getValue() == FAHRENHEIT)
-            expressionToConvert = "(" + expressionToConvert + "-32)*5/9";
-
-        //converting from Kelvin, always go to Celsius
-        if (getValue() == KELVIN)
-            expressionToConvert = "(" + expressionToConvert + "-273.15)";
+    UnitConversion conversionTo(Unit toUnit) {
+        BigDecimal shift;
+        BigDecimal numerator;
+        BigDecimal denominator;
+        //converting from Fahrenheit or Kelvin into Celsius
+        if (getValue() == FAHRENHEIT) {
+            shift = BigDecimal.valueOf(-32);
+            numerator = BigDecimal.valueOf(5);
+            denominator = BigDecimal.valueOf(9);
+        } else {
+            shift = getValue() == KELVIN ? KELVIN_OFFSET.negate() : BigDecimal.ZERO;
+            numerator = BigDecimal.ONE;
+            denominator = BigDecimal.ONE;
+        }
 
-        //if we wanted Celsius, break
+        //then from Celsius into what we wanted
+        BigDecimal offset;
         if (toUnit.getValue() == CELSIUS)
-            return expressionToConvert;
-        else if (toUnit.getValue() == FAHRENHEIT)
-            return "(" + expressionToConvert + "*9/5)+32";
-        else if (toUnit.getValue() == KELVIN)
-            return expressionToConvert + "+273.15";
+            offset = BigDecimal.ZERO;
+        else if (toUnit.getValue() == FAHRENHEIT) {
+            numerator = numerator.multiply(BigDecimal.valueOf(9));
+            denominator = denominator.multiply(BigDecimal.valueOf(5));
+            offset = BigDecimal.valueOf(32);
+        } else if (toUnit.getValue() == KELVIN)
+            offset = KELVIN_OFFSET;
         else
-            return "";
+            return null;
+        return new UnitConversion(this, toUnit, shift, numerator, denominator, offset, false);
     }
 }
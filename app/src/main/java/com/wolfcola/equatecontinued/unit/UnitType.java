@@ -2,12 +2,16 @@ package com.wolfcola.equatecontinued.unit;
 
 import android.content.Context;
 
+import com.wolfcola.equatecontinued.StateReader;
+import com.wolfcola.equatecontinued.StateWriter;
 import com.wolfcola.equatecontinued.unit.updater.UnitUpdater;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -34,10 +38,16 @@ public class UnitType {
     private boolean mContainsDynamicUnits = false;
     //Order to display units (based on mUnitArray index
     private final ArrayList<Integer> mUnitDisplayOrder;
+    //conversions between every pair of units, filled in as they're needed.
+    //The conversion from mUnitArray index i to j is at i * size() + j
+    private UnitConversion[] mConversions = new UnitConversion[0];
 
     // flag used to tell if the unit is currently being asynchronously updated
     private boolean mUpdating = false;
     private Date mLastUpdateTime;
+    //state last written by getSavedState(), null if it has to be written again
+    //since something saved has changed
+    private byte[] mSavedState;
 
 
     //this is for communication with fragment hosting convert keys
@@ -88,6 +98,7 @@ public class UnitType {
         }
         //fill in the remaining if missing (if we added a unit)
         fillUnitDisplayOrder();
+        setDirty();
     }
 
     /**
@@ -121,6 +132,100 @@ public class UnitType {
         return json;
     }
 
+    /**
+     * Save the same data as {@link #toJSON()}, in the binary state format
+     */
+    public void write(StateWriter out) throws IOException {
+        out.writeString(mName);
+        out.writeSignedInt(findUnitPosInUnitArray(mCurrUnit));
+        out.writeBoolean(mIsUnitSelected);
+        out.writeLong(getLastUpdateTime().getTime());
+        out.writeInt(mUnitDisplayOrder.size());
+        for (Integer i : mUnitDisplayOrder)
+            out.writeInt(i);
+
+        //should only be saving data from Currency unit type
+        if (containsDynamicUnits()) {
+            out.writeInt(mUnitArray.size());
+            for (Unit unit : mUnitArray) {
+                //tells the reader how the unit was saved, in case the unit
+                //at this position is a different kind by the time it's read
+                out.writeBoolean(unit instanceof UnitCurrency);
+                unit.write(out);
+            }
+        } else
+            out.writeInt(0);
+    }
+
+    /**
+     * Get this UnitType's state as written by {@link #write(StateWriter)},
+     * with a string table of its own. The state is kept and only written
+     * again once something saved has changed, so saving the unit types
+     * doesn't write out every currency value when only a selection changed.
+     */
+    public byte[] getSavedState() throws IOException {
+        if (mSavedState == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            write(new StateWriter(out));
+            mSavedState = out.toByteArray();
+        }
+        return mSavedState;
+    }
+
+    /**
+     * @return true if something saved has changed since the state was last
+     * got by {@link #getSavedState()}
+     */
+    public boolean isDirty() {
+        return mSavedState == null;
+    }
+
+    /**
+     * Flag that something saved has changed, so the state is written again
+     * next time it's saved
+     */
+    private void setDirty() {
+        mSavedState = null;
+    }
+
+    /**
+     * Load data saved by {@link #write(StateWriter)}. The data is always read
+     * so the rest of the state can be read after it, but only used if it was
+     * saved from this UnitType.
+     */
+    public void read(StateReader in) throws IOException {
+        String name = in.readString();
+        int currUnitPos = in.readSignedInt();
+        boolean selected = in.readBoolean();
+        long updateTime = in.readLong();
+        int orderSize = in.readInt();
+        ArrayList<Integer> order = new ArrayList<>();
+        for (int i = 0; i < orderSize; i++)
+            order.add(in.readInt());
+
+        boolean matches = getUnitTypeName().equals(name);
+        int unitCount = in.readInt();
+        for (int i = 0; i < unitCount; i++) {
+            boolean currency = in.readBoolean();
+            Unit unit = matches && i < size() ? getUnit(i) : null;
+            //read units that don't match into a throw away unit
+            if (unit == null || (unit instanceof UnitCurrency) != currency)
+                unit = currency ? new UnitCurrency("", "", 0) : new UnitScalar();
+            unit.read(in);
+        }
+        if (!matches)
+            return;
+
+        mCurrUnit = getUnitPosInUnitArray(currUnitPos);
+        mIsUnitSelected = selected;
+        setLastUpdateTime(new Date(updateTime));
+        mUnitDisplayOrder.clear();
+        mUnitDisplayOrder.addAll(order);
+        //fill in the remaining if missing (if we added a unit)
+        fillUnitDisplayOrder();
+        setDirty();
+    }
+
     /**
      * Used to build a UnitType after it has been created
      */
@@ -130,6 +235,7 @@ public class UnitType {
         mUnitDisplayOrder.add(mUnitDisplayOrder.size());
         //if there was already a dynamic unit or this one is, UnitType still contains dynamic units
         if (mContainsDynamicUnits || u.isDynamic()) mContainsDynamicUnits = true;
+        setDirty();
     }
 
     /**
@@ -137,6 +243,7 @@ public class UnitType {
      */
     public void swapUnits(int pos1, int pos2) {
         Collections.swap(mUnitDisplayOrder, pos1, pos2);
+        setDirty();
     }
 
     /**
@@ -149,6 +256,7 @@ public class UnitType {
      */
     public void rotateUnitSublist(int fromIndex, int toIndex) {
         Collections.rotate(mUnitDisplayOrder.subList(fromIndex, toIndex), 1);
+        setDirty();
     }
 
     /**
@@ -165,6 +273,7 @@ public class UnitType {
                                 .compareTo(mUnitArray.get(s2).getLongName());
                     }
                 });
+        setDirty();
     }
 
     /**
@@ -211,6 +320,7 @@ public class UnitType {
      */
     public boolean selectUnit(int clickedButPos) {
         Unit unitPressed = getUnit(clickedButPos);
+        setDirty();
 
         //used to tell caller if we needed to do a conversion
         boolean requestConvert = false;
@@ -235,6 +345,43 @@ public class UnitType {
         return requestConvert;
     }
 
+    /**
+     * Get the conversion from one unit of this type to another. Conversions
+     * are built the first time they're needed, and only built again once the
+     * value of either unit changes (such as a currency being updated).
+     * Synchronized since conversions are also done off the UI thread.
+     *
+     * @return the conversion, or null if the units can't be converted
+     */
+    public synchronized UnitConversion getConversion(Unit fromUnit, Unit toUnit) {
+        int size = size();
+        int from = indexOfUnit(fromUnit);
+        int to = indexOfUnit(toUnit);
+        if (from < 0 || to < 0)
+            return fromUnit.conversionTo(toUnit);
+        if (mConversions.length != size * size)
+            mConversions = new UnitConversion[size * size];
+
+        UnitConversion conversion = mConversions[from * size + to];
+        if (conversion == null || !conversion.isCurrent(fromUnit, toUnit)) {
+            conversion = fromUnit.conversionTo(toUnit);
+            mConversions[from * size + to] = conversion;
+        }
+        return conversion;
+    }
+
+    /**
+     * Position of this exact unit in mUnitArray, unlike
+     * {@link #findUnitPosInUnitArray(Unit)} this doesn't compare values
+     */
+    private int indexOfUnit(Unit unit) {
+        for (int i = 0; i < mUnitArray.size(); i++) {
+            if (mUnitArray.get(i) == unit)
+                return i;
+        }
+        return -1;
+    }
+
     /**
      * Update values of units that are not static (currency) via
      * each unit's own HTTP/JSON api call. Note that this refresh
@@ -294,6 +441,7 @@ public class UnitType {
      */
     public void clearUnitSelection() {
         mIsUnitSelected = false;
+        setDirty();
     }
 
     public boolean isUnitSelected() {
@@ -389,6 +537,8 @@ public class UnitType {
      * it has less elements than UnitArray
      */
     private void fillUnitDisplayOrder() {
+        if (mUnitDisplayOrder.size() < size())
+            setDirty();
         for (int i = mUnitDisplayOrder.size(); i < size(); i++)
             mUnitDisplayOrder.add(mUnitDisplayOrder.size());
     }
@@ -435,6 +585,10 @@ public class UnitType {
      */
     public void setUpdating(boolean updating) {
         mUpdating = updating;
+        //an update that's finished, even if it failed part way, may have
+        //changed the rates
+        if (!updating)
+            setDirty();
         //refresh text
         if (mCallback != null)
             mCallback.refreshAllButtonsText();
@@ -446,6 +600,7 @@ public class UnitType {
 
     public void setLastUpdateTime(Date mLastUpdateTime) {
         this.mLastUpdateTime = mLastUpdateTime;
+        setDirty();
     }
 
     public interface OnConvertKeyUpdateFinishedListener {
@@ -4,13 +4,18 @@ import android.content.Context;
 import android.content.res.Resources;
 
 import com.wolfcola.equatecontinued.ResourceArrayParser;
+import com.wolfcola.equatecontinued.StateReader;
+import com.wolfcola.equatecontinued.StateWriter;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -21,6 +26,8 @@ public class UnitTypeList {
     private static final String JSON_UNIT_TYPE_MAP = "unit_type_map";
     private static final String JSON_UNIT_TYPE_ORDER = "unit_type_order";
     private static final String JSON_UNIT_TYPE = "unit_type";
+    //saved by UnitType, used to match saved unit types to loaded ones
+    private static final String JSON_NAME = "name";
     private static final int DEFAULT_POS = 3;
     private final ArrayList<String> XML_KEYS;
     private final ArrayList<String> TAB_NAMES;
@@ -61,11 +68,16 @@ public class UnitTypeList {
         //if we added another UnitType and total count is different than previous
         // just use default
         if (jUnitTypeArray.length() == mUnitTypes.size()) {
-            //Load in user settings to already assembled UnitType array
-            int i = 0;
-            for (String key : mUnitTypes.keySet()) {
-                mUnitTypes.get(key).loadJSON(jUnitTypeArray.getJSONObject(i));
-                i++;
+            //Load in user settings to already assembled UnitType array, by
+            //name since the array was saved in HashMap order
+            HashMap<String, UnitType> byName = new HashMap<>();
+            for (UnitType unitType : mUnitTypes.values())
+                byName.put(unitType.getUnitTypeName(), unitType);
+            for (int i = 0; i < jUnitTypeArray.length(); i++) {
+                JSONObject jUnitType = jUnitTypeArray.getJSONObject(i);
+                UnitType unitType = byName.get(jUnitType.optString(JSON_NAME));
+                if (unitType != null)
+                    unitType.loadJSON(jUnitType);
             }
 
             //load out the array or keys that define the desired order
@@ -81,6 +93,71 @@ public class UnitTypeList {
         }
     }
 
+    /**
+     * Constructor used to build a new UnitTypeList from saved state written by
+     * {@link #write(StateWriter)}
+     *
+     * @param version of the saved state format, 1 saved every UnitType in
+     *                line, 2 saves each one keyed, see write()
+     */
+    public UnitTypeList(Resources resources, StateReader in, int version)
+            throws IOException {
+        this(resources); // initialize unit array
+
+        String currentKey = in.readString();
+        int unitTypeCount = in.readInt();
+        for (int i = 0; i < unitTypeCount; i++) {
+            UnitType unitType = mUnitTypes.get(in.readString());
+            if (version < 2) {
+                //a UnitType that was since removed is still read, just not kept
+                if (unitType == null)
+                    unitType = new UnitType("");
+                unitType.read(in);
+            } else {
+                byte[] state = in.readBytes();
+                if (unitType != null)
+                    unitType.read(new StateReader(new ByteArrayInputStream(state)));
+            }
+        }
+
+        int orderSize = in.readInt();
+        ArrayList<String> temp = new ArrayList<>();
+        for (int k = 0; k < orderSize; k++)
+            temp.add(in.readString());
+
+        if (version < 2) {
+            //if we added another UnitType, just use the default order
+            if (unitTypeCount == mUnitTypes.size() && mUnitTypes.keySet().containsAll(temp)) {
+                mOrderedUnitKeys = temp;
+                mCurrentKey = currentKey;
+            }
+        } else {
+            //drop any UnitType that was since removed
+            temp.retainAll(mUnitTypes.keySet());
+            mOrderedUnitKeys = temp;
+            if (mUnitTypes.containsKey(currentKey))
+                mCurrentKey = currentKey;
+        }
+    }
+
+    /**
+     * Save the same data as {@link #toJSON()}, in the binary state format.
+     * Each UnitType is saved with its key and its own state (see
+     * {@link UnitType#getSavedState()}), so they're loaded by key rather than
+     * position, and only the UnitTypes that changed are written again.
+     */
+    public void write(StateWriter out) throws IOException {
+        out.writeString(getCurrentKey());
+        out.writeInt(mUnitTypes.size());
+        for (Map.Entry<String, UnitType> entry : mUnitTypes.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeBytes(entry.getValue().getSavedState());
+        }
+        out.writeInt(mOrderedUnitKeys.size());
+        for (String s : mOrderedUnitKeys)
+            out.writeString(s);
+    }
+
     /**
      * Loads the Unit Type Array into a JSON array for use in parent class for
      * saving customizations.
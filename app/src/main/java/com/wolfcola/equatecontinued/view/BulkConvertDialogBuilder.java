@@ -0,0 +1,164 @@
+package com.wolfcola.equatecontinued.view;
+
+import android.app.AlertDialog;
+import android.content.ClipData;
+import android.content.ClipboardManager;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.Button;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import androidx.core.content.FileProvider;
+
+import com.wolfcola.equatecontinued.BulkConversion;
+import com.wolfcola.equatecontinued.R;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Helper class used to run a {@link BulkConversion} in a dialog. Values are
+ * converted off the UI thread a chunk at a time, with a progress bar, and the
+ * converted text can then be copied or shared as a file.
+ */
+public class BulkConvertDialogBuilder {
+    //values converted between progress updates
+    private static final int CHUNK_SIZE = 2000;
+    private static final String SHARE_DIR = "conversions";
+    private static final String SHARE_FILE = "converted.txt";
+
+    private final BulkConversion mConversion;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private AlertDialog mAlertDialog;
+    private TextView mMessage;
+    private ProgressBar mProgress;
+    //set from the UI thread once the dialog is closed, checked between chunks
+    private volatile boolean mCancelled;
+    //converted text, set once every value has been converted
+    private String mResult;
+
+    public BulkConvertDialogBuilder(BulkConversion conversion) {
+        mConversion = conversion;
+    }
+
+    /**
+     * Show the dialog and start converting
+     */
+    public void buildDialog(Context context) {
+        View view = LayoutInflater.from(context).inflate(R.layout.dialog_bulk_convert, null);
+        mMessage = view.findViewById(R.id.bulk_convert_message);
+        mProgress = view.findViewById(R.id.bulk_convert_progress);
+
+        //click listeners are set once the conversion is done
+        mAlertDialog = new AlertDialog.Builder(context)
+                .setTitle(R.string.bulk_convert)
+                .setView(view)
+                .setPositiveButton(R.string.bulk_convert_copy, null)
+                .setNeutralButton(R.string.bulk_convert_share, null)
+                .setNegativeButton(android.R.string.cancel, null)
+                .create();
+        mAlertDialog.setOnDismissListener(dialog -> {
+            mCancelled = true;
+            mExecutor.shutdown();
+        });
+        mAlertDialog.show();
+        mAlertDialog.getButton(AlertDialog.BUTTON_POSITIVE).setEnabled(false);
+        mAlertDialog.getButton(AlertDialog.BUTTON_NEUTRAL).setEnabled(false);
+
+        mExecutor.execute(this::convert);
+    }
+
+    /**
+     * Convert every value a chunk at a time, runs on the worker
+     */
+    private void convert() {
+        while (!mCancelled) {
+            boolean done = mConversion.convertNext(CHUNK_SIZE);
+            int progress = mConversion.getProgress();
+            if (done) {
+                String result = mConversion.getResult();
+                mMainHandler.post(() -> onConverted(result));
+                return;
+            }
+            mMainHandler.post(() -> mProgress.setProgress(progress));
+        }
+    }
+
+    private void onConverted(String result) {
+        if (mCancelled) return;
+        mResult = result;
+        Context context = mAlertDialog.getContext();
+        mProgress.setProgress(100);
+        mMessage.setText(context.getString(R.string.bulk_convert_done, mConversion.getCount(),
+                mConversion.getFromUnit().getLongName(), mConversion.getToUnit().getLongName()));
+
+        Button copy = mAlertDialog.getButton(AlertDialog.BUTTON_POSITIVE);
+        copy.setEnabled(true);
+        copy.setOnClickListener(v -> copy(context));
+        Button share = mAlertDialog.getButton(AlertDialog.BUTTON_NEUTRAL);
+        share.setEnabled(true);
+        share.setOnClickListener(v -> {
+            share.setEnabled(false);
+            mExecutor.execute(() -> share(context));
+        });
+    }
+
+    private void copy(Context context) {
+        ClipboardManager clipboard = (ClipboardManager) context
+                .getSystemService(Context.CLIPBOARD_SERVICE);
+        try {
+            clipboard.setPrimaryClip(ClipData.newPlainText(null, mResult));
+        } catch (RuntimeException e) {
+            //clips are sent to the system in a single transaction, which has a size limit
+            ViewUtils.toastLong(R.string.bulk_convert_too_large, context);
+            return;
+        }
+        ViewUtils.toast(context.getString(R.string.bulk_convert_copied), context);
+        mAlertDialog.dismiss();
+    }
+
+    /**
+     * Save the converted text to a file and share it, runs on the worker
+     */
+    private void share(Context context) {
+        File dir = new File(context.getCacheDir(), SHARE_DIR);
+        File file = new File(dir, SHARE_FILE);
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs())
+                throw new IOException("Could not create " + dir);
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+                    StandardCharsets.UTF_8)) {
+                writer.write(mResult);
+            }
+        } catch (IOException e) {
+            mMainHandler.post(() -> ViewUtils.toastLong(R.string.bulk_convert_share_error,
+                    context));
+            return;
+        }
+
+        Uri uri = FileProvider.getUriForFile(context,
+                context.getPackageName() + ".fileprovider", file);
+        Intent intent = new Intent(Intent.ACTION_SEND)
+                .setType("text/plain")
+                .putExtra(Intent.EXTRA_STREAM, uri)
+                .addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        mMainHandler.post(() -> {
+            context.startActivity(Intent.createChooser(intent,
+                    context.getString(R.string.bulk_convert_share)));
+            mAlertDialog.dismiss();
+        });
+    }
+}
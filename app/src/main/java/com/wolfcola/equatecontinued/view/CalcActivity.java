@@ -39,17 +39,25 @@ import com.google.android.material.color.MaterialColors;
 import com.google.android.material.navigation.NavigationView;
 import com.google.android.material.tabs.TabLayout;
 import com.google.android.material.tabs.TabLayoutMediator;
+import com.wolfcola.equatecontinued.BulkConversion;
 import com.wolfcola.equatecontinued.Calculator;
 import com.wolfcola.equatecontinued.R;
+import com.wolfcola.equatecontinued.unit.Unit;
+import com.wolfcola.equatecontinued.unit.UnitType;
 import com.wolfcola.equatecontinued.view.IdlingResource.SimpleIdlingResource;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class CalcActivity extends AppCompatActivity
         implements NavigationView.OnNavigationItemSelectedListener {
     private static final String PRIVATE_PREF = "equate_app";
     private static final String VERSION_KEY = "version_number";
+    private static final String CONVERSION_TABLE_TAG = "conversion_table";
+    //longest the activity waits for the state to be written when closing
+    private static final long SAVE_FLUSH_TIMEOUT_MILLIS = 1000;
 
     // Fixes Resources$NotFoundException on API < 19 when using vector drawables
     static {
@@ -57,6 +65,7 @@ public class CalcActivity extends AppCompatActivity
     }
 
     private ResultListFragment mResultListFrag;   //scroll-able history
+    private ConversionTableFragment mConversionTableFrag; //shown in place of history, null if never shown
     private EditTextDisplay mDisplay;      //main display
     private ViewPager2 mUnitTypeViewPager;         //controls and displays UnitType
     private DynamicTextView mResultPreview;   //Result preview
@@ -100,6 +109,15 @@ public class CalcActivity extends AppCompatActivity
         mViewModel.getUpdateScreen().observe(this, updateResult -> {
             if (updateResult != null) updateScreen(updateResult);
         });
+        mViewModel.getPreviewUpdated().observe(this, updated -> {
+            //if preview just appeared, move the history list up so the last
+            //item doesn't get hidden by the preview
+            if (updated != null && updatePreview())
+                mResultListFrag.refresh(true);
+            //the table waits for the preview to be solved
+            if (mConversionTableFrag != null)
+                mConversionTableFrag.refresh();
+        });
         mViewModel.getSelectUnitEvent().observe(this, event -> {
             if (event != null) selectUnitAtUnitArrayPos(event.unitPos(), event.unitTypeKey());
         });
@@ -157,6 +175,9 @@ public class CalcActivity extends AppCompatActivity
             mResultListFrag = new ResultListFragment();
             fm.beginTransaction().add(R.id.resultListFragmentContainer, mResultListFrag).commit();
         }
+        mConversionTableFrag = (ConversionTableFragment) fm.findFragmentByTag(CONVERSION_TABLE_TAG);
+        if (mConversionTableFrag != null && !mConversionTableFrag.isHidden())
+            navigationView.getMenu().findItem(R.id.nav_table).setTitle(R.string.conversion_history);
 
 
         ButtonManager.setup(this, mCalc, new ButtonManager.Callback() {
@@ -336,9 +357,15 @@ public class CalcActivity extends AppCompatActivity
         mCalc.resetCalc();
 
         SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(this);
+        //keep the history length, the user chose how much history to keep
+        String historySize = preferences.getString(SettingsActivity.HISTORY_SIZE_PREF_KEY, null);
         SharedPreferences.Editor editor = preferences.edit();
         editor.clear();
+        if (historySize != null)
+            editor.putString(SettingsActivity.HISTORY_SIZE_PREF_KEY, historySize);
         editor.apply();
+        mCalc.setResultListSize(historySize == null ? Calculator.DEFAULT_RESULT_LIST_SIZE
+                : Integer.parseInt(historySize));
 
         setupUnitTypePager();
 
@@ -444,24 +471,19 @@ public class CalcActivity extends AppCompatActivity
     private void updateScreen(boolean updateResult, boolean instantScroll) {
         mDisplay.updateTextFromCalc(); //Update EditText view
 
-        //will preview become visible during this screen update?
-        boolean makePreviewVisible = !mCalc.isSolved()
-                && !mCalc.isPreviewEmpty() && !mCalc.isUnitSelected();
-
         //if preview just appeared, move the history list up so the last item
         //doesn't get hidden by the preview
-        if (mResultPreview.getVisibility() != View.VISIBLE && makePreviewVisible) {
+        if (updatePreview()) {
             updateResult = true;
             instantScroll = true;
         }
 
-        mResultPreview.setVisibility(makePreviewVisible ? View.VISIBLE : View.GONE);
-
-        updatePreviewText(MaterialColors.getColor(this, androidx.appcompat.R.attr.colorPrimary, 0));
-
         //if we hit equals, update result list
         if (updateResult)
             mResultListFrag.refresh(instantScroll);
+
+        if (mConversionTableFrag != null)
+            mConversionTableFrag.refresh();
     }
 
     /**
@@ -479,10 +501,90 @@ public class CalcActivity extends AppCompatActivity
             clearUnitSelection(mUnitTypeViewPager.getCurrentItem());
     }
 
+    /**
+     * Show or hide the result preview and update its text. The preview is
+     * solved off the main thread, so this is called once after each key press
+     * and again when the solved preview is published.
+     *
+     * @return true if the preview just became visible
+     */
+    private boolean updatePreview() {
+        //will preview become visible during this update?
+        boolean makePreviewVisible = !mCalc.isSolved()
+                && !mCalc.isPreviewEmpty() && !mCalc.isUnitSelected();
+        boolean appeared = mResultPreview.getVisibility() != View.VISIBLE && makePreviewVisible;
+
+        mResultPreview.setVisibility(makePreviewVisible ? View.VISIBLE : View.GONE);
+
+        updatePreviewText(MaterialColors.getColor(this, androidx.appcompat.R.attr.colorPrimary, 0));
+        return appeared;
+    }
+
     private void updatePreviewText(int suffixColor) {
         mResultPreview.setText(mCalc.getPreviewText(suffixColor));
     }
 
+    /**
+     * Switch between showing the result list and the conversion table in the
+     * same spot. Both fragments are kept, so the result list keeps its scroll
+     * position.
+     *
+     * @return true if the conversion table is now showing
+     */
+    private boolean toggleConversionTable() {
+        FragmentManager fm = getSupportFragmentManager();
+        boolean showTable = mConversionTableFrag == null || mConversionTableFrag.isHidden();
+        if (mConversionTableFrag == null) {
+            mConversionTableFrag = new ConversionTableFragment();
+            fm.beginTransaction()
+                    .add(R.id.resultListFragmentContainer, mConversionTableFrag, CONVERSION_TABLE_TAG)
+                    .hide(mResultListFrag)
+                    .commit();
+        } else if (showTable)
+            fm.beginTransaction().show(mConversionTableFrag).hide(mResultListFrag).commit();
+        else
+            fm.beginTransaction().hide(mConversionTableFrag).show(mResultListFrag).commit();
+        return showTable;
+    }
+
+    /**
+     * Convert every value of the text on the clipboard from the selected unit,
+     * after asking which unit of the current unit type to convert them to
+     */
+    private void startBulkConversion() {
+        UnitType unitType = mCalc.getCurrUnitType();
+        Unit fromUnit = unitType.getCurrUnit();
+        if (!mCalc.isUnitSelected() || fromUnit == null) {
+            ViewUtils.toast(getString(R.string.bulk_convert_no_unit), this);
+            return;
+        }
+        String text = ClipboardHelper.getText(this);
+        if (text == null || text.isEmpty()) {
+            ViewUtils.toast(getString(R.string.bulk_convert_no_text), this);
+            return;
+        }
+
+        //every other unit of the type, without the blank buttons
+        List<Unit> toUnits = new ArrayList<>();
+        for (int i = 0; i < unitType.size(); i++) {
+            Unit unit = unitType.getUnit(i);
+            if (unit != fromUnit && !unit.getAbbreviation().isEmpty())
+                toUnits.add(unit);
+        }
+        String[] names = new String[toUnits.size()];
+        for (int i = 0; i < names.length; i++)
+            names[i] = toUnits.get(i).getLongName();
+
+        new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.bulk_convert_to, fromUnit.getLongName()))
+                .setItems(names, (dialog, which) -> {
+                    BulkConversion conversion = mCalc.newBulkConversion(text, toUnits.get(which));
+                    if (conversion != null)
+                        new BulkConvertDialogBuilder(conversion).buildDialog(this);
+                })
+                .show();
+    }
+
     /**
      * Clear the unit selection for unit type fragment at position pos
      *
@@ -533,6 +635,11 @@ public class CalcActivity extends AppCompatActivity
                         UnitSearchItem searchItem = mSearchDialogBuilder.getItem(position);
                         selectUnitAtUnitArrayPos(searchItem.getUnitPosition(), searchItem.getUnitTypeKey());
                     });
+        } else if (id == R.id.nav_table) {
+            boolean showingTable = toggleConversionTable();
+            item.setTitle(showingTable ? R.string.conversion_history : R.string.conversion_table);
+        } else if (id == R.id.nav_bulk_convert) {
+            startBulkConversion();
         } else if (id == R.id.nav_settings) {
             startActivity(new Intent(this, SettingsActivity.class));
         } else if (id == R.id.nav_about) {
@@ -572,7 +679,12 @@ public class CalcActivity extends AppCompatActivity
     public void onPause() {
         super.onPause();
         try {
-            Calculator.getCalculator(this).saveState();
+            //saved in the background, unless the app is closing, in which case
+            //wait (a little) for it to be written
+            Calculator calc = Calculator.getCalculator(this);
+            calc.saveState();
+            if (isFinishing() && !calc.flushState(SAVE_FLUSH_TIMEOUT_MILLIS))
+                android.util.Log.w("CalcActivity", "Calculator state not saved in time");
         } catch (Exception e) {
             android.util.Log.e("CalcActivity", "Failed to save calculator state", e);
         }
@@ -594,6 +706,15 @@ public class CalcActivity extends AppCompatActivity
         // determine if user changed the configuration of the Unit Types
         mCalc.setSelectedUnitTypes(selections);
 
+        //load in the display precision, stored as a string by the ListPreference
+        String precision = sharedPref.getString(SettingsActivity.PRECISION_PREF_KEY, null);
+        if (precision != null)
+            mCalc.setDisplayPrecision(Integer.parseInt(precision));
+        mCalc.setRationalMode(sharedPref.getBoolean(SettingsActivity.RATIONAL_PREF_KEY, false));
+        String historySize = sharedPref.getString(SettingsActivity.HISTORY_SIZE_PREF_KEY, null);
+        if (historySize != null)
+            mCalc.setResultListSize(Integer.parseInt(historySize));
+
         setupUnitTypePager();
 
         // if the Unit Type configuration changed, update tab indicator accordingly
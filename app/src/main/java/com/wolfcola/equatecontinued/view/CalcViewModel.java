@@ -24,12 +24,23 @@ public class CalcViewModel extends AndroidViewModel {
     // Whether a unit is currently selected (drives equals button color)
     private final MutableLiveData<Boolean> mUnitSelected = new MutableLiveData<>(false);
 
+    // Fires when a result preview solved off the main thread is ready
+    private final MutableLiveData<Boolean> mPreviewUpdated = new MutableLiveData<>();
+
     // Position of unit to select after a ViewPager scroll completes (-1 = none)
     private int mUnitPosToSelectAfterScroll = -1;
 
     public CalcViewModel(@NonNull Application application) {
         super(application);
         mCalc = Calculator.getCalculator(application);
+        // postValue coalesces, so a burst of previews only updates the UI once
+        mCalc.setOnPreviewUpdateListener(() -> mPreviewUpdated.postValue(true));
+    }
+
+    @Override
+    protected void onCleared() {
+        mCalc.setOnPreviewUpdateListener(null);
+        super.onCleared();
     }
 
     public Calculator getCalc() {
@@ -70,6 +81,10 @@ public class CalcViewModel extends AndroidViewModel {
         mUpdateScreen.setValue(updateResult);
     }
 
+    public LiveData<Boolean> getPreviewUpdated() {
+        return mPreviewUpdated;
+    }
+
     public LiveData<Boolean> getUnitSelected() {
         return mUnitSelected;
     }
@@ -29,14 +29,23 @@ public class ClipboardHelper {
     }
 
     public static void paste(Context context, Calculator calc) {
-        ClipboardManager clipboard = (ClipboardManager) context.getSystemService(Context.CLIPBOARD_SERVICE);
-        ClipData clip = clipboard.getPrimaryClip();
-        if (clip == null || clip.getItemCount() == 0) return;
+        String textToPaste = getText(context);
+        if (textToPaste == null) return;
 
-        String textToPaste = clip.getItemAt(0).coerceToText(context).toString();
         Toast.makeText(context,
                 context.getString(R.string.toast_pasted, textToPaste),
                 Toast.LENGTH_SHORT).show();
         calc.pasteIntoExpression(textToPaste);
     }
+
+    /**
+     * @return the text on the clipboard, or null if it's empty
+     */
+    static String getText(Context context) {
+        ClipboardManager clipboard = (ClipboardManager) context.getSystemService(Context.CLIPBOARD_SERVICE);
+        ClipData clip = clipboard.getPrimaryClip();
+        if (clip == null || clip.getItemCount() == 0) return null;
+
+        return clip.getItemAt(0).coerceToText(context).toString();
+    }
 }
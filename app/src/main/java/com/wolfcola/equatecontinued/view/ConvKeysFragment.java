@@ -353,6 +353,8 @@ public class ConvKeysFragment extends Fragment implements OnConvertKeyUpdateFini
                 //highlight it
                 calc.setSelection(0, calc.toString().length());
             }
+            //get a head start on converting to whichever unit is tapped next
+            calc.precomputeConversions();
             colorSelectedButton();
         }
 
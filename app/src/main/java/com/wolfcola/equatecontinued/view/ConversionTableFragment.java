@@ -0,0 +1,129 @@
+package com.wolfcola.equatecontinued.view;
+
+import android.content.ClipData;
+import android.content.ClipboardManager;
+import android.content.Context;
+import android.graphics.Typeface;
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.wolfcola.equatecontinued.Calculator;
+import com.wolfcola.equatecontinued.ConversionTable;
+import com.wolfcola.equatecontinued.ExpSeparatorHandler;
+import com.wolfcola.equatecontinued.R;
+import com.wolfcola.equatecontinued.unit.Unit;
+
+/**
+ * Shows the expression converted into every unit of the current unit type,
+ * in place of the result list. Rows are converted as they're bound, so only
+ * the ones on screen are ever converted.
+ */
+public class ConversionTableFragment extends Fragment {
+    private CalcViewModel mViewModel;
+    //null if there is nothing to convert
+    private ConversionTable mTable;
+    private TableAdapter mAdapter;
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container,
+                             @Nullable Bundle savedInstanceState) {
+        return inflater.inflate(R.layout.fragment_conversion_table, container, false);
+    }
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        mViewModel = new ViewModelProvider(requireActivity()).get(CalcViewModel.class);
+
+        RecyclerView recyclerView = view.findViewById(R.id.conversion_table_recycler_view);
+        recyclerView.setLayoutManager(new LinearLayoutManager(getActivity()));
+        mAdapter = new TableAdapter();
+        recyclerView.setAdapter(mAdapter);
+        refresh();
+    }
+
+    /**
+     * Update the table for the current expression and unit. Rows that were
+     * already converted are only converted again if a unit value changed.
+     */
+    public void refresh() {
+        if (mAdapter == null || isHidden()) return;
+        Calculator calc = mViewModel.getCalc();
+        ConversionTable table = calc.getConversionTable();
+        //the table is solved on the preview worker, keep showing the old one
+        //until the new one is ready, this is called again once it is
+        if (table == null && calc.isConversionTablePending()) return;
+
+        mTable = table;
+        mAdapter.notifyDataSetChanged();
+    }
+
+    @Override
+    public void onHiddenChanged(boolean hidden) {
+        super.onHiddenChanged(hidden);
+        if (!hidden)
+            refresh();
+    }
+
+    private class TableAdapter extends RecyclerView.Adapter<TableAdapter.RowViewHolder> {
+
+        @NonNull
+        @Override
+        public RowViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View view = LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.list_item_conversion, parent, false);
+            return new RowViewHolder(view);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull RowViewHolder holder, int position) {
+            holder.bind(mTable.getUnit(position), mTable.getAnswer(position));
+        }
+
+        @Override
+        public int getItemCount() {
+            return mTable == null ? 0 : mTable.size();
+        }
+
+        class RowViewHolder extends RecyclerView.ViewHolder {
+            final TextView unitText;
+            final TextView answerText;
+
+            RowViewHolder(@NonNull View itemView) {
+                super(itemView);
+                unitText = itemView.findViewById(R.id.list_item_conversion_unit);
+                answerText = itemView.findViewById(R.id.list_item_conversion_answer);
+            }
+
+            void bind(Unit unit, String answer) {
+                unitText.setText(unit.getLongName());
+                //make the unit being converted from stand out
+                unitText.setTypeface(null, unit == mTable.getFromUnit()
+                        ? Typeface.BOLD : Typeface.NORMAL);
+                String text = ExpSeparatorHandler.addSep(answer);
+                answerText.setText(text.isEmpty() ? "" : text + " " + unit);
+
+                //click to copy the answer
+                answerText.setOnClickListener(view -> {
+                    Context context = view.getContext();
+                    ClipboardManager clipboard = (ClipboardManager) context
+                            .getSystemService(Context.CLIPBOARD_SERVICE);
+                    clipboard.setPrimaryClip(ClipData.newPlainText(null, text));
+                    ViewUtils.toast(context.getString(R.string.toast_copied, text), context);
+                });
+            }
+        }
+    }
+}
@@ -29,7 +29,7 @@ public class DisplayFormatter {
      */
     public int[] format(Calculator calc, Resources res) {
         mTextPrefix = "";
-        mExpressionText = mSepHandler.getSepText(calc.toString());
+        mExpressionText = mSepHandler.getSepText(calc.getText());
         mTextSuffix = "";
 
         int selStart = mSepHandler.translateToSepIndex(calc.getSelectionStart());
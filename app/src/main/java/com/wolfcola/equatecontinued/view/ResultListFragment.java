@@ -131,14 +131,11 @@ public class ResultListFragment extends Fragment {
                     Result thisResult = mResultArray.get(pos);
                     Calculator calc = mViewModel.getCalc();
 
-                    String textPassBack = "";
                     int viewID = view.getId();
                     if (viewID == R.id.list_item_result_textPrevQuery)
-                        textPassBack = thisResult.getQueryWithoutSep();
-                    if (viewID == R.id.list_item_result_textPrevAnswer)
-                        textPassBack = thisResult.getAnswerWithoutSep();
-
-                    calc.parseKeyPressed(textPassBack);
+                        calc.parseKeyPressed(thisResult.getQueryWithoutSep());
+                    else if (viewID == R.id.list_item_result_textPrevAnswer)
+                        calc.parseResultAnswer(thisResult);
 
                     if (!calc.isUnitSelected() && thisResult.containsUnits()) {
                         int unitPosPassBack;
@@ -29,6 +29,9 @@ import java.util.Set;
  */
 public class SettingsActivity extends AppCompatActivity {
     public final static String UNIT_TYPE_PREF_KEY = "unit_type_prefs";
+    public final static String PRECISION_PREF_KEY = "precision_pref";
+    public final static String RATIONAL_PREF_KEY = "rational_pref";
+    public final static String HISTORY_SIZE_PREF_KEY = "history_size_pref";
 
     /**
      * A preference value change listener that updates the preference's summary
@@ -111,6 +114,12 @@ public class SettingsActivity extends AppCompatActivity {
             setPreferencesFromResource(R.xml.preferences, rootKey);
 
             setUpUnitTypePrefs();
+            Preference precisionPref = findPreference(PRECISION_PREF_KEY);
+            if (precisionPref != null)
+                bindPreferenceSummaryToValue(precisionPref);
+            Preference historySizePref = findPreference(HISTORY_SIZE_PREF_KEY);
+            if (historySizePref != null)
+                bindPreferenceSummaryToValue(historySizePref);
         }
 
         /**